@@ -70,6 +70,8 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
 
     public GroovyLanguageServer(ICompilationUnitFactory compilationUnitFactory) {
         this.groovyServices = new GroovyServices(compilationUnitFactory);
+        this.groovyServices.setSymbolCacheDirectory(
+                Paths.get(System.getProperty("user.home"), ".groovyls", "cache"));
     }
 
     @Override
@@ -88,7 +90,7 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
         CompletionOptions completionOptions = new CompletionOptions(false, Arrays.asList("."));
         ServerCapabilities serverCapabilities = new ServerCapabilities();
         serverCapabilities.setCompletionProvider(completionOptions);
-        serverCapabilities.setTextDocumentSync(TextDocumentSyncKind.Full);
+        serverCapabilities.setTextDocumentSync(TextDocumentSyncKind.Incremental);
         serverCapabilities.setDocumentSymbolProvider(true);
         serverCapabilities.setWorkspaceSymbolProvider(true);
         serverCapabilities.setDocumentSymbolProvider(true);
@@ -107,13 +109,14 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
         serverCapabilities.setFoldingRangeProvider(true);
         serverCapabilities.setSelectionRangeProvider(true);
         CodeLensOptions codeLensOptions = new CodeLensOptions();
-        codeLensOptions.setResolveProvider(false);
+        codeLensOptions.setResolveProvider(true);
         serverCapabilities.setCodeLensProvider(codeLensOptions);
         SignatureHelpOptions signatureHelpOptions = new SignatureHelpOptions();
         signatureHelpOptions.setTriggerCharacters(Arrays.asList("(", ","));
         serverCapabilities.setSignatureHelpProvider(signatureHelpOptions);
         serverCapabilities.setExecuteCommandProvider(
-                new ExecuteCommandOptions(Arrays.asList("groovy.findUsages", "groovy.goToSuperMethod")));
+                new ExecuteCommandOptions(Arrays.asList("groovy.findUsages", "groovy.goToSuperMethod",
+                        "groovy.inspectionTimings")));
 
         InitializeResult initializeResult = new InitializeResult(serverCapabilities);
         return CompletableFuture.completedFuture(initializeResult);
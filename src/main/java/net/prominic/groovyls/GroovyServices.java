@@ -30,15 +30,19 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -50,31 +54,12 @@ import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
 import org.codehaus.groovy.ast.ClassNode;
-import org.codehaus.groovy.ast.DynamicVariable;
-import org.codehaus.groovy.ast.FieldNode;
-import org.codehaus.groovy.ast.ImportNode;
-import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
-import org.codehaus.groovy.ast.Parameter;
-import org.codehaus.groovy.ast.PropertyNode;
-import org.codehaus.groovy.ast.Variable;
-import org.codehaus.groovy.ast.expr.BinaryExpression;
-import org.codehaus.groovy.ast.expr.CastExpression;
-import org.codehaus.groovy.ast.expr.ClassExpression;
-import org.codehaus.groovy.ast.expr.ClosureExpression;
-import org.codehaus.groovy.ast.expr.ConstantExpression;
-import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
-import org.codehaus.groovy.ast.expr.Expression;
-import org.codehaus.groovy.ast.expr.MethodCallExpression;
-import org.codehaus.groovy.ast.expr.PropertyExpression;
-import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
-import org.codehaus.groovy.ast.expr.VariableExpression;
-import org.codehaus.groovy.ast.stmt.BlockStatement;
-import org.codehaus.groovy.ast.stmt.EmptyStatement;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.ReaderSource;
 import org.codehaus.groovy.control.messages.Message;
 import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
 import org.codehaus.groovy.syntax.SyntaxException;
@@ -112,11 +97,9 @@ import org.eclipse.lsp4j.RenameParams;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureHelpParams;
 import org.eclipse.lsp4j.SymbolInformation;
-import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.TypeDefinitionParams;
-import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
 import org.eclipse.lsp4j.WorkspaceSymbol;
@@ -135,6 +118,7 @@ import org.eclipse.lsp4j.PrepareRenameParams;
 import org.eclipse.lsp4j.PrepareRenameResult;
 import org.eclipse.lsp4j.SelectionRange;
 import org.eclipse.lsp4j.SelectionRangeParams;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.jsonrpc.messages.Either3;
 import org.eclipse.lsp4j.services.LanguageClient;
@@ -147,8 +131,12 @@ import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassGraphException;
 import io.github.classgraph.ScanResult;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.ast.ASTSnapshot;
+import net.prominic.groovyls.compiler.control.CompilationCancelledException;
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
 import net.prominic.groovyls.config.ICompilationUnitFactory;
+import net.prominic.groovyls.inspections.InspectionEngine;
 import net.prominic.groovyls.providers.CompletionProvider;
 import net.prominic.groovyls.providers.CallHierarchyProvider;
 import net.prominic.groovyls.providers.CodeLensProvider;
@@ -170,6 +158,7 @@ import net.prominic.groovyls.providers.TypeDefinitionProvider;
 import net.prominic.groovyls.providers.UsageItem;
 import net.prominic.groovyls.providers.UsageProvider;
 import net.prominic.groovyls.providers.WorkspaceSymbolProvider;
+import net.prominic.groovyls.util.CallSite;
 import net.prominic.groovyls.util.FileContentsTracker;
 import net.prominic.groovyls.util.GradleClasspathResolver;
 import net.prominic.groovyls.util.GradleProjectDetector;
@@ -180,34 +169,70 @@ import net.prominic.groovyls.util.GrailsProjectInfo;
 import net.prominic.groovyls.util.MavenProjectDetector;
 import net.prominic.groovyls.util.MavenProjectInfo;
 import net.prominic.groovyls.util.MavenDependencyResolver;
-import net.prominic.lsp.utils.Positions;
+import net.prominic.groovyls.util.PieceTable;
+import net.prominic.groovyls.util.PriorityScheduler;
+import net.prominic.groovyls.util.PriorityScheduler.Lane;
+import net.prominic.groovyls.util.WorkspaceSymbolCache;
 
 public class GroovyServices implements TextDocumentService, WorkspaceService, LanguageClientAware {
 	private static class DiagnosticsResult {
-		private final Set<PublishDiagnosticsParams> diagnostics;
+		private final Map<URI, List<Diagnostic>> diagnosticsByFile;
 		private final Set<URI> fatalErrorUris;
 
-		private DiagnosticsResult(Set<PublishDiagnosticsParams> diagnostics, Set<URI> fatalErrorUris) {
-			this.diagnostics = diagnostics;
+		private DiagnosticsResult(Map<URI, List<Diagnostic>> diagnosticsByFile, Set<URI> fatalErrorUris) {
+			this.diagnosticsByFile = diagnosticsByFile;
 			this.fatalErrorUris = fatalErrorUris;
 		}
 	}
 
+	private static class FileInspections {
+		private final long contentHash;
+		// the contents of a file only need to be hashed again when its module
+		// is replaced
+		private final ModuleNode moduleNode;
+		private final List<Diagnostic> diagnostics;
+		private final Set<String> classNameDependencies;
+
+		private FileInspections(long contentHash, ModuleNode moduleNode, List<Diagnostic> diagnostics,
+				Set<String> classNameDependencies) {
+			this.contentHash = contentHash;
+			this.moduleNode = moduleNode;
+			this.diagnostics = diagnostics;
+			this.classNameDependencies = classNameDependencies;
+		}
+	}
+
+	private static class SyntaxSnapshot {
+		private final long contentHash;
+		private final ASTNodeVisitor visitor;
+		private final List<Diagnostic> diagnostics;
+
+		private SyntaxSnapshot(long contentHash, ASTNodeVisitor visitor, List<Diagnostic> diagnostics) {
+			this.contentHash = contentHash;
+			this.visitor = visitor;
+			this.diagnostics = diagnostics;
+		}
+	}
+
 	private static final Pattern PATTERN_CONSTRUCTOR_CALL = Pattern.compile(".*new \\w*$");
-	private static final Pattern PATTERN_IMPORT_STATEMENT = Pattern
-			.compile("^\\s*import\\s+(?:static\\s+)?([^\\s;]+)(?:\\s+as\\s+(\\w+))?\\s*;?\\s*$");
-	private static final Pattern PATTERN_UNNECESSARY_SEMICOLON = Pattern.compile("^\\s*;\\s*$");
 	private static final long DIAGNOSTIC_DEBOUNCE_MS = 250;
-	private static final int DUPLICATE_CODE_MIN_LENGTH = 10;
-	private static final int MAX_LINE_LENGTH = 120;
+	private static final long SYNTAX_CHECK_DEBOUNCE_MS = 10;
 
 	private LanguageClient languageClient;
 
 	private Path workspaceRoot;
 	private ICompilationUnitFactory compilationUnitFactory;
-	private GroovyLSCompilationUnit compilationUnit;
-	private ASTNodeVisitor astVisitor;
+	private volatile GroovyLSCompilationUnit compilationUnit;
+	private volatile ASTSnapshot snapshot;
+	private volatile Consumer<ASTSnapshot> snapshotListener;
+	private long snapshotVersion;
 	private Map<URI, List<Diagnostic>> prevDiagnosticsByFile;
+	private Map<URI, List<Diagnostic>> syntaxDiagnosticsByFile = Collections.emptyMap();
+	private final Map<URI, FileInspections> inspectionsByURI = new HashMap<>();
+	private Set<String> inspectedClassNames = Collections.emptySet();
+	private final InspectionEngine inspectionEngine = new InspectionEngine();
+	private Path symbolCacheDirectory;
+	private volatile WorkspaceSymbolCache symbolCache;
 	private FileContentsTracker fileContentsTracker = new FileContentsTracker();
 	private ScanResult classGraphScanResult = null;
 	private GroovyClassLoader classLoader = null;
@@ -225,24 +250,31 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	private List<String> mavenRepositories = new ArrayList<>();
 	private List<String> mavenDependencies = new ArrayList<>();
 	private boolean classpathRecursive = false;
-	private final ScheduledExecutorService compileScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-		Thread thread = new Thread(r, "groovyls-compile");
-		thread.setDaemon(true);
-		return thread;
-	});
-	private final ScheduledExecutorService indexingScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-		Thread thread = new Thread(r, "groovyls-index");
-		thread.setDaemon(true);
-		return thread;
-	});
+	private boolean compactClosedFiles = false;
+	private final PriorityScheduler scheduler = new PriorityScheduler(
+			Math.max(2, Runtime.getRuntime().availableProcessors()),
+			Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
 	private final Object compileLock = new Object();
 	private final Object compileOperationLock = new Object();
 	private final Object classGraphLock = new Object();
 	private final AtomicInteger gradleIndexGeneration = new AtomicInteger();
 	private final AtomicInteger mavenIndexGeneration = new AtomicInteger();
 	private final AtomicInteger classGraphIndexGeneration = new AtomicInteger();
-	private ScheduledFuture<?> pendingCompile;
+	private Future<?> pendingCompile;
+	// the number of requests waiting for a compile to finish, so that they
+	// can compile the newest contents instead
+	private final AtomicInteger waitingRequestCompiles = new AtomicInteger();
+	// a cancelled compile may have already reset the changed files
+	private boolean compileCancelled = false;
 	private final Set<URI> pendingContextUris = new HashSet<>();
+	// open files are parsed on their own after each edit, before the whole
+	// workspace is compiled, which is enough for outlines and syntax errors
+	private final Map<URI, SyntaxSnapshot> syntaxSnapshots = new ConcurrentHashMap<>();
+	private final Map<URI, List<Diagnostic>> publishedSyntaxDiagnostics = new ConcurrentHashMap<>();
+	// the inspection results of the last snapshot, which are published again
+	// along with syntax errors
+	private volatile Map<URI, List<Diagnostic>> publishedInspectionsByFile = Collections.emptyMap();
+	private final Map<URI, Future<?>> pendingSyntaxChecks = new HashMap<>();
 	private final FormattingSettings formattingSettings = new FormattingSettings();
 	private final FormattingProvider formattingProvider = new FormattingProvider(fileContentsTracker,
 			formattingSettings);
@@ -254,11 +286,76 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	public void setWorkspaceRoot(Path workspaceRoot) {
 		this.workspaceRoot = workspaceRoot;
 		compilationUnitFactory.invalidateCompilationUnit();
+		loadSymbolCache();
 		createOrUpdateCompilationUnit();
 		detectGradleProject();
 		detectGrailsProject();
 	}
 
+	/**
+	 * Sets where workspace symbols are saved between sessions, or null to
+	 * not save them.
+	 */
+	public void setSymbolCacheDirectory(Path symbolCacheDirectory) {
+		this.symbolCacheDirectory = symbolCacheDirectory;
+	}
+
+	private Path getSymbolCacheFile() {
+		if (symbolCacheDirectory == null || workspaceRoot == null) {
+			return null;
+		}
+		String workspaceKey = Long.toHexString(
+				FileContentsTracker.hashContents(workspaceRoot.toAbsolutePath().normalize().toString()));
+		return symbolCacheDirectory.resolve(workspaceKey + ".symbols");
+	}
+
+	private void loadSymbolCache() {
+		symbolCache = null;
+		Path cacheFile = getSymbolCacheFile();
+		if (cacheFile == null) {
+			return;
+		}
+		WorkspaceSymbolCache cache = WorkspaceSymbolCache.load(cacheFile);
+		if (cache.isEmpty()) {
+			return;
+		}
+		symbolCache = cache;
+		scheduler.execute(Lane.INDEXING,
+				() -> cache.revalidate(fileContentsTracker, compilationUnitFactory.getAdditionalClasspathList()));
+	}
+
+	/**
+	 * Saves the symbols of a fully visited workspace, for the next time that
+	 * the server starts.
+	 */
+	private void saveSymbolCache(ASTNodeVisitor visitor) {
+		Path cacheFile = getSymbolCacheFile();
+		if (cacheFile == null) {
+			return;
+		}
+		List<String> classpath = compilationUnitFactory.getAdditionalClasspathList();
+		scheduler.execute(Lane.INDEXING, () -> {
+			Map<URI, Long> contentHashes = new HashMap<>();
+			for (URI uri : visitor.getURIs()) {
+				if (fileContentsTracker.isOpen(uri)) {
+					// the text in the editor may not be saved
+					continue;
+				}
+				String contents = fileContentsTracker.getContents(uri);
+				if (contents != null) {
+					contentHashes.put(uri, FileContentsTracker.hashContents(contents));
+				}
+			}
+			List<? extends WorkspaceSymbol> symbols = new WorkspaceSymbolProvider(visitor)
+					.provideWorkspaceSymbols("").join();
+			try {
+				WorkspaceSymbolCache.save(cacheFile, classpath, contentHashes, new ArrayList<>(symbols));
+			} catch (IOException e) {
+				System.err.println("Failed to save symbol cache: " + cacheFile);
+			}
+		});
+	}
+
 	@Override
 	public void connect(LanguageClient client) {
 		languageClient = client;
@@ -270,6 +367,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	public void didOpen(DidOpenTextDocumentParams params) {
 		fileContentsTracker.didOpen(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
+		scheduleSyntaxCheck(uri);
 		scheduleCompileAndVisitAST(uri);
 	}
 
@@ -277,6 +375,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	public void didChange(DidChangeTextDocumentParams params) {
 		fileContentsTracker.didChange(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
+		scheduleSyntaxCheck(uri);
 		scheduleCompileAndVisitAST(uri);
 	}
 
@@ -284,6 +383,14 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	public void didClose(DidCloseTextDocumentParams params) {
 		fileContentsTracker.didClose(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
+		synchronized (compileLock) {
+			Future<?> pendingSyntaxCheck = pendingSyntaxChecks.remove(uri);
+			if (pendingSyntaxCheck != null) {
+				pendingSyntaxCheck.cancel(false);
+			}
+		}
+		syntaxSnapshots.remove(uri);
+		publishedSyntaxDiagnostics.remove(uri);
 		if (languageClient != null) {
 			languageClient.publishDiagnostics(new PublishDiagnosticsParams(uri.toString(), new ArrayList<>()));
 		}
@@ -311,9 +418,12 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		detectGrailsProject();
 		scheduleMavenIndexing();
 		synchronized (compileOperationLock) {
-			boolean isSameUnit = createOrUpdateCompilationUnit();
+			compilationUnitFactory.didChangeWatchedFiles(params.getChanges());
 			Set<URI> urisWithChanges = params.getChanges().stream().map(fileEvent -> URI.create(fileEvent.getUri()))
 					.collect(Collectors.toSet());
+			// sources with the same contents as before are not parsed again
+			urisWithChanges.forEach(fileContentsTracker::forceChanged);
+			boolean isSameUnit = createOrUpdateCompilationUnit();
 			compile();
 			if (isSameUnit) {
 				visitAST(urisWithChanges);
@@ -331,12 +441,14 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		JsonObject settings = (JsonObject) params.getSettings();
 		this.updateConfiguration(settings);
 		this.updateFormattingSettings(settings);
+		this.updateInspectionSettings(settings);
 	}
 
 	private void updateConfiguration(JsonObject settings) {
 		List<String> prevExcludePatterns = new ArrayList<>(excludePatterns);
 		List<String> prevSourceRoots = new ArrayList<>(sourceRoots);
 		boolean prevClasspathRecursive = classpathRecursive;
+		boolean prevCompactClosedFiles = compactClosedFiles;
 
 		List<String> classpathList = new ArrayList<>();
 		List<String> nextExcludePatterns = new ArrayList<>();
@@ -346,6 +458,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		List<String> nextGradleScopes = new ArrayList<>();
 		boolean nextGradleIncludeBuildscript = false;
 		boolean nextClasspathRecursive = false;
+		boolean nextCompactClosedFiles = false;
 
 		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
 			JsonObject groovy = settings.get("groovy").getAsJsonObject();
@@ -355,6 +468,9 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			if (groovy.has("classpathRecursive") && groovy.get("classpathRecursive").isJsonPrimitive()) {
 				nextClasspathRecursive = groovy.get("classpathRecursive").getAsBoolean();
 			}
+			if (groovy.has("compactClosedFiles") && groovy.get("compactClosedFiles").isJsonPrimitive()) {
+				nextCompactClosedFiles = groovy.get("compactClosedFiles").getAsBoolean();
+			}
 			if (groovy.has("maven") && groovy.get("maven").isJsonObject()) {
 				JsonObject maven = groovy.get("maven").getAsJsonObject();
 				nextMavenRepositories.addAll(readStringArray(maven, "repositories"));
@@ -375,6 +491,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		mavenRepositories = nextMavenRepositories;
 		mavenDependencies = nextMavenDependencies;
 		classpathRecursive = nextClasspathRecursive;
+		compactClosedFiles = nextCompactClosedFiles;
 		gradleClasspathScopes = nextGradleScopes;
 		gradleIncludeBuildscript = nextGradleIncludeBuildscript;
 
@@ -392,7 +509,8 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 		boolean structureChanged = !prevExcludePatterns.equals(excludePatterns)
 				|| !prevSourceRoots.equals(sourceRoots)
-				|| prevClasspathRecursive != classpathRecursive;
+				|| prevClasspathRecursive != classpathRecursive
+				|| prevCompactClosedFiles != compactClosedFiles;
 		if (structureChanged) {
 			synchronized (compileOperationLock) {
 				boolean isSameUnit = createOrUpdateCompilationUnit();
@@ -488,6 +606,27 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 	}
 
+	private void updateInspectionSettings(JsonObject settings) {
+		Set<String> disabled = new HashSet<>();
+		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
+			JsonObject groovy = settings.get("groovy").getAsJsonObject();
+			if (groovy.has("inspections") && groovy.get("inspections").isJsonObject()) {
+				disabled.addAll(readStringArray(groovy.get("inspections").getAsJsonObject(), "disabled"));
+			}
+		}
+		if (disabled.equals(inspectionEngine.getDisabledInspections())) {
+			return;
+		}
+		inspectionEngine.setDisabledInspections(disabled);
+		synchronized (compileOperationLock) {
+			inspectionsByURI.clear();
+			ASTSnapshot current = snapshot;
+			if (current != null) {
+				publishSnapshot(current.getVisitor(), null);
+			}
+		}
+	}
+
 	@Override
 	public CompletableFuture<List<? extends TextEdit>> formatting(DocumentFormattingParams params) {
 		return formattingProvider.provideDocumentFormatting(params.getTextDocument());
@@ -503,282 +642,396 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	@Override
 	public CompletableFuture<Hover> hover(HoverParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-		ensureClassGraphAvailable();
+		return runReadRequest(Lane.INTERACTIVE, uri, ast -> {
+			ensureClassGraphAvailable();
 
-		HoverProvider provider = new HoverProvider(astVisitor);
-		return provider.provideHover(params.getTextDocument(), params.getPosition());
+			HoverProvider provider = new HoverProvider(ast);
+			return provider.provideHover(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> completion(CompletionParams params) {
+		return scheduler.compute(Lane.INTERACTIVE, cancelChecker -> provideCompletion(params, cancelChecker).join());
+	}
+
+	private CompletableFuture<Either<List<CompletionItem>, CompletionList>> provideCompletion(
+			CompletionParams params, CancelChecker cancelChecker) {
 		TextDocumentIdentifier textDocument = params.getTextDocument();
 		Position position = params.getPosition();
 		URI uri = URI.create(textDocument.getUri());
 
-		ensureCompiledForRequest(uri);
-
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			int offset = Positions.getOffset(originalSource, position);
-			String lineBeforeOffset = originalSource.substring(offset - position.getCharacter(), offset);
-			Matcher matcher = PATTERN_CONSTRUCTOR_CALL.matcher(lineBeforeOffset);
-			TextDocumentContentChangeEvent changeEvent = null;
-			if (matcher.matches()) {
-				changeEvent = new TextDocumentContentChangeEvent();
-				changeEvent.setRange(new Range(position, position));
-				changeEvent.setText("a()");
-			} else {
-				changeEvent = new TextDocumentContentChangeEvent();
-				changeEvent.setRange(new Range(position, position));
-				changeEvent.setText("a");
-			}
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			// if the offset node is null, there is probably a syntax error.
-			// a completion request is usually triggered by the . character, and
-			// if there is no property name after the dot, it will cause a syntax
-			// error.
-			// this hack adds a placeholder property name in the hopes that it
-			// will correctly create a PropertyExpression to use for completion.
-			// we'll restore the original text after we're done handling the
-			// completion request.
-			applyDidChangeAndCompileNow(didChangeParams);
-		}
-
-		CompletableFuture<Either<List<CompletionItem>, CompletionList>> result = null;
-		try {
-			CompletionProvider provider = new CompletionProvider(astVisitor, classGraphScanResult, fileContentsTracker);
-			result = provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
-		} finally {
-			if (originalSource != null) {
-				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
-				changeEvent.setRange(null);
-				changeEvent.setText(originalSource);
-				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-						Collections.singletonList(changeEvent));
-				applyDidChangeAndCompileNow(didChangeParams);
-			}
+		ASTSnapshot current = getSnapshotForRead(uri);
+		cancelChecker.checkCanceled();
+		PieceTable.Snapshot contents = fileContentsTracker.getContentsSnapshot(uri);
+		if (contents == null) {
+			return CompletableFuture.completedFuture(Either.forLeft(Collections.emptyList()));
+		}
+		String originalSource = contents.toString();
+
+		// the latest snapshot may be older than the file, if the background
+		// compile hasn't finished yet, and then only the file is compiled
+		// again, into an overlay of the snapshot
+		ASTNodeVisitor astVisitor = getVisitor(current);
+		if (!isSnapshotOfContents(current, uri, originalSource)) {
+			astVisitor = visitDetachedSource(uri, originalSource, current);
+			cancelChecker.checkCanceled();
+		}
+		ASTNode offsetNode = astVisitor != null
+				? astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter())
+				: null;
+		if (offsetNode != null) {
+			CompletionProvider provider = new CompletionProvider(astVisitor, classGraphScanResult, fileContentsTracker,
+					cancelChecker);
+			return provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
+		}
+
+		// if the offset node is null, there is probably a syntax error.
+		// a completion request is usually triggered by the . character, and
+		// if there is no property name after the dot, it will cause a syntax
+		// error.
+		// a copy of the file with a placeholder property name is compiled
+		// in the hopes that it will correctly create a PropertyExpression to
+		// use for completion. the file contents and the workspace compilation
+		// unit are not changed.
+		int offset = contents.getLineOffsets().getOffset(position);
+		if (offset == -1) {
+			return CompletableFuture.completedFuture(Either.forLeft(Collections.emptyList()));
+		}
+		int lineStart = contents.getLineOffsets().getLineStart(position.getLine());
+		String lineBeforeOffset = originalSource.substring(lineStart, offset);
+		Matcher matcher = PATTERN_CONSTRUCTOR_CALL.matcher(lineBeforeOffset);
+		String placeholder = matcher.matches() ? "a()" : "a";
+		String placeholderSource = originalSource.substring(0, offset) + placeholder
+				+ originalSource.substring(offset);
+		astVisitor = visitDetachedSource(uri, placeholderSource, current);
+		cancelChecker.checkCanceled();
+
+		CompletionProvider provider = new CompletionProvider(astVisitor, classGraphScanResult, fileContentsTracker,
+				cancelChecker);
+		return provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
+	}
+
+	/**
+	 * Compiles a copy of a file, like a copy with a placeholder, against the
+	 * classes of a snapshot, and returns an overlay of the snapshot's visitor
+	 * where the AST of the copy replaces the AST of the file. Neither the
+	 * snapshot nor the workspace compilation unit is changed, so a compile in
+	 * progress doesn't need to finish or be cancelled first.
+	 */
+	private ASTNodeVisitor visitDetachedSource(URI uri, String contents, ASTSnapshot current) {
+		GroovyLSCompilationUnit unit = compilationUnit;
+		ASTNodeVisitor visitor = current != null ? current.getVisitor() : new ASTNodeVisitor();
+		if (unit == null) {
+			return visitor;
+		}
+		GroovyLSCompilationUnit detachedUnit = unit.compileDetachedSource(uri, contents, Phases.CANONICALIZATION,
+				name -> {
+					ClassNode classNode = visitor.findClassNodeByName(name);
+					return classNode != null && classNode.getName().equals(name) ? classNode : null;
+				});
+		return visitor.withOverlay(detachedUnit, uri);
+	}
+
+	/**
+	 * Finds the declarations of the class whose name, which may be qualified,
+	 * is at a position in the text of a file.
+	 */
+	private List<Location> findCachedClassDeclarations(URI uri, Position position, WorkspaceSymbolCache cache) {
+		PieceTable.Snapshot contents = fileContentsTracker.getContentsSnapshot(uri);
+		int offset = contents != null ? contents.getLineOffsets().getOffset(position) : -1;
+		if (offset == -1) {
+			return Collections.emptyList();
+		}
+		String source = contents.toString();
+		int start = offset;
+		while (start > 0 && (Character.isJavaIdentifierPart(source.charAt(start - 1))
+				|| source.charAt(start - 1) == '.')) {
+			start--;
+		}
+		int end = offset;
+		while (end < source.length() && Character.isJavaIdentifierPart(source.charAt(end))) {
+			end++;
+		}
+		String name = source.substring(start, end);
+		if (name.isEmpty() || name.startsWith(".") || name.endsWith(".")
+				|| !Character.isUpperCase(name.charAt(name.lastIndexOf('.') + 1))) {
+			// members can't be resolved without the type of their receiver
+			return Collections.emptyList();
 		}
+		return cache.findClassDeclarations(name);
+	}
 
-		return result;
+	/**
+	 * Checks if the AST of a file in a snapshot was compiled from the
+	 * specified contents.
+	 */
+	private static boolean isSnapshotOfContents(ASTSnapshot current, URI uri, String contents) {
+		ModuleNode moduleNode = current != null ? current.getVisitor().getModuleNode(uri) : null;
+		if (moduleNode == null || moduleNode.getContext() == null) {
+			return false;
+		}
+		ReaderSource source = moduleNode.getContext().getSource();
+		return source instanceof StringReaderSourceWithURI
+				&& contents.equals(((StringReaderSourceWithURI) source).getContents());
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> definition(
 			DefinitionParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		DefinitionProvider provider = new DefinitionProvider(astVisitor);
-		return provider.provideDefinition(params.getTextDocument(), params.getPosition());
+		WorkspaceSymbolCache cache = symbolCache;
+		if (snapshot == null && cache != null && !cache.isEmpty()) {
+			// before the workspace has been compiled, a class in a file that
+			// isn't open may be found in the symbols saved by the last session
+			List<Location> locations = findCachedClassDeclarations(uri, params.getPosition(), cache);
+			if (!locations.isEmpty()) {
+				scheduler.execute(Lane.DIAGNOSTICS, this::ensureAstAvailable);
+				return CompletableFuture.completedFuture(Either.forLeft(locations));
+			}
+		}
+		return runReadRequest(uri, ast -> {
+			DefinitionProvider provider = new DefinitionProvider(ast);
+			return provider.provideDefinition(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<SignatureHelp> signatureHelp(SignatureHelpParams params) {
+		return scheduler.compute(Lane.INTERACTIVE, cancelChecker -> {
+			cancelChecker.checkCanceled();
+			return provideSignatureHelp(params).join();
+		});
+	}
+
+	private CompletableFuture<SignatureHelp> provideSignatureHelp(SignatureHelpParams params) {
 		TextDocumentIdentifier textDocument = params.getTextDocument();
 		Position position = params.getPosition();
 		URI uri = URI.create(textDocument.getUri());
 
-		ensureCompiledForRequest(uri);
-
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
-			changeEvent.setRange(new Range(position, position));
-			changeEvent.setText(")");
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			// if the offset node is null, there is probably a syntax error.
-			// a signature help request is usually triggered by the ( character,
-			// and if there is no matching ), it will cause a syntax error.
-			// this hack adds a placeholder ) character in the hopes that it
-			// will correctly create a ArgumentListExpression to use for
-			// signature help.
-			// we'll restore the original text after we're done handling the
-			// signature help request.
-			applyDidChangeAndCompileNow(didChangeParams);
+		ASTSnapshot current = getSnapshotForRead(uri);
+		ASTNodeVisitor astVisitor = getVisitor(current);
+		PieceTable.Snapshot contents = fileContentsTracker.getContentsSnapshot(uri);
+		if (contents == null) {
+			return CompletableFuture.completedFuture(new SignatureHelp(Collections.emptyList(), -1, -1));
 		}
+		String source = contents.toString();
 
-		try {
-			SignatureHelpProvider provider = new SignatureHelpProvider(astVisitor);
-			return provider.provideSignatureHelp(params.getTextDocument(), params.getPosition());
-		} finally {
-			if (originalSource != null) {
-				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
-				changeEvent.setRange(null);
-				changeEvent.setText(originalSource);
-				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-						Collections.singletonList(changeEvent));
-				applyDidChangeAndCompileNow(didChangeParams);
+		if (astVisitor != null && isSnapshotOfContents(current, uri, source)
+				&& astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter()) != null) {
+			SignatureHelp result = new SignatureHelpProvider(astVisitor)
+					.provideSignatureHelp(textDocument, position).join();
+			if (!result.getSignatures().isEmpty()) {
+				return CompletableFuture.completedFuture(result);
 			}
 		}
+
+		// signature help is usually requested as ( or , is typed, so the call
+		// is usually unfinished and the AST is older than the text. the call
+		// is found by scanning the text instead, and the method is resolved
+		// against the existing AST, without compiling anything.
+		int offset = contents.getLineOffsets().getOffset(position);
+		CallSite callSite = offset != -1 ? CallSite.find(source, offset) : null;
+		if (callSite == null) {
+			return CompletableFuture.completedFuture(new SignatureHelp(Collections.emptyList(), -1, -1));
+		}
+		Position openParenPosition = contents.getLineOffsets().getPosition(callSite.getOpenParenOffset());
+		ModuleNode moduleNode = astVisitor != null ? astVisitor.getModuleNode(uri) : null;
+		if (moduleNode == null || moduleNode.getClasses().isEmpty()) {
+			// the file has never compiled, so there is nothing to resolve the
+			// call against. a copy of the file with a placeholder ) character
+			// is compiled instead, like completion does.
+			String placeholderSource = source.substring(0, offset) + ")" + source.substring(offset);
+			astVisitor = visitDetachedSource(uri, placeholderSource, current);
+		}
+		SignatureHelpProvider provider = new SignatureHelpProvider(astVisitor);
+		return provider.provideSignatureHelp(textDocument, openParenPosition, callSite);
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> typeDefinition(
 			TypeDefinitionParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
-		return provider.provideTypeDefinition(params.getTextDocument(), params.getPosition());
+		return runReadRequest(uri, ast -> {
+			TypeDefinitionProvider provider = new TypeDefinitionProvider(ast);
+			return provider.provideTypeDefinition(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> implementation(
 			ImplementationParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		ImplementationProvider provider = new ImplementationProvider(astVisitor);
-		return provider.provideImplementation(params.getTextDocument(), params.getPosition());
+		return runReadRequest(uri, ast -> {
+			ImplementationProvider provider = new ImplementationProvider(ast);
+			return provider.provideImplementation(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<TypeHierarchyItem>> prepareTypeHierarchy(TypeHierarchyPrepareParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		TypeHierarchyProvider provider = new TypeHierarchyProvider(astVisitor);
-		return provider.prepareTypeHierarchy(params.getTextDocument(), params.getPosition());
+		return runReadRequest(uri, ast -> {
+			TypeHierarchyProvider provider = new TypeHierarchyProvider(ast);
+			return provider.prepareTypeHierarchy(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<TypeHierarchyItem>> typeHierarchySupertypes(TypeHierarchySupertypesParams params) {
-		ensureAstAvailable();
-		TypeHierarchyProvider provider = new TypeHierarchyProvider(astVisitor);
-		return provider.provideSupertypes(params.getItem());
+		return runReadRequest(null, ast -> {
+			TypeHierarchyProvider provider = new TypeHierarchyProvider(ast);
+			return provider.provideSupertypes(params.getItem());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<TypeHierarchyItem>> typeHierarchySubtypes(TypeHierarchySubtypesParams params) {
-		ensureAstAvailable();
-		TypeHierarchyProvider provider = new TypeHierarchyProvider(astVisitor);
-		return provider.provideSubtypes(params.getItem());
+		return runReadRequest(null, ast -> {
+			TypeHierarchyProvider provider = new TypeHierarchyProvider(ast);
+			return provider.provideSubtypes(params.getItem());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<CallHierarchyItem>> prepareCallHierarchy(CallHierarchyPrepareParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-		CallHierarchyProvider provider = new CallHierarchyProvider(astVisitor);
-		return provider.prepareCallHierarchy(params.getTextDocument(), params.getPosition());
+		return runReadRequest(uri, (ast, cancelChecker) -> {
+			CallHierarchyProvider provider = new CallHierarchyProvider(ast, cancelChecker);
+			return provider.prepareCallHierarchy(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<CallHierarchyIncomingCall>> callHierarchyIncomingCalls(
 			CallHierarchyIncomingCallsParams params) {
-		ensureAstAvailable();
-		CallHierarchyProvider provider = new CallHierarchyProvider(astVisitor);
-		return provider.provideIncomingCalls(params.getItem());
+		return runReadRequest(null, (ast, cancelChecker) -> {
+			CallHierarchyProvider provider = new CallHierarchyProvider(ast, cancelChecker);
+			return provider.provideIncomingCalls(params.getItem());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<CallHierarchyOutgoingCall>> callHierarchyOutgoingCalls(
 			CallHierarchyOutgoingCallsParams params) {
-		ensureAstAvailable();
-		CallHierarchyProvider provider = new CallHierarchyProvider(astVisitor);
-		return provider.provideOutgoingCalls(params.getItem());
+		return runReadRequest(null, (ast, cancelChecker) -> {
+			CallHierarchyProvider provider = new CallHierarchyProvider(ast, cancelChecker);
+			return provider.provideOutgoingCalls(params.getItem());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		ReferenceProvider provider = new ReferenceProvider(astVisitor);
-		return provider.provideReferences(params.getTextDocument(), params.getPosition());
+		return runReadRequest(uri, (ast, cancelChecker) -> {
+			ReferenceProvider provider = new ReferenceProvider(ast, cancelChecker);
+			return provider.provideReferences(params.getTextDocument(), params.getPosition());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> documentSymbol(
 			DocumentSymbolParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		DocumentSymbolProvider provider = new DocumentSymbolProvider(astVisitor);
-		return provider.provideDocumentSymbols(params.getTextDocument());
+		return runSyntaxRequest(uri, ast -> {
+			DocumentSymbolProvider provider = new DocumentSymbolProvider(ast);
+			return provider.provideDocumentSymbols(params.getTextDocument());
+		});
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends SymbolInformation>, List<? extends WorkspaceSymbol>>> symbol(
 			WorkspaceSymbolParams params) {
-		ensureAstAvailable();
-		WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor);
-		List<WorkspaceSymbol> results = new ArrayList<>(
-				provider.provideWorkspaceSymbols(params.getQuery()).join());
-		if (grailsProjectInfo != null && workspaceRoot != null) {
-			GspTemplateSymbolProvider gspProvider = new GspTemplateSymbolProvider(workspaceRoot, grailsProjectInfo);
-			results.addAll(gspProvider.provideWorkspaceSymbols(params.getQuery()));
-		}
-		return CompletableFuture.completedFuture(Either.forRight(results));
+		WorkspaceSymbolCache cache = symbolCache;
+		if (snapshot == null && cache != null && !cache.isEmpty()) {
+			// answer from the symbols saved by the last session, and compile
+			// the workspace in the background
+			scheduler.execute(Lane.DIAGNOSTICS, this::ensureAstAvailable);
+			List<WorkspaceSymbol> results = cache.findSymbols(params.getQuery());
+			if (grailsProjectInfo != null && workspaceRoot != null) {
+				GspTemplateSymbolProvider gspProvider = new GspTemplateSymbolProvider(workspaceRoot, grailsProjectInfo);
+				results.addAll(gspProvider.provideWorkspaceSymbols(params.getQuery()));
+			}
+			return CompletableFuture.completedFuture(Either.forRight(results));
+		}
+		return runReadRequest(null, (ast, cancelChecker) -> {
+			WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(ast, cancelChecker);
+			List<WorkspaceSymbol> results = new ArrayList<>(
+					provider.provideWorkspaceSymbols(params.getQuery()).join());
+			if (grailsProjectInfo != null && workspaceRoot != null) {
+				GspTemplateSymbolProvider gspProvider = new GspTemplateSymbolProvider(workspaceRoot, grailsProjectInfo);
+				results.addAll(gspProvider.provideWorkspaceSymbols(params.getQuery()));
+			}
+			return CompletableFuture.completedFuture(Either.forRight(results));
+		});
 	}
 
 	@Override
 	public CompletableFuture<Either3<Range, PrepareRenameResult, PrepareRenameDefaultBehavior>> prepareRename(PrepareRenameParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
-		CompletableFuture<Either<Range, Range>> result = provider.providePrepareRename(params.getTextDocument(), params.getPosition());
+		return runCompiledRequest(uri, ast -> {
+			RenameProvider provider = new RenameProvider(ast, fileContentsTracker);
+			CompletableFuture<Either<Range, Range>> result = provider.providePrepareRename(params.getTextDocument(), params.getPosition());
 		
-		return result.thenApply(either -> {
-			if (either == null) {
-				return null;
-			}
-			// Convert Either<Range, Range> to Either3<Range, PrepareRenameResult, PrepareRenameDefaultBehavior>
-			return Either3.forFirst(either.getLeft());
+			return result.thenApply(either -> {
+				if (either == null) {
+					return null;
+				}
+				// Convert Either<Range, Range> to Either3<Range, PrepareRenameResult, PrepareRenameDefaultBehavior>
+				return Either3.forFirst(either.getLeft());
+			});
 		});
 	}
 
 	@Override
 	public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
-		return provider.provideRename(params);
+		return runCompiledRequest(uri, ast -> {
+			RenameProvider provider = new RenameProvider(ast, fileContentsTracker);
+			return provider.provideRename(params);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<FoldingRange>> foldingRange(FoldingRangeRequestParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		FoldingRangeProvider provider = new FoldingRangeProvider(astVisitor);
-		return provider.provideFoldingRanges(params.getTextDocument());
+		return runSyntaxRequest(uri, ast -> {
+			FoldingRangeProvider provider = new FoldingRangeProvider(ast);
+			return provider.provideFoldingRanges(params.getTextDocument());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<SelectionRange>> selectionRange(SelectionRangeParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
-
-		SelectionRangeProvider provider = new SelectionRangeProvider(astVisitor);
-		return provider.provideSelectionRanges(params.getTextDocument(), params.getPositions());
+		return runSyntaxRequest(uri, ast -> {
+			SelectionRangeProvider provider = new SelectionRangeProvider(ast);
+			return provider.provideSelectionRanges(params.getTextDocument(), params.getPositions());
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends CodeLens>> codeLens(CodeLensParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		ensureCompiledForRequest(uri);
+		return runReadRequest(uri, ast -> {
+			CodeLensProvider provider = new CodeLensProvider(ast);
+			CompletableFuture<List<CodeLens>> result = provider.provideCodeLenses(params.getTextDocument());
+			return result.thenApply(lenses -> lenses);
+		});
+	}
 
-		CodeLensProvider provider = new CodeLensProvider(astVisitor);
-		CompletableFuture<List<CodeLens>> result = provider.provideCodeLenses(params.getTextDocument());
-		return result.thenApply(lenses -> lenses);
+	@Override
+	public CompletableFuture<CodeLens> resolveCodeLens(CodeLens unresolved) {
+		JsonObject data = unresolved != null ? toJsonObject(unresolved.getData()) : null;
+		URI uri = null;
+		if (data != null && data.has("uri")) {
+			unresolved.setData(data);
+			uri = URI.create(data.get("uri").getAsString());
+		}
+		return runReadRequest(uri, ast -> {
+			CodeLensProvider provider = new CodeLensProvider(ast);
+			return provider.resolveCodeLens(unresolved);
+		});
 	}
 
 	@Override
@@ -788,15 +1041,17 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 		switch (params.getCommand()) {
 			case "groovy.findUsages":
-				return CompletableFuture.completedFuture(handleFindUsages(params));
+				return scheduler.compute(Lane.NORMAL, cancelChecker -> handleFindUsages(params, cancelChecker));
 			case "groovy.goToSuperMethod":
-				return CompletableFuture.completedFuture(handleGoToSuperMethod(params));
+				return scheduler.compute(Lane.NORMAL, cancelChecker -> handleGoToSuperMethod(params, cancelChecker));
+			case "groovy.inspectionTimings":
+				return CompletableFuture.completedFuture(inspectionEngine.getTimings());
 			default:
 				return CompletableFuture.completedFuture(null);
 		}
 	}
 
-	private Object handleFindUsages(ExecuteCommandParams params) {
+	private Object handleFindUsages(ExecuteCommandParams params, CancelChecker cancelChecker) {
 		if (params.getArguments() == null || params.getArguments().isEmpty()) {
 			return Collections.emptyList();
 		}
@@ -824,13 +1079,14 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 		TextDocumentIdentifier doc = new TextDocumentIdentifier(uriValue);
 		Position pos = new Position(line, character);
-		ensureCompiledForRequest(URI.create(uriValue));
-		UsageProvider provider = new UsageProvider(astVisitor);
+		ASTNodeVisitor ast = getVisitor(getSnapshotForRead(URI.create(uriValue)));
+		cancelChecker.checkCanceled();
+		UsageProvider provider = new UsageProvider(ast, cancelChecker);
 		List<UsageItem> usages = provider.provideUsages(doc, pos, new HashSet<>(filters));
 		return usages;
 	}
 
-	private Object handleGoToSuperMethod(ExecuteCommandParams params) {
+	private Object handleGoToSuperMethod(ExecuteCommandParams params, CancelChecker cancelChecker) {
 		if (params.getArguments() == null || params.getArguments().isEmpty()) {
 			return Collections.emptyList();
 		}
@@ -849,8 +1105,9 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		int character = position.has("character") ? position.get("character").getAsInt() : 0;
 		TextDocumentIdentifier doc = new TextDocumentIdentifier(uriValue);
 		Position pos = new Position(line, character);
-		ensureCompiledForRequest(URI.create(uriValue));
-		SuperMethodProvider provider = new SuperMethodProvider(astVisitor);
+		ASTNodeVisitor ast = getVisitor(getSnapshotForRead(URI.create(uriValue)));
+		cancelChecker.checkCanceled();
+		SuperMethodProvider provider = new SuperMethodProvider(ast, cancelChecker);
 		return provider.provideSuperMethod(doc, pos).join();
 	}
 
@@ -870,19 +1127,213 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor = new ASTNodeVisitor();
-		astVisitor.visitCompilationUnit(compilationUnit);
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.setCompactFilter(getCompactFilter());
+		visitor.visitCompilationUnit(compilationUnit);
+		publishSnapshot(visitor, null);
 	}
 
 	private void visitAST(Set<URI> uris) {
-		if (astVisitor == null) {
+		ASTSnapshot current = snapshot;
+		if (current == null) {
 			visitAST();
 			return;
 		}
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor.visitCompilationUnit(compilationUnit, uris);
+		// requests may still be reading the current snapshot, so the visitor
+		// is copied instead of being visited again in place
+		ASTNodeVisitor visitor = current.getVisitor().copy();
+		visitor.setCompactFilter(getCompactFilter());
+		visitor.visitCompilationUnit(compilationUnit, uris);
+		publishSnapshot(visitor, uris);
+	}
+
+	/**
+	 * Closed files may keep only their declarations, to save memory in large
+	 * workspaces.
+	 */
+	private Predicate<URI> getCompactFilter() {
+		if (!compactClosedFiles) {
+			return null;
+		}
+		return uri -> !fileContentsTracker.isOpen(uri);
+	}
+
+	/**
+	 * Publishes a new snapshot, along with its diagnostics. If visitedURIs is
+	 * null, the whole compilation unit was visited.
+	 */
+	private void publishSnapshot(ASTNodeVisitor visitor, Set<URI> visitedURIs) {
+		Map<URI, List<Diagnostic>> diagnosticsByFile = updateDiagnostics(visitor);
+		snapshotVersion++;
+		snapshot = new ASTSnapshot(snapshotVersion, visitor, diagnosticsByFile);
+		if (visitedURIs == null) {
+			symbolCache = null;
+			saveSymbolCache(visitor);
+		}
+		if (languageClient != null) {
+			getDiagnosticsToPublish(diagnosticsByFile).stream()
+					.filter(params -> isOpenDocumentUri(URI.create(params.getUri())))
+					.forEach(languageClient::publishDiagnostics);
+		}
+		Consumer<ASTSnapshot> listener = snapshotListener;
+		if (listener != null) {
+			listener.accept(snapshot);
+		}
+	}
+
+	/**
+	 * Sets a listener that is called after each snapshot is published, which
+	 * lets tests tell the semantic diagnostics apart from syntax errors.
+	 */
+	void setSnapshotListener(Consumer<ASTSnapshot> snapshotListener) {
+		this.snapshotListener = snapshotListener;
+	}
+
+	private static ASTNodeVisitor getVisitor(ASTSnapshot snapshot) {
+		return snapshot != null ? snapshot.getVisitor() : null;
+	}
+
+	/**
+	 * Runs a request that only reads the AST on the request pool, against the
+	 * latest snapshot. If the context URI is null, any snapshot will do.
+	 */
+	private <T> CompletableFuture<T> runReadRequest(URI contextURI,
+			Function<ASTNodeVisitor, CompletableFuture<T>> request) {
+		return runReadRequest(Lane.NORMAL, contextURI, (ast, cancelChecker) -> request.apply(ast));
+	}
+
+	private <T> CompletableFuture<T> runReadRequest(Lane lane, URI contextURI,
+			Function<ASTNodeVisitor, CompletableFuture<T>> request) {
+		return runReadRequest(lane, contextURI, (ast, cancelChecker) -> request.apply(ast));
+	}
+
+	private <T> CompletableFuture<T> runReadRequest(URI contextURI,
+			BiFunction<ASTNodeVisitor, CancelChecker, CompletableFuture<T>> request) {
+		return runReadRequest(Lane.NORMAL, contextURI, request);
+	}
+
+	/**
+	 * Requests that were cancelled by the client while waiting in their lane
+	 * are dropped before they read the AST. Longer requests may check the
+	 * cancel checker themselves.
+	 */
+	private <T> CompletableFuture<T> runReadRequest(Lane lane, URI contextURI,
+			BiFunction<ASTNodeVisitor, CancelChecker, CompletableFuture<T>> request) {
+		return scheduler.compute(lane, cancelChecker -> {
+			cancelChecker.checkCanceled();
+			ASTSnapshot current = getSnapshotForRead(contextURI);
+			cancelChecker.checkCanceled();
+			return request.apply(getVisitor(current), cancelChecker).join();
+		});
+	}
+
+	/**
+	 * Runs a request that needs the AST of the latest contents of the context
+	 * file, like rename, which compiles on the request thread if a compile is
+	 * pending.
+	 */
+	private <T> CompletableFuture<T> runCompiledRequest(URI contextURI,
+			Function<ASTNodeVisitor, CompletableFuture<T>> request) {
+		return scheduler.compute(Lane.NORMAL, cancelChecker -> {
+			cancelChecker.checkCanceled();
+			ASTSnapshot current = ensureCompiledForRequest(contextURI);
+			cancelChecker.checkCanceled();
+			return request.apply(getVisitor(current)).join();
+		});
+	}
+
+	/**
+	 * Runs a request that only needs the syntax of an open file, against an
+	 * AST that was parsed from its latest contents, without waiting for the
+	 * workspace to be compiled.
+	 */
+	private <T> CompletableFuture<T> runSyntaxRequest(URI uri,
+			Function<ASTNodeVisitor, CompletableFuture<T>> request) {
+		if (compilationUnit == null || !fileContentsTracker.isOpen(uri)) {
+			return runReadRequest(uri, request);
+		}
+		CompletableFuture<SyntaxSnapshot> syntaxFuture = scheduler.compute(Lane.INTERACTIVE, cancelChecker -> {
+			cancelChecker.checkCanceled();
+			return getSyntaxSnapshot(uri);
+		});
+		// the fallback is chained instead of joined, so that it doesn't hold
+		// an interactive thread while it waits in its own lane
+		CompletableFuture<T> result = syntaxFuture.thenCompose(
+				syntax -> syntax != null ? request.apply(syntax.visitor) : runReadRequest(uri, request));
+		result.whenComplete((value, error) -> {
+			if (result.isCancelled()) {
+				syntaxFuture.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the AST of an open file that was parsed without resolving any
+	 * classes, which is parsed again if the file has changed since. Returns
+	 * null if the file isn't open.
+	 */
+	private SyntaxSnapshot getSyntaxSnapshot(URI uri) {
+		GroovyLSCompilationUnit unit = compilationUnit;
+		PieceTable.Snapshot contents = fileContentsTracker.isOpen(uri) ? fileContentsTracker.getContentsSnapshot(uri)
+				: null;
+		if (unit == null || contents == null) {
+			return null;
+		}
+		long contentHash = FileContentsTracker.hashContents(contents);
+		SyntaxSnapshot syntax = syntaxSnapshots.get(uri);
+		if (syntax != null && syntax.contentHash == contentHash) {
+			return syntax;
+		}
+		GroovyLSCompilationUnit parsedUnit = unit.parseDetachedSource(uri, contents.toString());
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(parsedUnit);
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		handleErrorCollector(parsedUnit.getErrorCollector()).diagnosticsByFile.values().forEach(diagnostics::addAll);
+		syntax = new SyntaxSnapshot(contentHash, visitor, diagnostics);
+		syntaxSnapshots.put(uri, syntax);
+		return syntax;
+	}
+
+	private void scheduleSyntaxCheck(URI uri) {
+		synchronized (compileLock) {
+			Future<?> pendingSyntaxCheck = pendingSyntaxChecks.get(uri);
+			if (pendingSyntaxCheck != null) {
+				pendingSyntaxCheck.cancel(false);
+			}
+			pendingSyntaxChecks.put(uri, scheduler.schedule(Lane.DIAGNOSTICS, () -> checkSyntax(uri),
+					SYNTAX_CHECK_DEBOUNCE_MS, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * Publishes the syntax errors of an open file as soon as it is parsed.
+	 * They're published only when they change, since the semantic pass
+	 * publishes them again, along with the other diagnostics.
+	 */
+	private void checkSyntax(URI uri) {
+		SyntaxSnapshot syntax = getSyntaxSnapshot(uri);
+		if (syntax == null || languageClient == null) {
+			return;
+		}
+		List<Diagnostic> previous = publishedSyntaxDiagnostics.put(uri, syntax.diagnostics);
+		if (syntax.diagnostics.equals(previous != null ? previous : Collections.emptyList())) {
+			return;
+		}
+		// the client replaces all of a file's diagnostics, so nothing is
+		// published unless there are new syntax errors, and then the last
+		// inspection results are kept. Syntax errors that were fixed are
+		// cleared by the semantic compile that follows the edit.
+		ASTSnapshot current = snapshot;
+		if (current != null && current.getDiagnostics(uri).containsAll(syntax.diagnostics)) {
+			return;
+		}
+		List<Diagnostic> diagnostics = new ArrayList<>(syntax.diagnostics);
+		diagnostics.addAll(publishedInspectionsByFile.getOrDefault(uri, Collections.emptyList()));
+		languageClient.publishDiagnostics(new PublishDiagnosticsParams(uri.toString(), diagnostics));
 	}
 
 	private boolean createOrUpdateCompilationUnit() {
@@ -929,29 +1380,54 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		compileAndVisitAST(Collections.singleton(newContext));
 	}
 
-	private void ensureCompiledForRequest(URI contextURI) {
+	/**
+	 * Returns the latest published snapshot, without waiting for the pending
+	 * compile, which publishes the next one. A request compiles on its own
+	 * thread only if no snapshot has the context file yet.
+	 */
+	private ASTSnapshot getSnapshotForRead(URI contextURI) {
+		ASTSnapshot current = snapshot;
 		if (contextURI == null) {
-			return;
+			return current != null ? current : ensureAstAvailable();
+		}
+		if (current != null && !current.getVisitor().getNodes(contextURI).isEmpty()) {
+			return current;
+		}
+		return ensureCompiledForRequest(contextURI);
+	}
+
+	private ASTSnapshot ensureCompiledForRequest(URI contextURI) {
+		if (contextURI == null) {
+			return snapshot;
 		}
 		boolean shouldCompileNow = false;
+		// the context URI stays first, because it becomes the previous context
+		Set<URI> urisToCompile = new LinkedHashSet<>();
+		urisToCompile.add(contextURI);
 		synchronized (compileLock) {
 			if (pendingCompile != null) {
 				pendingCompile.cancel(false);
 				pendingCompile = null;
 				shouldCompileNow = true;
+				// the request compiles the files of the cancelled compile too
+				urisToCompile.addAll(pendingContextUris);
+				pendingContextUris.clear();
 			}
 		}
-		boolean hasAstForUri = astVisitor != null && !astVisitor.getNodes(contextURI).isEmpty();
-		if (astVisitor == null || compilationUnit == null || shouldCompileNow || !hasAstForUri) {
-			compileAndVisitAST(Collections.singleton(contextURI));
-			return;
+		ASTSnapshot current = snapshot;
+		boolean hasAstForUri = current != null && !current.getVisitor().getNodes(contextURI).isEmpty();
+		if (current == null || compilationUnit == null || shouldCompileNow || !hasAstForUri) {
+			compileAndVisitAST(urisToCompile);
+			return snapshot;
 		}
 		recompileIfContextChanged(contextURI);
+		return snapshot;
 	}
 
-	private void ensureAstAvailable() {
-		if (astVisitor != null) {
-			return;
+	private ASTSnapshot ensureAstAvailable() {
+		ASTSnapshot current = snapshot;
+		if (current != null) {
+			return current;
 		}
 		synchronized (compileOperationLock) {
 			if (createOrUpdateCompilationUnit()) {
@@ -962,6 +1438,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 				visitAST();
 			}
 		}
+		return snapshot;
 	}
 
 	private void detectGradleProject() {
@@ -970,7 +1447,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	private void scheduleGradleIndexing() {
 		final int generation = gradleIndexGeneration.incrementAndGet();
-		indexingScheduler.execute(() -> {
+		scheduler.execute(Lane.INDEXING, () -> {
 			GradleProjectInfo nextProjectInfo = GradleProjectDetector.detect(workspaceRoot);
 			List<String> nextClasspath = GradleClasspathResolver.resolve(nextProjectInfo, gradleClasspathScopes,
 					gradleIncludeBuildscript);
@@ -994,7 +1471,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 		deps.addAll(mavenDependencies);
 		repos.addAll(mavenRepositories);
-		indexingScheduler.execute(() -> {
+		scheduler.execute(Lane.INDEXING, () -> {
 			List<String> resolved = MavenDependencyResolver.resolve(deps, repos);
 			if (mavenIndexGeneration.get() != generation) {
 				return;
@@ -1007,7 +1484,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	private void scheduleClassGraphScan(GroovyClassLoader loader) {
 		final int generation = classGraphIndexGeneration.incrementAndGet();
-		indexingScheduler.execute(() -> {
+		scheduler.execute(Lane.INDEXING, () -> {
 			ScanResult scanResult = null;
 			try {
 				scanResult = new ClassGraph().overrideClassLoaders(loader).enableClassInfo()
@@ -1046,7 +1523,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	}
 
 	private void applyEffectiveClasspathAsync() {
-		compileScheduler.execute(this::applyEffectiveClasspath);
+		scheduler.execute(Lane.DIAGNOSTICS, this::applyEffectiveClasspath);
 	}
 
 	private void applyEffectiveClasspath() {
@@ -1057,9 +1534,17 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			if (existing == null) {
 				existing = Collections.emptyList();
 			}
+			boolean changed = false;
 			if (!merged.equals(existing)) {
 				compilationUnitFactory.setAdditionalClasspathList(merged);
-
+				changed = true;
+			}
+			Map<Path, List<Path>> moduleDependencies = getModuleDependencies();
+			if (!moduleDependencies.equals(compilationUnitFactory.getModuleDependencies())) {
+				compilationUnitFactory.setModuleDependencies(moduleDependencies);
+				changed = true;
+			}
+			if (changed) {
 				createOrUpdateCompilationUnit();
 				compile();
 				visitAST();
@@ -1068,22 +1553,79 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 	}
 
+	private Map<Path, List<Path>> getModuleDependencies() {
+		Map<Path, List<Path>> result = new HashMap<>();
+		if (gradleProjectInfo != null && gradleProjectInfo.isMultiModule()) {
+			result.putAll(gradleProjectInfo.getModuleDependencies());
+		}
+		if (mavenProjectInfo != null && mavenProjectInfo.isMultiModule()) {
+			mavenProjectInfo.getModuleDependencies().forEach((moduleDir, dependencies) -> {
+				result.merge(moduleDir, dependencies, (a, b) -> {
+					List<Path> merged = new ArrayList<>(a);
+					b.stream().filter(dependency -> !merged.contains(dependency)).forEach(merged::add);
+					return merged;
+				});
+			});
+		}
+		return result;
+	}
+
 	private void compileAndVisitAST(Set<URI> contextURIs) {
+		compileAndVisitAST(contextURIs, false);
+	}
+
+	/**
+	 * If cancellable is true, the compile is abandoned when a file is changed
+	 * before it finishes, because another compile will be scheduled for the
+	 * newer contents, or when a request is waiting to compile instead.
+	 */
+	private void compileAndVisitAST(Set<URI> contextURIs, boolean cancellable) {
 		if (contextURIs == null || contextURIs.isEmpty()) {
 			return;
 		}
+		if (!cancellable) {
+			waitingRequestCompiles.incrementAndGet();
+		}
 		synchronized (compileOperationLock) {
+			if (!cancellable) {
+				waitingRequestCompiles.decrementAndGet();
+			}
+			long modificationCount = fileContentsTracker.getModificationCount();
 			boolean hadChanges = !fileContentsTracker.getChangedURIs().isEmpty();
 			boolean isSameUnit = createOrUpdateCompilationUnit();
 			boolean shouldCompile = compilationUnit != null
-					&& (compilationUnit.hasPendingSources() || astVisitor == null || hadChanges);
+					&& (compilationUnit.hasPendingSources() || snapshot == null || hadChanges || compileCancelled);
 			if (shouldCompile) {
-				compile();
+				if (cancellable) {
+					compilationUnit.setCancellationCheck(() -> waitingRequestCompiles.get() > 0
+							|| fileContentsTracker.getModificationCount() != modificationCount);
+				}
+				boolean completed;
+				try {
+					completed = compile();
+				} finally {
+					compilationUnit.setCancellationCheck(null);
+				}
+				compileCancelled = !completed;
+				if (!completed) {
+					// the next compile needs to visit these files too
+					synchronized (compileLock) {
+						if (pendingCompile == null) {
+							scheduleCompileAndVisitAST(null);
+						}
+						pendingContextUris.addAll(contextURIs);
+					}
+					return;
+				}
 			}
 			if (grailsProjectInfo != null) {
 				visitAST();
 			} else if (isSameUnit && contextURIs != null && !contextURIs.isEmpty()) {
-				visitAST(contextURIs);
+				// files that depend on the changed files may have been
+				// parsed again
+				Set<URI> urisToVisit = new HashSet<>(contextURIs);
+				urisToVisit.addAll(compilationUnit.takeReparsedURIs());
+				visitAST(urisToVisit);
 			} else {
 				visitAST();
 			}
@@ -1099,33 +1641,59 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			if (pendingCompile != null) {
 				pendingCompile.cancel(false);
 			}
-			pendingCompile = compileScheduler.schedule(() -> {
+			pendingCompile = scheduler.schedule(Lane.DIAGNOSTICS, () -> {
 				Set<URI> urisToCompile;
 				synchronized (compileLock) {
 					urisToCompile = new HashSet<>(pendingContextUris);
 					pendingContextUris.clear();
 					pendingCompile = null;
 				}
-				compileAndVisitAST(urisToCompile);
+				compileAndVisitAST(urisToCompile, true);
 			}, DIAGNOSTIC_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
 		}
 	}
 
-	private void applyDidChangeAndCompileNow(DidChangeTextDocumentParams params) {
-		fileContentsTracker.didChange(params);
-		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(Collections.singleton(uri));
-	}
-
-	private void compile() {
+	/**
+	 * Returns false if the compile was cancelled.
+	 */
+	private boolean compile() {
 		if (compilationUnit == null) {
-			return;
+			return true;
+		}
+		if (!compileToCanonicalization()) {
+			return false;
+		}
+		// files that refer to classes whose API changed need to be resolved
+		// again, but when only method bodies changed, their references only
+		// need to point to the new classes
+		Set<String> changedClasses = compilationUnit.takeClassesWithChangedAPI();
+		ASTSnapshot current = snapshot;
+		Set<String> replacedClasses = compilationUnit.getReplacedClassNames();
+		if (!replacedClasses.isEmpty() && current != null) {
+			compilationUnit.redirectReplacedClasses(current.getVisitor().getDependentURIs(replacedClasses));
+		}
+		if (!changedClasses.isEmpty() && current != null) {
+			Set<URI> dependentURIs = current.getVisitor().getDependentURIs(changedClasses);
+			if (!compilationUnit.reparseSources(dependentURIs).isEmpty() && !compileToCanonicalization()) {
+				return false;
+			}
 		}
+		// the other diagnostics are published with the next snapshot, once the
+		// AST has been visited
+		DiagnosticsResult diagnostics = handleErrorCollector(compilationUnit.getErrorCollector());
+		syntaxDiagnosticsByFile = diagnostics.diagnosticsByFile;
+		removeFatalErrorSources(diagnostics.fatalErrorUris);
+		return true;
+	}
+
+	private boolean compileToCanonicalization() {
 		try {
 			// AST is completely built after the canonicalization phase
 			// for code intelligence, we shouldn't need to go further
 			// http://groovy-lang.org/metaprogramming.html#_compilation_phases_guide
 			compilationUnit.compile(Phases.CANONICALIZATION);
+		} catch (CompilationCancelledException e) {
+			return false;
 		} catch (CompilationFailedException e) {
 			// ignore
 		} catch (GroovyBugError e) {
@@ -1135,13 +1703,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			System.err.println("Unexpected exception in language server when compiling Groovy.");
 			e.printStackTrace(System.err);
 		}
-		DiagnosticsResult diagnostics = handleErrorCollector(compilationUnit.getErrorCollector());
-		if (languageClient != null) {
-			diagnostics.diagnostics.stream()
-					.filter(params -> isOpenDocumentUri(URI.create(params.getUri())))
-					.forEach(languageClient::publishDiagnostics);
-		}
-		removeFatalErrorSources(diagnostics.fatalErrorUris);
+		return true;
 	}
 
 	private boolean isOpenDocumentUri(URI uri) {
@@ -1213,488 +1775,99 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 					});
 		}
 
-		ASTNodeVisitor diagnosticsVisitor = null;
-		if (compilationUnit != null) {
-			diagnosticsVisitor = new ASTNodeVisitor();
-			diagnosticsVisitor.visitCompilationUnit(compilationUnit);
-		}
-		collectUndefinedVariableDiagnostics(diagnosticsByFile, diagnosticsVisitor);
-		collectCodeInspectionDiagnostics(diagnosticsByFile, diagnosticsVisitor);
-
-		Set<PublishDiagnosticsParams> result = diagnosticsByFile.entrySet().stream()
-				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
-				.collect(Collectors.toSet());
-
-		if (prevDiagnosticsByFile != null) {
-			for (URI key : prevDiagnosticsByFile.keySet()) {
-				if (!diagnosticsByFile.containsKey(key)) {
-					// send an empty list of diagnostics for files that had
-					// diagnostics previously or they won't be cleared
-					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
-				}
-			}
-		}
-		prevDiagnosticsByFile = diagnosticsByFile;
-		return new DiagnosticsResult(result, fatalErrorUris);
+		return new DiagnosticsResult(diagnosticsByFile, fatalErrorUris);
 	}
 
-	private void collectUndefinedVariableDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile,
-			ASTNodeVisitor visitor) {
-		if (visitor == null) {
-			return;
-		}
-		for (ASTNode node : visitor.getNodes()) {
-			if (!(node instanceof VariableExpression)) {
-				if (node instanceof PropertyExpression) {
-					PropertyExpression propExpr = (PropertyExpression) node;
-					Expression objectExpr = propExpr.getObjectExpression();
-					if (objectExpr instanceof VariableExpression) {
-						VariableExpression objVar = (VariableExpression) objectExpr;
-						if ("this".equals(objVar.getName())) {
-							String propName = propExpr.getPropertyAsString();
-							if (propName != null && !hasEnclosingMember(propName, objVar, visitor)) {
-								URI uri = visitor.getURI(propExpr);
-								Range range = GroovyLanguageServerUtils.astNodeToRange(propExpr.getProperty());
-								if (uri != null && range != null) {
-									Diagnostic diagnostic = new Diagnostic();
-									diagnostic.setRange(range);
-									diagnostic.setSeverity(DiagnosticSeverity.Warning);
-									diagnostic.setMessage("Undefined variable: " + propName);
-									diagnosticsByFile.computeIfAbsent(uri, key -> new ArrayList<>()).add(diagnostic);
-								}
-							}
-						}
-					}
-				}
-				continue;
-			}
-			VariableExpression variable = (VariableExpression) node;
-			String name = variable.getName();
-			if (name == null || name.isBlank()) {
-				continue;
-			}
-			if (name.equals("this") || name.equals("super") || name.equals("it")
-					|| name.equals("delegate") || name.equals("owner")) {
-				continue;
-			}
-			Variable accessed = variable.getAccessedVariable();
-			if (!(accessed instanceof DynamicVariable)) {
-				continue;
-			}
-			if (isClassName(name, visitor)) {
-				continue;
-			}
-			if (hasEnclosingMember(name, variable, visitor)) {
+	/**
+	 * Runs the inspections for files whose text changed, and merges their
+	 * results with the syntax errors from the last compile. Results are
+	 * reused for files with the same text as the last time that they were
+	 * inspected, unless a class that they depend on was added or removed.
+	 */
+	private Map<URI, List<Diagnostic>> updateDiagnostics(ASTNodeVisitor visitor) {
+		Set<URI> uris = visitor.getURIs();
+		// whether a variable is undefined depends on the classes in other
+		// files too, by fully qualified or simple name
+		Set<String> classNames = new HashSet<>();
+		for (ClassNode classNode : visitor.getClassNodes()) {
+			classNames.add(classNode.getName());
+			classNames.add(classNode.getNameWithoutPackage());
+		}
+		if (!classNames.equals(inspectedClassNames)) {
+			Set<String> changedClassNames = new HashSet<>(classNames);
+			changedClassNames.addAll(inspectedClassNames);
+			Set<String> unchangedClassNames = new HashSet<>(classNames);
+			unchangedClassNames.retainAll(inspectedClassNames);
+			changedClassNames.removeAll(unchangedClassNames);
+			inspectionsByURI.values().removeIf(inspections -> !Collections
+					.disjoint(inspections.classNameDependencies, changedClassNames));
+			inspectedClassNames = classNames;
+		}
+		inspectionsByURI.keySet().retainAll(uris);
+		Map<URI, String> sourcesToInspect = new HashMap<>();
+		Map<URI, Long> hashesToInspect = new HashMap<>();
+		for (URI uri : uris) {
+			if (visitor.isCompact(uri)) {
+				// diagnostics are published for open files only, and the
+				// nodes of a compact file would need to be visited again
+				inspectionsByURI.remove(uri);
 				continue;
 			}
-			URI uri = visitor.getURI(variable);
-			if (uri == null) {
+			ModuleNode moduleNode = visitor.getModuleNode(uri);
+			FileInspections inspections = inspectionsByURI.get(uri);
+			if (inspections != null && inspections.moduleNode == moduleNode) {
 				continue;
 			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(variable);
-			if (range == null) {
+			String contents = fileContentsTracker.getContents(uri);
+			long contentHash = FileContentsTracker.hashContents(contents != null ? contents : "");
+			if (inspections != null && inspections.contentHash == contentHash) {
+				// parsed again with the same text, like a dependent of a file
+				// whose API changed
+				inspectionsByURI.put(uri, new FileInspections(contentHash, moduleNode, inspections.diagnostics,
+						inspections.classNameDependencies));
 				continue;
 			}
-			Diagnostic diagnostic = new Diagnostic();
-			diagnostic.setRange(range);
-			diagnostic.setSeverity(DiagnosticSeverity.Warning);
-			diagnostic.setMessage("Undefined variable: " + name);
-			diagnosticsByFile.computeIfAbsent(uri, key -> new ArrayList<>()).add(diagnostic);
-		}
-	}
-
-	private void collectCodeInspectionDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile,
-			ASTNodeVisitor visitor) {
-		if (visitor == null) {
-			return;
+			sourcesToInspect.put(uri, contents);
+			hashesToInspect.put(uri, contentHash);
 		}
-		Map<URI, List<ASTNode>> nodesByUri = new HashMap<>();
-		for (ASTNode node : visitor.getNodes()) {
-			URI uri = visitor.getURI(node);
-			if (uri == null) {
-				continue;
-			}
-			nodesByUri.computeIfAbsent(uri, key -> new ArrayList<>()).add(node);
-		}
-		for (Map.Entry<URI, List<ASTNode>> entry : nodesByUri.entrySet()) {
-			URI uri = entry.getKey();
-			List<ASTNode> nodes = entry.getValue();
-			collectUnusedImportDiagnostics(diagnosticsByFile, visitor, uri, nodes);
-			collectRedundantCastDiagnostics(diagnosticsByFile, uri, nodes);
-			collectUnnecessarySemicolonDiagnostics(diagnosticsByFile, uri, nodes);
-			collectEmptyBlockDiagnostics(diagnosticsByFile, visitor, uri, nodes);
-			collectDuplicateCodeDiagnostics(diagnosticsByFile, uri, nodes);
-			collectCodeStyleDiagnostics(diagnosticsByFile, uri);
-			collectBestPracticeDiagnostics(diagnosticsByFile, uri, nodes);
-		}
-	}
-
-	private void collectUnusedImportDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, ASTNodeVisitor visitor,
-			URI uri, List<ASTNode> nodes) {
-		Set<String> referencedNames = collectReferencedNames(nodes);
-		boolean hasImportNodes = nodes.stream().anyMatch(ImportNode.class::isInstance);
-		if (!hasImportNodes) {
-			collectUnusedImportDiagnosticsFromSource(diagnosticsByFile, uri, referencedNames);
-			return;
-		}
-		for (ASTNode node : nodes) {
-			if (!(node instanceof ImportNode)) {
-				continue;
-			}
-			ImportNode importNode = (ImportNode) node;
-			if (importNode.isStar()) {
-				continue;
-			}
-			String importName = getImportReferenceName(importNode);
-			if (importName == null || importName.isBlank()) {
-				continue;
-			}
-			if (!referencedNames.contains(importName)) {
-				Range range = GroovyLanguageServerUtils.astNodeToRange(importNode);
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Unused import: " + importName);
-			}
+		if (!sourcesToInspect.isEmpty()) {
+			inspectionEngine.inspect(visitor, sourcesToInspect).forEach((uri, result) -> {
+				inspectionsByURI.put(uri, new FileInspections(hashesToInspect.get(uri), visitor.getModuleNode(uri),
+						result.getDiagnostics(), result.getClassNameDependencies()));
+			});
 		}
-	}
 
-	private void collectUnusedImportDiagnosticsFromSource(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri,
-			Set<String> referencedNames) {
-		String source = fileContentsTracker.getContents(uri);
-		if (source == null || source.isBlank()) {
-			return;
-		}
-		String[] lines = source.split("\\r?\\n", -1);
-		for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
-			String line = lines[lineIndex];
-			Matcher matcher = PATTERN_IMPORT_STATEMENT.matcher(line);
-			if (!matcher.matches()) {
-				continue;
-			}
-			String importPath = matcher.group(1);
-			if (importPath == null || importPath.isBlank() || importPath.endsWith(".*")) {
-				continue;
-			}
-			String alias = matcher.group(2);
-			String importName = alias != null && !alias.isBlank() ? alias : getSimpleImportName(importPath);
-			if (importName == null || importName.isBlank()) {
-				continue;
-			}
-			if (!referencedNames.contains(importName)) {
-				Range range = new Range(new Position(lineIndex, 0), new Position(lineIndex, line.length()));
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Unused import: " + importName);
+		Map<URI, List<Diagnostic>> diagnosticsByFile = new HashMap<>();
+		syntaxDiagnosticsByFile.forEach((uri, diagnostics) -> {
+			diagnosticsByFile.computeIfAbsent(uri, key -> new ArrayList<>()).addAll(diagnostics);
+		});
+		Map<URI, List<Diagnostic>> inspectionsByFile = new HashMap<>();
+		inspectionsByURI.forEach((uri, inspections) -> {
+			if (!inspections.diagnostics.isEmpty()) {
+				diagnosticsByFile.computeIfAbsent(uri, key -> new ArrayList<>()).addAll(inspections.diagnostics);
+				inspectionsByFile.put(uri, inspections.diagnostics);
 			}
-		}
+		});
+		publishedInspectionsByFile = inspectionsByFile;
+		return diagnosticsByFile;
 	}
 
-	private String getSimpleImportName(String importPath) {
-		int lastDot = importPath.lastIndexOf('.');
-		String name = lastDot >= 0 ? importPath.substring(lastDot + 1) : importPath;
-		return name != null && !name.isBlank() ? name : null;
-	}
+	private Set<PublishDiagnosticsParams> getDiagnosticsToPublish(Map<URI, List<Diagnostic>> diagnosticsByFile) {
+		Set<PublishDiagnosticsParams> result = diagnosticsByFile.entrySet().stream()
+				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
+				.collect(Collectors.toSet());
 
-	private Set<String> collectReferencedNames(List<ASTNode> nodes) {
-		Set<String> referencedNames = new HashSet<>();
-		for (ASTNode node : nodes) {
-			if (node instanceof ClassExpression) {
-				addClassNodeReference(((ClassExpression) node).getType(), referencedNames);
-			} else if (node instanceof ConstructorCallExpression) {
-				addClassNodeReference(((ConstructorCallExpression) node).getType(), referencedNames);
-			} else if (node instanceof VariableExpression) {
-				String name = ((VariableExpression) node).getName();
-				if (name != null && !name.isBlank()) {
-					referencedNames.add(name);
-				}
-			} else if (node instanceof PropertyExpression) {
-				String name = ((PropertyExpression) node).getPropertyAsString();
-				if (name != null && !name.isBlank()) {
-					referencedNames.add(name);
-				}
-			} else if (node instanceof MethodCallExpression) {
-				String name = ((MethodCallExpression) node).getMethodAsString();
-				if (name != null && !name.isBlank()) {
-					referencedNames.add(name);
-				}
-			} else if (node instanceof StaticMethodCallExpression) {
-				StaticMethodCallExpression staticCall = (StaticMethodCallExpression) node;
-				String name = staticCall.getMethod();
-				if (name != null && !name.isBlank()) {
-					referencedNames.add(name);
+		if (prevDiagnosticsByFile != null) {
+			for (URI key : prevDiagnosticsByFile.keySet()) {
+				if (!diagnosticsByFile.containsKey(key)) {
+					// send an empty list of diagnostics for files that had
+					// diagnostics previously or they won't be cleared
+					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
 				}
-				addClassNodeReference(staticCall.getOwnerType(), referencedNames);
-			} else if (node instanceof FieldNode) {
-				addClassNodeReference(((FieldNode) node).getType(), referencedNames);
-			} else if (node instanceof PropertyNode) {
-				addClassNodeReference(((PropertyNode) node).getType(), referencedNames);
-			} else if (node instanceof MethodNode) {
-				addClassNodeReference(((MethodNode) node).getReturnType(), referencedNames);
-			} else if (node instanceof Parameter) {
-				addClassNodeReference(((Parameter) node).getType(), referencedNames);
-			} else if (node instanceof ClassNode) {
-				addClassNodeReference((ClassNode) node, referencedNames);
-			}
-		}
-		return referencedNames;
-	}
-
-	private void addClassNodeReference(ClassNode classNode, Set<String> referencedNames) {
-		if (classNode == null) {
-			return;
-		}
-		String name = classNode.getName();
-		if (name != null && !name.isBlank()) {
-			referencedNames.add(name);
-		}
-		String simpleName = classNode.getNameWithoutPackage();
-		if (simpleName != null && !simpleName.isBlank()) {
-			referencedNames.add(simpleName);
-		}
-	}
-
-	private String getImportReferenceName(ImportNode importNode) {
-		String alias = importNode.getAlias();
-		if (alias != null && !alias.isBlank()) {
-			return alias;
-		}
-		String fieldName = importNode.getFieldName();
-		if (fieldName != null && !fieldName.isBlank()) {
-			return fieldName;
-		}
-		ClassNode type = importNode.getType();
-		if (type != null) {
-			String simpleName = type.getNameWithoutPackage();
-			if (simpleName != null && !simpleName.isBlank()) {
-				return simpleName;
-			}
-			return type.getName();
-		}
-		String className = importNode.getClassName();
-		if (className != null && !className.isBlank()) {
-			int lastDot = className.lastIndexOf('.');
-			return lastDot >= 0 ? className.substring(lastDot + 1) : className;
-		}
-		return null;
-	}
-
-	private void collectRedundantCastDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri,
-			List<ASTNode> nodes) {
-		for (ASTNode node : nodes) {
-			if (!(node instanceof CastExpression)) {
-				continue;
-			}
-			CastExpression castExpression = (CastExpression) node;
-			ClassNode castType = castExpression.getType();
-			Expression expr = castExpression.getExpression();
-			ClassNode exprType = expr != null ? expr.getType() : null;
-			if (castType == null || exprType == null) {
-				continue;
-			}
-			ClassNode castRedirect = castType.redirect();
-			ClassNode exprRedirect = exprType.redirect();
-			if (castRedirect != null && castRedirect.equals(exprRedirect)) {
-				Range range = GroovyLanguageServerUtils.astNodeToRange(castExpression);
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Redundant cast");
-			}
-		}
-	}
-
-	private void collectUnnecessarySemicolonDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri,
-			List<ASTNode> nodes) {
-		boolean foundSemicolon = false;
-		for (ASTNode node : nodes) {
-			if (!(node instanceof EmptyStatement)) {
-				continue;
-			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-			addWarningDiagnostic(diagnosticsByFile, uri, range, "Unnecessary semicolon");
-			if (range != null) {
-				foundSemicolon = true;
-			}
-		}
-		if (!foundSemicolon) {
-			collectUnnecessarySemicolonDiagnosticsFromSource(diagnosticsByFile, uri);
-		}
-	}
-
-	private void collectUnnecessarySemicolonDiagnosticsFromSource(Map<URI, List<Diagnostic>> diagnosticsByFile,
-			URI uri) {
-		String source = fileContentsTracker.getContents(uri);
-		if (source == null || source.isBlank()) {
-			return;
-		}
-		String[] lines = source.split("\\r?\\n", -1);
-		for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
-			String line = lines[lineIndex];
-			if (!PATTERN_UNNECESSARY_SEMICOLON.matcher(line).matches()) {
-				continue;
 			}
-			int col = line.indexOf(';');
-			if (col < 0) {
-				continue;
-			}
-			Range range = new Range(new Position(lineIndex, col), new Position(lineIndex, col + 1));
-			addWarningDiagnostic(diagnosticsByFile, uri, range, "Unnecessary semicolon");
 		}
-	}
-
-	private void collectEmptyBlockDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, ASTNodeVisitor visitor,
-			URI uri, List<ASTNode> nodes) {
-		for (ASTNode node : nodes) {
-			if (!(node instanceof BlockStatement)) {
-				continue;
-			}
-			BlockStatement block = (BlockStatement) node;
-			if (block.getStatements() != null && !block.getStatements().isEmpty()) {
-				continue;
-			}
-			ASTNode parent = visitor.getParent(block);
-			if (parent instanceof ModuleNode) {
-				continue;
-			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(block);
-			addWarningDiagnostic(diagnosticsByFile, uri, range, "Empty block");
-		}
-	}
-
-	private void collectDuplicateCodeDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri,
-			List<ASTNode> nodes) {
-		String source = fileContentsTracker.getContents(uri);
-		if (source == null || source.isBlank()) {
-			return;
-		}
-		Map<String, List<ASTNode>> blocksByText = new HashMap<>();
-		for (ASTNode node : nodes) {
-			if (!(node instanceof MethodNode) && !(node instanceof ClosureExpression)
-					&& !(node instanceof BlockStatement)) {
-				continue;
-			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-			String text = getSourceText(source, range);
-			if (text == null) {
-				continue;
-			}
-			String trimmed = text.trim();
-			if (trimmed.length() <= DUPLICATE_CODE_MIN_LENGTH) {
-				continue;
-			}
-			blocksByText.computeIfAbsent(trimmed, key -> new ArrayList<>()).add(node);
-		}
-		for (List<ASTNode> duplicates : blocksByText.values()) {
-			if (duplicates.size() < 2) {
-				continue;
-			}
-			for (ASTNode node : duplicates) {
-				Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Duplicate code detected");
-			}
-		}
-	}
-
-	private void collectCodeStyleDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri) {
-		String source = fileContentsTracker.getContents(uri);
-		if (source == null) {
-			return;
-		}
-		String[] lines = source.split("\n", -1);
-		for (int i = 0; i < lines.length; i++) {
-			String line = lines[i];
-			if (line.endsWith("\r")) {
-				line = line.substring(0, line.length() - 1);
-			}
-			int length = line.length();
-			if (length > MAX_LINE_LENGTH) {
-				Range range = new Range(new Position(i, MAX_LINE_LENGTH), new Position(i, length));
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Line exceeds 120 characters");
-			}
-			int trailingStart = length;
-			while (trailingStart > 0 && Character.isWhitespace(line.charAt(trailingStart - 1))) {
-				trailingStart--;
-			}
-			if (trailingStart < length) {
-				Range range = new Range(new Position(i, trailingStart), new Position(i, length));
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Trailing whitespace");
-			}
-		}
-	}
-
-	private void collectBestPracticeDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri,
-			List<ASTNode> nodes) {
-		for (ASTNode node : nodes) {
-			if (!(node instanceof BinaryExpression)) {
-				continue;
-			}
-			BinaryExpression binaryExpression = (BinaryExpression) node;
-			String operation = binaryExpression.getOperation() != null
-					? binaryExpression.getOperation().getText()
-					: null;
-			if (!"==".equals(operation)) {
-				continue;
-			}
-			if (isBooleanConstant(binaryExpression.getLeftExpression())
-					|| isBooleanConstant(binaryExpression.getRightExpression())) {
-				Range range = GroovyLanguageServerUtils.astNodeToRange(binaryExpression);
-				addWarningDiagnostic(diagnosticsByFile, uri, range, "Simplify boolean comparison");
-			}
-		}
-	}
-
-	private boolean isBooleanConstant(Expression expr) {
-		if (!(expr instanceof ConstantExpression)) {
-			return false;
-		}
-		Object value = ((ConstantExpression) expr).getValue();
-		return value instanceof Boolean;
-	}
-
-	private String getSourceText(String source, Range range) {
-		if (range == null) {
-			return null;
-		}
-		int startOffset = Positions.getOffset(source, range.getStart());
-		int endOffset = Positions.getOffset(source, range.getEnd());
-		if (startOffset < 0 || endOffset < 0 || endOffset < startOffset) {
-			return null;
-		}
-		int safeEnd = Math.min(source.length(), endOffset);
-		if (safeEnd <= startOffset) {
-			return null;
-		}
-		return source.substring(startOffset, safeEnd);
-	}
-
-	private void addWarningDiagnostic(Map<URI, List<Diagnostic>> diagnosticsByFile, URI uri, Range range,
-			String message) {
-		if (uri == null || range == null) {
-			return;
-		}
-		Diagnostic diagnostic = new Diagnostic();
-		diagnostic.setRange(range);
-		diagnostic.setSeverity(DiagnosticSeverity.Warning);
-		diagnostic.setMessage(message);
-		diagnosticsByFile.computeIfAbsent(uri, key -> new ArrayList<>()).add(diagnostic);
-	}
-
-	private boolean isClassName(String name, ASTNodeVisitor visitor) {
-		if (visitor == null) {
-			return false;
-		}
-		for (ClassNode classNode : visitor.getClassNodes()) {
-			if (name.equals(classNode.getName()) || name.equals(classNode.getNameWithoutPackage())) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private boolean hasEnclosingMember(String name, VariableExpression variable, ASTNodeVisitor visitor) {
-		ASTNode current = variable;
-		while (current != null) {
-			if (current instanceof ClassNode) {
-				ClassNode classNode = (ClassNode) current;
-				return classNode.getProperty(name) != null || classNode.getField(name) != null
-						|| !classNode.getMethods(name).isEmpty();
-			}
-			current = visitor.getParent(current);
-		}
-		return false;
+		prevDiagnosticsByFile = diagnosticsByFile;
+		return result;
 	}
 
 	private void removeFatalErrorSources(Set<URI> fatalErrorUris) {
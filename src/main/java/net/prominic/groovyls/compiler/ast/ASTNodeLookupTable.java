@@ -0,0 +1,178 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Maps each node to its parent and to the URI of its file. Nodes are compared
+ * by identity, because some ASTNode subclasses, like ClassNode, override
+ * equals() with comparisons that are not strict.
+ *
+ * Entries are stored in parallel arrays with open addressing and linear
+ * probing, so that lookups don't allocate.
+ */
+class ASTNodeLookupTable {
+	private static final int MIN_CAPACITY = 16;
+
+	private ASTNode[] nodes;
+	private ASTNode[] parents;
+	private URI[] uris;
+	private int size;
+
+	public ASTNodeLookupTable() {
+		this(MIN_CAPACITY);
+	}
+
+	private ASTNodeLookupTable(int capacity) {
+		nodes = new ASTNode[capacity];
+		parents = new ASTNode[capacity];
+		uris = new URI[capacity];
+	}
+
+	public ASTNodeLookupTable copy() {
+		ASTNodeLookupTable result = new ASTNodeLookupTable(0);
+		result.nodes = nodes.clone();
+		result.parents = parents.clone();
+		result.uris = uris.clone();
+		result.size = size;
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsNode(ASTNode node) {
+		return nodes[indexOf(node)] != null;
+	}
+
+	public ASTNode getParent(ASTNode node) {
+		int index = indexOf(node);
+		return nodes[index] != null ? parents[index] : null;
+	}
+
+	public URI getURI(ASTNode node) {
+		int index = indexOf(node);
+		return nodes[index] != null ? uris[index] : null;
+	}
+
+	public void put(ASTNode node, ASTNode parent, URI uri) {
+		// the load factor stays at or below 0.5, so probes are short
+		if ((size + 1) * 2 > nodes.length) {
+			resize(nodes.length * 2);
+		}
+		int index = indexOf(node);
+		if (nodes[index] == null) {
+			nodes[index] = node;
+			size++;
+		}
+		parents[index] = parent;
+		uris[index] = uri;
+	}
+
+	/**
+	 * Adds all of the entries of another table, replacing the entries of any
+	 * nodes that are in both.
+	 */
+	public void putAll(ASTNodeLookupTable other) {
+		int capacity = nodes.length;
+		while ((size + other.size) * 2 > capacity) {
+			capacity *= 2;
+		}
+		if (capacity > nodes.length) {
+			resize(capacity);
+		}
+		for (int i = 0; i < other.nodes.length; i++) {
+			if (other.nodes[i] != null) {
+				put(other.nodes[i], other.parents[i], other.uris[i]);
+			}
+		}
+	}
+
+	public void remove(ASTNode node) {
+		int index = indexOf(node);
+		if (nodes[index] == null) {
+			return;
+		}
+		size--;
+		// entries after the removed one are moved back into the gap when their
+		// probe sequence passes through it, or lookups would stop too early
+		int mask = nodes.length - 1;
+		int next = (index + 1) & mask;
+		while (nodes[next] != null) {
+			int home = hash(nodes[next]) & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				nodes[index] = nodes[next];
+				parents[index] = parents[next];
+				uris[index] = uris[next];
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		nodes[index] = null;
+		parents[index] = null;
+		uris[index] = null;
+	}
+
+	public void clear() {
+		Arrays.fill(nodes, null);
+		Arrays.fill(parents, null);
+		Arrays.fill(uris, null);
+		size = 0;
+	}
+
+	private int indexOf(ASTNode node) {
+		int mask = nodes.length - 1;
+		int index = hash(node) & mask;
+		while (nodes[index] != null && nodes[index] != node) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private void resize(int capacity) {
+		ASTNode[] oldNodes = nodes;
+		ASTNode[] oldParents = parents;
+		URI[] oldURIs = uris;
+		nodes = new ASTNode[capacity];
+		parents = new ASTNode[capacity];
+		uris = new URI[capacity];
+		for (int i = 0; i < oldNodes.length; i++) {
+			ASTNode node = oldNodes[i];
+			if (node == null) {
+				continue;
+			}
+			int index = indexOf(node);
+			nodes[index] = node;
+			parents[index] = oldParents[i];
+			uris[index] = oldURIs[i];
+		}
+	}
+
+	private static int hash(ASTNode node) {
+		int hash = System.identityHashCode(node);
+		// identity hash codes may differ mostly in their upper bits
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,221 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Position index over the nodes of a single source unit. Nodes are sorted by
+ * start position and a segment tree over their end positions answers "which
+ * nodes contain this position" without scanning the whole file.
+ *
+ * Positions use the same zero-based conversion as
+ * GroovyLanguageServerUtils.astNodeToRange(), encoded as a single long so that
+ * queries don't allocate.
+ */
+class ASTNodePositionIndex {
+	private static class Entry {
+		private ASTNode node;
+		private long start;
+		private long end;
+	}
+
+	private final ASTNode[] nodes;
+	private final long[] starts;
+	private final long[] ends;
+	private final long[] maxEnds;
+
+	private ASTNodePositionIndex(ASTNode[] nodes, long[] starts, long[] ends) {
+		this.nodes = nodes;
+		this.starts = starts;
+		this.ends = ends;
+		this.maxEnds = new long[Math.max(1, nodes.length * 4)];
+		if (nodes.length > 0) {
+			buildTree(1, 0, nodes.length - 1);
+		}
+	}
+
+	/**
+	 * Builds the index. When several nodes have exactly the same range, the
+	 * comparator decides which one is considered innermost (the one that
+	 * sorts first). Nodes that compare equal keep their original order.
+	 */
+	public static ASTNodePositionIndex build(List<ASTNode> nodes, Comparator<ASTNode> sameRangeComparator) {
+		List<Entry> entries = new ArrayList<>(nodes.size());
+		// iterate in reverse so that, after a stable sort, the first of several
+		// equal nodes ends up last, which is where lookups look first
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			ASTNode node = nodes.get(i);
+			if (node.getLineNumber() == -1) {
+				continue;
+			}
+			Entry entry = new Entry();
+			entry.node = node;
+			entry.start = toKey(node.getLineNumber(), node.getColumnNumber());
+			entry.end = node.getLastLineNumber() == -1 ? entry.start
+					: toKey(node.getLastLineNumber(), node.getLastColumnNumber());
+			entries.add(entry);
+		}
+		entries.sort((e1, e2) -> {
+			int result = Long.compare(e1.start, e2.start);
+			if (result != 0) {
+				return result;
+			}
+			result = Long.compare(e2.end, e1.end);
+			if (result != 0) {
+				return result;
+			}
+			return sameRangeComparator.compare(e2.node, e1.node);
+		});
+		int size = entries.size();
+		ASTNode[] sortedNodes = new ASTNode[size];
+		long[] sortedStarts = new long[size];
+		long[] sortedEnds = new long[size];
+		for (int i = 0; i < size; i++) {
+			Entry entry = entries.get(i);
+			sortedNodes[i] = entry.node;
+			sortedStarts[i] = entry.start;
+			sortedEnds[i] = entry.end;
+		}
+		return new ASTNodePositionIndex(sortedNodes, sortedStarts, sortedEnds);
+	}
+
+	/**
+	 * Returns the innermost node containing the zero-based position: the one
+	 * with the latest start, then the earliest end.
+	 */
+	public ASTNode findInnermost(int line, int column) {
+		long position = toPositionKey(line, column);
+		int limit = lastIndexStartingAtOrBefore(position);
+		if (limit < 0) {
+			return null;
+		}
+		int index = findRightmost(1, 0, nodes.length - 1, limit, position);
+		if (index < 0) {
+			return null;
+		}
+		return nodes[index];
+	}
+
+	/**
+	 * Returns every node containing the zero-based position, innermost first.
+	 */
+	public List<ASTNode> findContaining(int line, int column) {
+		long position = toPositionKey(line, column);
+		int limit = lastIndexStartingAtOrBefore(position);
+		if (limit < 0) {
+			return Collections.emptyList();
+		}
+		List<ASTNode> result = new ArrayList<>();
+		collectContaining(1, 0, nodes.length - 1, limit, position, result);
+		return result;
+	}
+
+	/**
+	 * Returns the matching node that starts on the zero-based line at or before
+	 * the column, preferring the one that starts last.
+	 */
+	public ASTNode findLastStartingOnLine(int line, int column, Predicate<ASTNode> predicate) {
+		long lineStart = toPositionKey(line, 0);
+		int index = lastIndexStartingAtOrBefore(toPositionKey(line, column));
+		for (; index >= 0 && starts[index] >= lineStart; index--) {
+			if (predicate.test(nodes[index])) {
+				return nodes[index];
+			}
+		}
+		return null;
+	}
+
+	private void buildTree(int treeIndex, int low, int high) {
+		if (low == high) {
+			maxEnds[treeIndex] = ends[low];
+			return;
+		}
+		int mid = (low + high) >>> 1;
+		buildTree(treeIndex * 2, low, mid);
+		buildTree(treeIndex * 2 + 1, mid + 1, high);
+		maxEnds[treeIndex] = Math.max(maxEnds[treeIndex * 2], maxEnds[treeIndex * 2 + 1]);
+	}
+
+	private int findRightmost(int treeIndex, int low, int high, int limit, long position) {
+		if (low > limit || maxEnds[treeIndex] < position) {
+			return -1;
+		}
+		if (low == high) {
+			return low;
+		}
+		int mid = (low + high) >>> 1;
+		int result = findRightmost(treeIndex * 2 + 1, mid + 1, high, limit, position);
+		if (result != -1) {
+			return result;
+		}
+		return findRightmost(treeIndex * 2, low, mid, limit, position);
+	}
+
+	private void collectContaining(int treeIndex, int low, int high, int limit, long position,
+			List<ASTNode> result) {
+		if (low > limit || maxEnds[treeIndex] < position) {
+			return;
+		}
+		if (low == high) {
+			result.add(nodes[low]);
+			return;
+		}
+		int mid = (low + high) >>> 1;
+		collectContaining(treeIndex * 2 + 1, mid + 1, high, limit, position, result);
+		collectContaining(treeIndex * 2, low, mid, limit, position, result);
+	}
+
+	private int lastIndexStartingAtOrBefore(long position) {
+		// several nodes may start at the same position, so this is an upper
+		// bound search rather than Arrays.binarySearch()
+		int low = 0;
+		int high = starts.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low - 1;
+	}
+
+	private static long toKey(int groovyLine, int groovyColumn) {
+		// same conversion as GroovyLanguageServerUtils.createGroovyPosition()
+		int line = groovyLine > 0 ? groovyLine - 1 : groovyLine;
+		int column = groovyColumn == -1 ? 0 : groovyColumn;
+		if (column > 0) {
+			column--;
+		}
+		return toPositionKey(line, column);
+	}
+
+	private static long toPositionKey(int line, int column) {
+		return ((long) line << 32) + ((long) column - Integer.MIN_VALUE);
+	}
+}
@@ -19,23 +19,28 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.compiler.ast;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.Reader;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
@@ -44,6 +49,7 @@ import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ConstructorNode;
 import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.GenericsType;
 import org.codehaus.groovy.ast.ImportNode;
 import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
@@ -103,18 +109,13 @@ import org.codehaus.groovy.ast.stmt.WhileStatement;
 import org.codehaus.groovy.classgen.BytecodeExpression;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.SourceUnit;
-import org.eclipse.lsp4j.Position;
-import org.eclipse.lsp4j.Range;
 import java.lang.reflect.Modifier;
 
-import net.prominic.groovyls.util.GroovyLanguageServerUtils;
-import net.prominic.lsp.utils.Positions;
-import net.prominic.lsp.utils.Ranges;
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 
 public class ASTNodeVisitor extends ClassCodeVisitorSupport {
-	private static final Pattern METACLASS_METHOD_PATTERN = Pattern
-			.compile("([A-Za-z_][\\w\\.]*)\\.metaClass\\.([A-Za-z_][\\w]*)\\s*=\\s*\\{");
-
+	// only used by the reference counts, which may be updated by several
+	// requests at once
 	private class ASTLookupKey {
 		public ASTLookupKey(ASTNode node) {
 			this.node = node;
@@ -136,12 +137,261 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		}
 	}
 
-	private class ASTNodeLookupData {
-		public ASTNode parent;
-		public URI uri;
+	/**
+	 * A file that keeps only its declarations, along with the sorted names
+	 * that its other nodes may refer to, so that it knows when they're needed.
+	 */
+	private static class CompactFile {
+		private final SourceUnit sourceUnit;
+		private final String[] referenceNames;
+
+		private CompactFile(SourceUnit sourceUnit, String[] referenceNames) {
+			this.sourceUnit = sourceUnit;
+			this.referenceNames = referenceNames;
+		}
+	}
+
+	/**
+	 * All of the nodes of a compact file, after it was visited again.
+	 */
+	private static class ExpandedFile {
+		private final List<ASTNode> nodes;
+		private final ASTNodeLookupTable lookup;
+		private final ASTNodePositionIndex positionIndex;
+		private final Map<String, List<ASTNode>> referenceCandidates;
+
+		private ExpandedFile(List<ASTNode> nodes, ASTNodeLookupTable lookup, ASTNodePositionIndex positionIndex,
+				Map<String, List<ASTNode>> referenceCandidates) {
+			this.nodes = nodes;
+			this.lookup = lookup;
+			this.positionIndex = positionIndex;
+			this.referenceCandidates = referenceCandidates;
+		}
 	}
 
+	/**
+	 * The nodes of a file from a separate compile, in place of the nodes of
+	 * the same file in another visitor, which isn't copied or changed.
+	 */
+	private static class OverlayVisitor extends ASTNodeVisitor {
+		private final ASTNodeVisitor base;
+		private final ASTNodeVisitor file;
+		private final URI uri;
+		// the classes and metaClass members of the file in the other visitor
+		private final Set<ASTNode> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		private OverlayVisitor(ASTNodeVisitor base, ASTNodeVisitor file, URI uri) {
+			this.base = base;
+			this.file = file;
+			this.uri = uri;
+			ModuleNode moduleNode = base.getModuleNode(uri);
+			if (moduleNode != null) {
+				replaced.addAll(moduleNode.getClasses());
+			}
+			replaced.addAll(base.getMetaClassMethods(uri));
+			Map<String, Map<String, PropertyNode>> propsByType = base.metaClassPropertiesByURI.get(uri);
+			if (propsByType != null) {
+				propsByType.values().forEach(props -> replaced.addAll(props.values()));
+			}
+		}
+
+		private ASTNodeVisitor getVisitor(URI nodeURI) {
+			return uri.equals(nodeURI) ? file : base;
+		}
+
+		private ASTNodeVisitor getVisitor(ASTNode node) {
+			return file.lookup.containsNode(node) ? file : base;
+		}
+
+		private <T extends ASTNode> List<T> merge(List<T> baseNodes, List<T> fileNodes) {
+			List<T> result = new ArrayList<>();
+			for (T node : baseNodes) {
+				if (!replaced.contains(node)) {
+					result.add(node);
+				}
+			}
+			result.addAll(fileNodes);
+			return result;
+		}
+
+		@Override
+		public List<ClassNode> getClassNodes() {
+			return merge(base.getClassNodes(), file.getClassNodes());
+		}
+
+		@Override
+		public ClassNode findClassNodeByName(String name) {
+			ClassNode fileClass = file.findClassNodeByName(name);
+			if (fileClass != null && fileClass.getName().equals(name)) {
+				return fileClass;
+			}
+			ClassNode baseClass = base.findClassNodeByName(name);
+			if (baseClass != null && !replaced.contains(baseClass)
+					&& (fileClass == null || baseClass.getName().equals(name))) {
+				return baseClass;
+			}
+			return fileClass;
+		}
+
+		@Override
+		public ClassNode findOriginalClassNode(ClassNode node) {
+			ClassNode result = file.findOriginalClassNode(node);
+			if (result != null) {
+				return result;
+			}
+			result = base.findOriginalClassNode(node);
+			return result != null && !replaced.contains(result) ? result : null;
+		}
+
+		@Override
+		public List<ClassNode> getClassNodesWithField(String name) {
+			return merge(base.getClassNodesWithField(name), file.getClassNodesWithField(name));
+		}
+
+		@Override
+		public List<ClassNode> getSubtypeCandidates(ClassNode type) {
+			return merge(base.getSubtypeCandidates(type), file.getSubtypeCandidates(type));
+		}
+
+		@Override
+		public List<ASTNode> getNodes() {
+			List<ASTNode> result = new ArrayList<>();
+			for (ASTNode node : base.getNodes()) {
+				if (!uri.equals(base.getURI(node))) {
+					result.add(node);
+				}
+			}
+			result.addAll(file.getNodes(uri));
+			return result;
+		}
+
+		@Override
+		public Set<URI> getURIs() {
+			Set<URI> result = new HashSet<>(base.getURIs());
+			result.addAll(file.getURIs());
+			return result;
+		}
+
+		@Override
+		public List<ASTNode> getNodes(URI nodeURI) {
+			return getVisitor(nodeURI).getNodes(nodeURI);
+		}
+
+		@Override
+		public ModuleNode getModuleNode(URI nodeURI) {
+			return getVisitor(nodeURI).getModuleNode(nodeURI);
+		}
+
+		@Override
+		public boolean isCompact(URI nodeURI) {
+			return getVisitor(nodeURI).isCompact(nodeURI);
+		}
+
+		@Override
+		public List<ASTNode> getReferenceCandidates(String name) {
+			List<ASTNode> result = new ArrayList<>();
+			for (ASTNode node : base.getReferenceCandidates(name)) {
+				if (!uri.equals(base.getURI(node))) {
+					result.add(node);
+				}
+			}
+			result.addAll(file.getReferenceCandidates(name));
+			return result;
+		}
+
+		@Override
+		public Set<URI> getDependentURIs(Collection<String> classNames) {
+			Set<URI> result = new HashSet<>(base.getDependentURIs(classNames));
+			result.remove(uri);
+			result.addAll(file.getDependentURIs(classNames));
+			return result;
+		}
+
+		// the counts of the other visitor may include references from the
+		// replaced nodes, so nothing is cached
+		@Override
+		public Integer getCachedReferenceCount(ASTNode definition) {
+			return null;
+		}
+
+		@Override
+		public void cacheReferenceCount(ASTNode definition, int count) {
+		}
+
+		@Override
+		public List<MethodNode> getMetaClassMethods(ClassNode classNode) {
+			return merge(base.getMetaClassMethods(classNode), file.getMetaClassMethods(classNode));
+		}
+
+		@Override
+		public List<MethodNode> getAllMetaClassMethods() {
+			return merge(base.getAllMetaClassMethods(), file.getAllMetaClassMethods());
+		}
+
+		@Override
+		public List<MethodNode> getMetaClassMethods(URI nodeURI) {
+			return getVisitor(nodeURI).getMetaClassMethods(nodeURI);
+		}
+
+		@Override
+		public List<PropertyNode> getMetaClassProperties(ClassNode classNode) {
+			return merge(base.getMetaClassProperties(classNode), file.getMetaClassProperties(classNode));
+		}
+
+		@Override
+		public ASTNode getNodeAtLineAndColumn(URI nodeURI, int line, int column) {
+			return getVisitor(nodeURI).getNodeAtLineAndColumn(nodeURI, line, column);
+		}
+
+		@Override
+		public List<ASTNode> getNodesAtLineAndColumn(URI nodeURI, int line, int column) {
+			return getVisitor(nodeURI).getNodesAtLineAndColumn(nodeURI, line, column);
+		}
+
+		@Override
+		public ASTNode getLastNodeStartingOnLine(URI nodeURI, int line, int column, Predicate<ASTNode> predicate) {
+			return getVisitor(nodeURI).getLastNodeStartingOnLine(nodeURI, line, column, predicate);
+		}
+
+		@Override
+		public ASTNode getParent(ASTNode child) {
+			if (child == null) {
+				return null;
+			}
+			return getVisitor(child).getParent(child);
+		}
+
+		@Override
+		public URI getURI(ASTNode node) {
+			if (node == null) {
+				return null;
+			}
+			return getVisitor(node).getURI(node);
+		}
+
+		@Override
+		public ASTNodeVisitor copy() {
+			throw new UnsupportedOperationException("An overlay can't be copied");
+		}
+
+		@Override
+		public ASTNodeVisitor withOverlay(CompilationUnit unit, URI uri) {
+			throw new UnsupportedOperationException("An overlay can't have another overlay");
+		}
+	}
+
+	private static final int MAX_EXPANDED_FILES = 32;
+	// the nodes of different source units are collected in parallel, once
+	// their classes have been transformed
+	private static final ForkJoinPool VISIT_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
 	private SourceUnit sourceUnit;
+	// the URI and collections of the source unit that is being visited, so
+	// that they aren't looked up again for each node
+	private URI sourceURI;
+	private List<ASTNode> sourceNodes;
+	private Map<String, List<ASTNode>> sourceReferenceCandidates;
+	private Set<String> sourceClassReferences;
 
 	@Override
 	protected SourceUnit getSourceUnit() {
@@ -151,12 +401,46 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	private Stack<ASTNode> stack = new Stack<>();
 	private Map<URI, List<ASTNode>> nodesByURI = new HashMap<>();
 	private Map<URI, List<ClassNode>> classNodesByURI = new HashMap<>();
-	private Map<ASTLookupKey, ASTNodeLookupData> lookup = new HashMap<>();
+	// the classes of all files, indexed by their fully qualified and simple
+	// names, by the names of their fields and properties, and by the simple
+	// names of their direct supertypes
+	private Map<String, List<ClassNode>> classNodesByName = new HashMap<>();
+	private Map<String, List<ClassNode>> classNodesByFieldName = new HashMap<>();
+	private Map<String, List<ClassNode>> classNodesBySupertypeName = new HashMap<>();
+	private ASTNodeLookupTable lookup = new ASTNodeLookupTable();
+	private Map<URI, ASTNodePositionIndex> positionIndexByURI = new HashMap<>();
+	private Map<URI, Map<String, List<ASTNode>>> referenceCandidatesByURI = new HashMap<>();
+	private Map<URI, Set<String>> classReferencesByURI = new HashMap<>();
+	// filled in by read requests, which may run concurrently
+	private Map<String, Map<ASTLookupKey, Integer>> referenceCountsByName = new ConcurrentHashMap<>();
+	// the names of classes with a cached count, which also depends on the
+	// candidates named it and delegate
+	private Set<String> classReferenceCountNames = ConcurrentHashMap.newKeySet();
 	private Map<String, Map<String, MethodNode>> metaClassMethodsByType = new HashMap<>();
 	private Map<String, Map<String, PropertyNode>> metaClassPropertiesByType = new HashMap<>();
 	private Map<URI, Map<String, Map<String, MethodNode>>> metaClassMethodsByURI = new HashMap<>();
 	private Map<URI, Map<String, Map<String, PropertyNode>>> metaClassPropertiesByURI = new HashMap<>();
 	private Map<String, List<MethodNode>> pendingCategoryMethodsByTarget = new HashMap<>();
+	// files accepted by the filter keep only their declarations after they
+	// are visited, and the rest of their nodes are visited again when needed
+	private Predicate<URI> compactFilter;
+	private Map<URI, CompactFile> compactFilesByURI = new HashMap<>();
+	private final Map<URI, ExpandedFile> expandedFiles = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<URI, ExpandedFile> eldest) {
+			return size() > MAX_EXPANDED_FILES;
+		}
+	};
+	// a visitor that expands a compact file doesn't look for metaClass
+	// assignments again, since the visitor that compacted it already did
+	private boolean expanding = false;
+	// metaClass assignments found while collecting the nodes of a source
+	// unit, which are captured when the nodes are merged
+	private List<BinaryExpression> metaClassAssignments = new ArrayList<>();
+	// a visitor of a detached copy of a file adds members only to the classes
+	// of the copy, because the classes of other files are shared with the
+	// latest AST
+	private boolean ownClassesOnly = false;
 
 	private static final List<String> DELEGATE_ANNOTATIONS = List.of("Delegate", "groovy.lang.Delegate");
 	private static final List<String> MIXIN_ANNOTATIONS = List.of("Mixin", "groovy.lang.Mixin");
@@ -180,20 +464,87 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			isSynthetic = annotatedNode.isSynthetic();
 		}
 		if (!isSynthetic) {
-			URI uri = sourceUnit.getSource().getURI();
-			nodesByURI.get(uri).add(node);
+			sourceNodes.add(node);
+			lookup.put(node, stack.isEmpty() ? null : stack.lastElement(), sourceURI);
 
-			ASTNodeLookupData data = new ASTNodeLookupData();
-			data.uri = uri;
-			if (stack.size() > 0) {
-				data.parent = stack.lastElement();
+			String referenceName = GroovyASTUtils.getReferenceName(node);
+			if (referenceName != null) {
+				sourceReferenceCandidates.computeIfAbsent(referenceName, key -> new ArrayList<>()).add(node);
 			}
-			lookup.put(new ASTLookupKey(node), data);
+			addClassReferences(node, sourceClassReferences);
 		}
 
 		stack.add(node);
 	}
 
+	private void addClassReferences(ASTNode node, Set<String> result) {
+		if (node instanceof ClassNode) {
+			ClassNode classNode = (ClassNode) node;
+			addClassReference(classNode.getUnresolvedSuperClass(false), result);
+			for (ClassNode interfaceNode : classNode.getInterfaces()) {
+				addClassReference(interfaceNode, result);
+			}
+		} else if (node instanceof MethodNode) {
+			MethodNode methodNode = (MethodNode) node;
+			addClassReference(methodNode.getReturnType(), result);
+			// the exceptions of a constructor without a throws clause may be null
+			ClassNode[] exceptions = methodNode.getExceptions();
+			if (exceptions != null) {
+				for (ClassNode exceptionType : exceptions) {
+					addClassReference(exceptionType, result);
+				}
+			}
+		} else if (node instanceof FieldNode) {
+			addClassReference(((FieldNode) node).getType(), result);
+		} else if (node instanceof PropertyNode) {
+			addClassReference(((PropertyNode) node).getType(), result);
+		} else if (node instanceof Parameter) {
+			addClassReference(((Parameter) node).getType(), result);
+		} else if (node instanceof ImportNode) {
+			addClassReference(((ImportNode) node).getType(), result);
+		} else if (node instanceof AnnotationNode) {
+			addClassReference(((AnnotationNode) node).getClassNode(), result);
+		} else if (node instanceof VariableExpression) {
+			addClassReference(((VariableExpression) node).getOriginType(), result);
+		} else if (node instanceof ClassExpression || node instanceof ConstructorCallExpression
+				|| node instanceof CastExpression) {
+			addClassReference(((Expression) node).getType(), result);
+		}
+	}
+
+	private void addClassReference(ClassNode type, Set<String> result) {
+		addClassReference(type, result, null);
+	}
+
+	private void addClassReference(ClassNode type, Set<String> result, Set<ClassNode> visited) {
+		if (type == null) {
+			return;
+		}
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (ClassHelper.isPrimitiveType(type) || ClassHelper.OBJECT_TYPE.equals(type)) {
+			return;
+		}
+		result.add(type.getName());
+		// the same type may be used with different type arguments, like
+		// List<Foo> and List<Bar>, so the type arguments are always visited,
+		// but a placeholder may be one of its own type arguments
+		GenericsType[] genericsTypes = type.getGenericsTypes();
+		if (genericsTypes == null || type.isGenericsPlaceHolder()) {
+			return;
+		}
+		if (visited == null) {
+			visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		}
+		if (!visited.add(type)) {
+			return;
+		}
+		for (GenericsType genericsType : genericsTypes) {
+			addClassReference(genericsType.getType(), result, visited);
+		}
+	}
+
 	private void popASTNode() {
 		stack.pop();
 	}
@@ -206,6 +557,156 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return result;
 	}
 
+	/**
+	 * Returns the class with the specified fully qualified name, or else a
+	 * class with the specified simple name, or null if there isn't one.
+	 */
+	public ClassNode findClassNodeByName(String name) {
+		if (name == null) {
+			return null;
+		}
+		List<ClassNode> classNodes = classNodesByName.get(name);
+		if (classNodes == null) {
+			return null;
+		}
+		for (ClassNode classNode : classNodes) {
+			if (name.equals(classNode.getName())) {
+				return classNode;
+			}
+		}
+		return classNodes.get(0);
+	}
+
+	/**
+	 * Returns the class from the AST that is equal to the specified class,
+	 * which may come from a different compile, or null if there isn't one.
+	 */
+	public ClassNode findOriginalClassNode(ClassNode node) {
+		if (node == null) {
+			return null;
+		}
+		List<ClassNode> classNodes = classNodesByName.get(node.getName());
+		if (classNodes == null) {
+			return null;
+		}
+		for (ClassNode classNode : classNodes) {
+			if (classNode.equals(node)) {
+				return classNode;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the classes that declare a field or property with the specified
+	 * name.
+	 */
+	public List<ClassNode> getClassNodesWithField(String name) {
+		List<ClassNode> classNodes = name != null ? classNodesByFieldName.get(name) : null;
+		return classNodes != null ? Collections.unmodifiableList(classNodes) : Collections.emptyList();
+	}
+
+	/**
+	 * Returns the classes that may extend or implement the specified type,
+	 * directly or indirectly. The result may include some classes that don't,
+	 * because supertypes are matched by their simple names.
+	 */
+	public List<ClassNode> getSubtypeCandidates(ClassNode type) {
+		List<ClassNode> result = new ArrayList<>();
+		if (type == null) {
+			return result;
+		}
+		Set<ClassNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<String> supertypeNames = new ArrayDeque<>();
+		supertypeNames.add(type.getNameWithoutPackage());
+		Set<String> visitedNames = new HashSet<>(supertypeNames);
+		while (!supertypeNames.isEmpty()) {
+			List<ClassNode> subtypes = classNodesBySupertypeName.get(supertypeNames.poll());
+			if (subtypes == null) {
+				continue;
+			}
+			for (ClassNode subtype : subtypes) {
+				if (!visited.add(subtype)) {
+					continue;
+				}
+				result.add(subtype);
+				if (visitedNames.add(subtype.getNameWithoutPackage())) {
+					supertypeNames.add(subtype.getNameWithoutPackage());
+				}
+			}
+		}
+		return result;
+	}
+
+	private void indexClassNode(ClassNode node) {
+		addToIndex(classNodesByName, node.getName(), node);
+		addToIndex(classNodesByName, node.getNameWithoutPackage(), node);
+		for (String supertypeName : getSupertypeNames(node)) {
+			addToIndex(classNodesBySupertypeName, supertypeName, node);
+		}
+	}
+
+	private void indexFields(ClassNode node) {
+		for (String fieldName : getFieldNames(node)) {
+			addToIndex(classNodesByFieldName, fieldName, node);
+		}
+	}
+
+	private void removeClassNodeFromIndexes(ClassNode node) {
+		removeFromIndex(classNodesByName, node.getName(), node);
+		removeFromIndex(classNodesByName, node.getNameWithoutPackage(), node);
+		for (String supertypeName : getSupertypeNames(node)) {
+			removeFromIndex(classNodesBySupertypeName, supertypeName, node);
+		}
+		for (String fieldName : getFieldNames(node)) {
+			removeFromIndex(classNodesByFieldName, fieldName, node);
+		}
+	}
+
+	private static Set<String> getSupertypeNames(ClassNode node) {
+		Set<String> result = new HashSet<>();
+		ClassNode superClass = node.getUnresolvedSuperClass(false);
+		if (superClass != null) {
+			result.add(superClass.getNameWithoutPackage());
+		}
+		for (ClassNode interfaceNode : node.getInterfaces()) {
+			result.add(interfaceNode.getNameWithoutPackage());
+		}
+		return result;
+	}
+
+	private static Set<String> getFieldNames(ClassNode node) {
+		Set<String> result = new HashSet<>();
+		for (FieldNode field : node.getFields()) {
+			result.add(field.getName());
+		}
+		for (PropertyNode property : node.getProperties()) {
+			result.add(property.getName());
+		}
+		return result;
+	}
+
+	private static void addToIndex(Map<String, List<ClassNode>> index, String key, ClassNode node) {
+		List<ClassNode> classNodes = index.computeIfAbsent(key, k -> new ArrayList<>(1));
+		for (ClassNode classNode : classNodes) {
+			if (classNode == node) {
+				return;
+			}
+		}
+		classNodes.add(node);
+	}
+
+	private static void removeFromIndex(Map<String, List<ClassNode>> index, String key, ClassNode node) {
+		List<ClassNode> classNodes = index.get(key);
+		if (classNodes == null) {
+			return;
+		}
+		classNodes.removeIf(classNode -> classNode == node);
+		if (classNodes.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
 	public List<ASTNode> getNodes() {
 		List<ASTNode> result = new ArrayList<>();
 		for (List<ASTNode> nodes : nodesByURI.values()) {
@@ -214,7 +715,18 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return result;
 	}
 
+	public Set<URI> getURIs() {
+		return Collections.unmodifiableSet(nodesByURI.keySet());
+	}
+
+	/**
+	 * Returns the nodes of a file. A compact file is visited again, if it
+	 * wasn't recently.
+	 */
 	public List<ASTNode> getNodes(URI uri) {
+		if (compactFilesByURI.containsKey(uri)) {
+			return expand(uri).nodes;
+		}
 		List<ASTNode> nodes = nodesByURI.get(uri);
 		if (nodes == null) {
 			return Collections.emptyList();
@@ -222,6 +734,184 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return nodes;
 	}
 
+	/**
+	 * Returns the module of a file, which is replaced when the file is parsed
+	 * again, or null if the file wasn't visited.
+	 */
+	public ModuleNode getModuleNode(URI uri) {
+		List<ASTNode> nodes = nodesByURI.get(uri);
+		if (nodes == null || nodes.isEmpty() || !(nodes.get(0) instanceof ModuleNode)) {
+			return null;
+		}
+		return (ModuleNode) nodes.get(0);
+	}
+
+	/**
+	 * Files accepted by the filter keep only their declarations, like classes,
+	 * methods and fields, once they're visited. Their other nodes are visited
+	 * again when a request needs them, and a limited number of those files
+	 * are kept. getNodes() returns only the declarations of these files.
+	 */
+	public void setCompactFilter(Predicate<URI> compactFilter) {
+		this.compactFilter = compactFilter;
+	}
+
+	public boolean isCompact(URI uri) {
+		return compactFilesByURI.containsKey(uri);
+	}
+
+	private ExpandedFile expand(URI uri) {
+		synchronized (expandedFiles) {
+			ExpandedFile expandedFile = expandedFiles.get(uri);
+			if (expandedFile == null) {
+				ASTNodeVisitor visitor = new ASTNodeVisitor();
+				visitor.expanding = true;
+				visitor.collectNodes(compactFilesByURI.get(uri).sourceUnit);
+				expandedFile = new ExpandedFile(visitor.nodesByURI.get(uri), visitor.lookup,
+						visitor.positionIndexByURI.get(uri), visitor.referenceCandidatesByURI.get(uri));
+				expandedFiles.put(uri, expandedFile);
+			}
+			return expandedFile;
+		}
+	}
+
+	/**
+	 * Returns the table that contains the node, which is the table of an
+	 * expanded file if the node isn't a declaration of a compact file.
+	 */
+	private ASTNodeLookupTable getLookupTable(ASTNode node) {
+		if (compactFilesByURI.isEmpty() || lookup.containsNode(node)) {
+			return lookup;
+		}
+		synchronized (expandedFiles) {
+			for (ExpandedFile expandedFile : expandedFiles.values()) {
+				if (expandedFile.lookup.containsNode(node)) {
+					return expandedFile.lookup;
+				}
+			}
+		}
+		return lookup;
+	}
+
+	private ASTNodePositionIndex getPositionIndex(URI uri) {
+		if (compactFilesByURI.containsKey(uri)) {
+			return expand(uri).positionIndex;
+		}
+		return positionIndexByURI.get(uri);
+	}
+
+	/**
+	 * Drops the nodes of the file that was just visited, except for its
+	 * declarations.
+	 */
+	private void compact(URI uri) {
+		List<ASTNode> declarations = new ArrayList<>();
+		for (ASTNode node : sourceNodes) {
+			if (isDeclaration(node)) {
+				declarations.add(node);
+			} else {
+				lookup.remove(node);
+			}
+		}
+		String[] referenceNames = sourceReferenceCandidates.keySet().toArray(new String[0]);
+		Arrays.sort(referenceNames);
+		nodesByURI.put(uri, declarations);
+		referenceCandidatesByURI.remove(uri);
+		compactFilesByURI.put(uri, new CompactFile(sourceUnit, referenceNames));
+	}
+
+	private boolean isDeclaration(ASTNode node) {
+		if (node instanceof Parameter) {
+			return lookup.getParent(node) instanceof MethodNode;
+		}
+		return node instanceof ModuleNode || node instanceof ClassNode || node instanceof MethodNode
+				|| node instanceof FieldNode || node instanceof PropertyNode || node instanceof ImportNode;
+	}
+
+	/**
+	 * Returns the nodes that may refer to a definition with the specified name.
+	 * Use GroovyASTUtils.getReferences() to find the ones that actually do.
+	 */
+	public List<ASTNode> getReferenceCandidates(String name) {
+		List<ASTNode> result = new ArrayList<>();
+		for (URI uri : nodesByURI.keySet()) {
+			Map<String, List<ASTNode>> candidatesByName = referenceCandidatesByURI.get(uri);
+			if (candidatesByName == null) {
+				CompactFile compactFile = compactFilesByURI.get(uri);
+				if (compactFile == null || Arrays.binarySearch(compactFile.referenceNames, name) < 0) {
+					continue;
+				}
+				candidatesByName = expand(uri).referenceCandidates;
+			}
+			List<ASTNode> candidates = candidatesByName.get(name);
+			if (candidates != null) {
+				result.addAll(candidates);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the files that refer to any of the specified classes. A class
+	 * that couldn't be resolved is referred to by the name from the source
+	 * code, so the names without a package are checked too.
+	 */
+	public Set<URI> getDependentURIs(Collection<String> classNames) {
+		Set<String> names = new HashSet<>();
+		for (String className : classNames) {
+			names.add(className);
+			names.add(className.substring(className.lastIndexOf('.') + 1));
+		}
+		Set<URI> result = new HashSet<>();
+		classReferencesByURI.forEach((uri, references) -> {
+			for (String name : names) {
+				if (references.contains(name)) {
+					result.add(uri);
+					break;
+				}
+			}
+		});
+		return result;
+	}
+
+	public Integer getCachedReferenceCount(ASTNode definition) {
+		Map<ASTLookupKey, Integer> counts = referenceCountsByName.get(GroovyASTUtils.getDefinitionName(definition));
+		if (counts == null) {
+			return null;
+		}
+		return counts.get(new ASTLookupKey(definition));
+	}
+
+	/**
+	 * Caches the number of references to a definition. The count is kept
+	 * until a file that may refer to the definition's name is visited again,
+	 * or, for a class, a file that uses it or delegate.
+	 */
+	public void cacheReferenceCount(ASTNode definition, int count) {
+		String name = GroovyASTUtils.getDefinitionName(definition);
+		if (name == null) {
+			return;
+		}
+		if (definition instanceof ClassNode) {
+			classReferenceCountNames.add(name);
+		}
+		referenceCountsByName.computeIfAbsent(name, key -> new ConcurrentHashMap<>()).put(new ASTLookupKey(definition),
+				count);
+	}
+
+	private void invalidateReferenceCounts(Collection<String> referenceNames) {
+		for (String name : referenceNames) {
+			referenceCountsByName.remove(name);
+		}
+		// GroovyASTUtils.getReferences() counts it and delegate for classes
+		if (referenceNames.contains("it") || referenceNames.contains("delegate")) {
+			for (Iterator<String> iterator = classReferenceCountNames.iterator(); iterator.hasNext();) {
+				referenceCountsByName.remove(iterator.next());
+				iterator.remove();
+			}
+		}
+	}
+
 	public List<MethodNode> getMetaClassMethods(ClassNode classNode) {
 		if (classNode == null) {
 			return Collections.emptyList();
@@ -236,6 +926,28 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return new ArrayList<>(methods.values());
 	}
 
+	/**
+	 * Returns the methods added to any type with metaClass assignments.
+	 */
+	public List<MethodNode> getAllMetaClassMethods() {
+		Set<MethodNode> result = new LinkedHashSet<>();
+		metaClassMethodsByType.values().forEach(methods -> result.addAll(methods.values()));
+		return new ArrayList<>(result);
+	}
+
+	/**
+	 * Returns the methods added with metaClass assignments in a file.
+	 */
+	public List<MethodNode> getMetaClassMethods(URI uri) {
+		Map<String, Map<String, MethodNode>> methodsByType = metaClassMethodsByURI.get(uri);
+		if (methodsByType == null) {
+			return Collections.emptyList();
+		}
+		Set<MethodNode> result = new LinkedHashSet<>();
+		methodsByType.values().forEach(methods -> result.addAll(methods.values()));
+		return new ArrayList<>(result);
+	}
+
 	public List<PropertyNode> getMetaClassProperties(ClassNode classNode) {
 		if (classNode == null) {
 			return Collections.emptyList();
@@ -251,68 +963,56 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	public ASTNode getNodeAtLineAndColumn(URI uri, int line, int column) {
-		Position position = new Position(line, column);
-		Map<ASTNode, Range> nodeToRange = new HashMap<>();
-		List<ASTNode> nodes = nodesByURI.get(uri);
-		if (nodes == null) {
+		ASTNodePositionIndex index = getPositionIndex(uri);
+		if (index == null) {
 			return null;
 		}
-		List<ASTNode> foundNodes = nodes.stream().filter(node -> {
-			if (node.getLineNumber() == -1) {
-				// can't be the offset node if it has no position
-				// also, do this first because it's the fastest comparison
-				return false;
-			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-			if (range == null) {
-				return false;
-			}
-			boolean result = Ranges.contains(range, position);
-			if (result) {
-				// save the range object to avoid creating it again when we
-				// sort the nodes
-				nodeToRange.put(node, range);
-			}
-			return result;
-		}).sorted((n1, n2) -> {
-			int result = Positions.COMPARATOR.reversed().compare(nodeToRange.get(n1).getStart(),
-					nodeToRange.get(n2).getStart());
-			if (result != 0) {
-				return result;
-			}
-			result = Positions.COMPARATOR.compare(nodeToRange.get(n1).getEnd(), nodeToRange.get(n2).getEnd());
-			if (result != 0) {
-				return result;
+		return index.findInnermost(line, column);
+	}
+
+	/**
+	 * Returns all nodes that contain the position, from innermost to outermost.
+	 */
+	public List<ASTNode> getNodesAtLineAndColumn(URI uri, int line, int column) {
+		ASTNodePositionIndex index = getPositionIndex(uri);
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		return index.findContaining(line, column);
+	}
+
+	/**
+	 * Returns the matching node that starts last on the specified line, without
+	 * starting after the specified column.
+	 */
+	public ASTNode getLastNodeStartingOnLine(URI uri, int line, int column, Predicate<ASTNode> predicate) {
+		ASTNodePositionIndex index = getPositionIndex(uri);
+		if (index == null) {
+			return null;
+		}
+		return index.findLastStartingOnLine(line, column, predicate);
+	}
+
+	private int compareNodesWithSameRange(ASTNode n1, ASTNode n2) {
+		if (contains(n1, n2)) {
+			if (n1 instanceof ClassNode && n2 instanceof ConstructorNode) {
+				return -1;
 			}
-			// n1 and n2 have the same range
-			if (contains(n1, n2)) {
-				if (n1 instanceof ClassNode && n2 instanceof ConstructorNode) {
-					return -1;
-				}
+			return 1;
+		} else if (contains(n2, n1)) {
+			if (n2 instanceof ClassNode && n1 instanceof ConstructorNode) {
 				return 1;
-			} else if (contains(n2, n1)) {
-				if (n2 instanceof ClassNode && n1 instanceof ConstructorNode) {
-					return 1;
-				}
-				return -1;
 			}
-			return 0;
-		}).collect(Collectors.toList());
-		if (foundNodes.size() == 0) {
-			return null;
+			return -1;
 		}
-		return foundNodes.get(0);
+		return 0;
 	}
 
 	public ASTNode getParent(ASTNode child) {
 		if (child == null) {
 			return null;
 		}
-		ASTNodeLookupData data = lookup.get(new ASTLookupKey(child));
-		if (data == null) {
-			return null;
-		}
-		return data.parent;
+		return getLookupTable(child).getParent(child);
 	}
 
 	public boolean contains(ASTNode ancestor, ASTNode descendant) {
@@ -327,25 +1027,89 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	public URI getURI(ASTNode node) {
-		ASTNodeLookupData data = lookup.get(new ASTLookupKey(node));
-		if (data == null) {
+		if (node == null) {
 			return null;
 		}
-		return data.uri;
+		return getLookupTable(node).getURI(node);
+	}
+
+	/**
+	 * Returns a visitor with the same nodes that may be updated with
+	 * visitCompilationUnit(unit, uris) without affecting this one.
+	 */
+	public ASTNodeVisitor copy() {
+		ASTNodeVisitor result = new ASTNodeVisitor();
+		result.nodesByURI.putAll(nodesByURI);
+		result.classNodesByURI.putAll(classNodesByURI);
+		// the indexes are updated in place when a file is visited again
+		classNodesByName.forEach((name, nodes) -> {
+			result.classNodesByName.put(name, new ArrayList<>(nodes));
+		});
+		classNodesByFieldName.forEach((name, nodes) -> {
+			result.classNodesByFieldName.put(name, new ArrayList<>(nodes));
+		});
+		classNodesBySupertypeName.forEach((name, nodes) -> {
+			result.classNodesBySupertypeName.put(name, new ArrayList<>(nodes));
+		});
+		result.lookup = lookup.copy();
+		result.positionIndexByURI.putAll(positionIndexByURI);
+		result.referenceCandidatesByURI.putAll(referenceCandidatesByURI);
+		result.classReferencesByURI.putAll(classReferencesByURI);
+		referenceCountsByName.forEach((name, counts) -> {
+			result.referenceCountsByName.put(name, new ConcurrentHashMap<>(counts));
+		});
+		result.classReferenceCountNames.addAll(classReferenceCountNames);
+		// the per-type maps are updated in place when a file is visited again
+		metaClassMethodsByType.forEach((typeName, methods) -> {
+			result.metaClassMethodsByType.put(typeName, new HashMap<>(methods));
+		});
+		metaClassPropertiesByType.forEach((typeName, props) -> {
+			result.metaClassPropertiesByType.put(typeName, new HashMap<>(props));
+		});
+		result.metaClassMethodsByURI.putAll(metaClassMethodsByURI);
+		result.metaClassPropertiesByURI.putAll(metaClassPropertiesByURI);
+		result.compactFilter = compactFilter;
+		result.compactFilesByURI.putAll(compactFilesByURI);
+		return result;
+	}
+
+	/**
+	 * Returns a visitor where the nodes of a file are replaced by the nodes
+	 * of a copy of the file from a separate compile, like a copy with a
+	 * placeholder for completion, without copying or changing this visitor.
+	 * The copy doesn't add members to the classes of other files.
+	 */
+	public ASTNodeVisitor withOverlay(CompilationUnit unit, URI uri) {
+		ASTNodeVisitor file = new ASTNodeVisitor();
+		file.ownClassesOnly = true;
+		file.visitCompilationUnit(unit, Collections.singleton(uri));
+		return new OverlayVisitor(this, file, uri);
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit) {
 		nodesByURI.clear();
 		classNodesByURI.clear();
+		classNodesByName.clear();
+		classNodesByFieldName.clear();
+		classNodesBySupertypeName.clear();
 		lookup.clear();
+		positionIndexByURI.clear();
+		referenceCandidatesByURI.clear();
+		classReferencesByURI.clear();
+		referenceCountsByName.clear();
+		classReferenceCountNames.clear();
 		metaClassMethodsByType.clear();
 		metaClassPropertiesByType.clear();
 		metaClassMethodsByURI.clear();
 		metaClassPropertiesByURI.clear();
 		pendingCategoryMethodsByTarget.clear();
-		unit.iterator().forEachRemaining(sourceUnit -> {
-			visitSourceUnit(sourceUnit);
-		});
+		compactFilesByURI.clear();
+		synchronized (expandedFiles) {
+			expandedFiles.clear();
+		}
+		List<SourceUnit> sourceUnits = new ArrayList<>();
+		unit.iterator().forEachRemaining(sourceUnits::add);
+		visitSourceUnits(sourceUnits);
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit, Collection<URI> uris) {
@@ -354,20 +1118,36 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			List<ASTNode> nodes = nodesByURI.remove(uri);
 			if (nodes != null) {
 				nodes.forEach(node -> {
-					lookup.remove(new ASTLookupKey(node));
+					lookup.remove(node);
 				});
 			}
-			classNodesByURI.remove(uri);
+			List<ClassNode> classNodes = classNodesByURI.remove(uri);
+			if (classNodes != null) {
+				classNodes.forEach(this::removeClassNodeFromIndexes);
+			}
+			positionIndexByURI.remove(uri);
+			classReferencesByURI.remove(uri);
+			Map<String, List<ASTNode>> oldCandidates = referenceCandidatesByURI.remove(uri);
+			if (oldCandidates != null) {
+				invalidateReferenceCounts(oldCandidates.keySet());
+			}
+			CompactFile compactFile = compactFilesByURI.remove(uri);
+			if (compactFile != null) {
+				invalidateReferenceCounts(Arrays.asList(compactFile.referenceNames));
+			}
+			synchronized (expandedFiles) {
+				expandedFiles.remove(uri);
+			}
 			removeMetaClassEntriesForUri(uri);
 		});
 		pendingCategoryMethodsByTarget.clear();
+		List<SourceUnit> sourceUnits = new ArrayList<>();
 		unit.iterator().forEachRemaining(sourceUnit -> {
-			URI uri = sourceUnit.getSource().getURI();
-			if (!uris.contains(uri)) {
-				return;
+			if (uris.contains(sourceUnit.getSource().getURI())) {
+				sourceUnits.add(sourceUnit);
 			}
-			visitSourceUnit(sourceUnit);
 		});
+		visitSourceUnits(sourceUnits);
 	}
 
 	private void removeMetaClassEntriesForUri(URI uri) {
@@ -398,80 +1178,108 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	public void visitSourceUnit(SourceUnit unit) {
+		visitSourceUnits(Collections.singletonList(unit));
+	}
+
+	/**
+	 * Classes may be transformed with members of classes in other files, so
+	 * all of the classes are transformed first, one file at a time. Then the
+	 * nodes of each file are collected by a separate visitor, in parallel,
+	 * and merged in the same order as the files.
+	 */
+	private void visitSourceUnits(List<SourceUnit> sourceUnits) {
+		sourceUnits.forEach(this::prepareClasses);
+		List<ASTNodeVisitor> collected;
+		if (sourceUnits.size() < 2) {
+			collected = sourceUnits.stream().map(this::collectNodesWithNewVisitor).collect(Collectors.toList());
+		} else {
+			collected = VISIT_POOL.submit(() -> sourceUnits.parallelStream().map(this::collectNodesWithNewVisitor)
+					.collect(Collectors.toList())).join();
+		}
+		for (int i = 0; i < sourceUnits.size(); i++) {
+			mergeNodes(sourceUnits.get(i), collected.get(i));
+		}
+	}
+
+	private void prepareClasses(SourceUnit unit) {
+		URI uri = unit.getSource().getURI();
+		List<ClassNode> classNodes = new ArrayList<>();
+		classNodesByURI.put(uri, classNodes);
+		ModuleNode moduleNode = unit.getAST();
+		if (moduleNode == null) {
+			return;
+		}
+		for (ClassNode classNode : moduleNode.getClasses()) {
+			classNodes.add(classNode);
+			indexClassNode(classNode);
+			applyPendingCategoryMethods(classNode);
+			applyAstTransformations(classNode);
+			applyGrailsTransformations(classNode, uri);
+			indexFields(classNode);
+		}
+	}
+
+	private ASTNodeVisitor collectNodesWithNewVisitor(SourceUnit unit) {
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.compactFilter = compactFilter;
+		visitor.collectNodes(unit);
+		return visitor;
+	}
+
+	/**
+	 * Collects the nodes of a source unit without changing any of its
+	 * classes, so that other source units may be collected at the same time.
+	 */
+	private void collectNodes(SourceUnit unit) {
 		sourceUnit = unit;
 		URI uri = sourceUnit.getSource().getURI();
-		nodesByURI.put(uri, new ArrayList<>());
-		classNodesByURI.put(uri, new ArrayList<>());
+		sourceURI = uri;
+		sourceNodes = new ArrayList<>();
+		sourceReferenceCandidates = new HashMap<>();
+		sourceClassReferences = new HashSet<>();
+		nodesByURI.put(uri, sourceNodes);
+		referenceCandidatesByURI.put(uri, sourceReferenceCandidates);
+		classReferencesByURI.put(uri, sourceClassReferences);
 		stack.clear();
 		ModuleNode moduleNode = unit.getAST();
 		if (moduleNode != null) {
 			visitModule(moduleNode);
 		}
-		captureMetaClassAssignmentsFromSource();
+		if (expanding || compactFilter == null || !compactFilter.test(uri)) {
+			positionIndexByURI.put(uri, ASTNodePositionIndex.build(sourceNodes, this::compareNodesWithSameRange));
+		}
 		sourceUnit = null;
+		sourceURI = null;
+		sourceNodes = null;
+		sourceReferenceCandidates = null;
+		sourceClassReferences = null;
 		stack.clear();
 	}
 
-	private void captureMetaClassAssignmentsFromSource() {
-		if (sourceUnit == null || sourceUnit.getSource() == null) {
-			return;
-		}
-		String text = readSourceText();
-		if (text == null || text.isBlank()) {
-			return;
-		}
-		Matcher matcher = METACLASS_METHOD_PATTERN.matcher(text);
-		while (matcher.find()) {
-			String className = matcher.group(1);
-			String methodName = matcher.group(2);
-			ClassNode targetType = null;
-			for (ClassNode classNode : getClassNodes()) {
-				if (className.equals(classNode.getName())
-						|| className.equals(classNode.getNameWithoutPackage())) {
-					targetType = classNode;
-					break;
-				}
-			}
-			if (targetType == null) {
-				targetType = new ClassNode(className, 0, ClassHelper.OBJECT_TYPE);
-			}
-			MethodNode methodNode = new MethodNode(methodName, 0, ClassHelper.dynamicType(), new Parameter[0],
-					new ClassNode[0], null);
-			methodNode.setDeclaringClass(targetType);
-			if (targetType.getMethods(methodName).isEmpty()) {
-				targetType.addMethod(methodNode);
-			}
-			metaClassMethodsByType.computeIfAbsent(targetType.getName(), key -> new HashMap<>()).put(methodName,
-					methodNode);
-			String simpleName = targetType.getNameWithoutPackage();
-			if (simpleName != null && !simpleName.equals(targetType.getName())) {
-				metaClassMethodsByType.computeIfAbsent(simpleName, key -> new HashMap<>()).put(methodName, methodNode);
-			}
-			URI uri = sourceUnit.getSource().getURI();
-			if (uri != null) {
-				metaClassMethodsByURI.computeIfAbsent(uri, key -> new HashMap<>())
-						.computeIfAbsent(targetType.getName(), key -> new HashMap<>()).put(methodName, methodNode);
-				if (simpleName != null && !simpleName.equals(targetType.getName())) {
-					metaClassMethodsByURI.computeIfAbsent(uri, key -> new HashMap<>())
-							.computeIfAbsent(simpleName, key -> new HashMap<>()).put(methodName, methodNode);
-				}
-			}
-		}
-	}
-
-	private String readSourceText() {
-		try (Reader reader = sourceUnit.getSource().getReader();
-				BufferedReader buffered = new BufferedReader(reader)) {
-			StringBuilder builder = new StringBuilder();
-			char[] buffer = new char[4096];
-			int read;
-			while ((read = buffered.read(buffer)) != -1) {
-				builder.append(buffer, 0, read);
-			}
-			return builder.toString();
-		} catch (IOException e) {
-			return null;
+	private void mergeNodes(SourceUnit unit, ASTNodeVisitor collected) {
+		sourceUnit = unit;
+		URI uri = sourceUnit.getSource().getURI();
+		sourceURI = uri;
+		sourceNodes = collected.nodesByURI.get(uri);
+		sourceReferenceCandidates = collected.referenceCandidatesByURI.get(uri);
+		sourceClassReferences = collected.classReferencesByURI.get(uri);
+		nodesByURI.put(uri, sourceNodes);
+		referenceCandidatesByURI.put(uri, sourceReferenceCandidates);
+		classReferencesByURI.put(uri, sourceClassReferences);
+		lookup.putAll(collected.lookup);
+		collected.metaClassAssignments.forEach(this::captureMetaClassAssignment);
+		// this file may now refer to definitions that it didn't before
+		invalidateReferenceCounts(sourceReferenceCandidates.keySet());
+		if (compactFilter != null && compactFilter.test(uri)) {
+			compact(uri);
+		} else {
+			positionIndexByURI.put(uri, collected.positionIndexByURI.get(uri));
 		}
+		sourceUnit = null;
+		sourceURI = null;
+		sourceNodes = null;
+		sourceReferenceCandidates = null;
+		sourceClassReferences = null;
 	}
 
 	public void visitModule(ModuleNode node) {
@@ -491,13 +1299,8 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	// GroovyClassVisitor
 
 	public void visitClass(ClassNode node) {
-		URI uri = sourceUnit.getSource().getURI();
-		classNodesByURI.get(uri).add(node);
 		pushASTNode(node);
 		try {
-			applyPendingCategoryMethods(node);
-			applyAstTransformations(node);
-			applyGrailsTransformations(node, uri);
 			ClassNode unresolvedSuperClass = node.getUnresolvedSuperClass();
 			if (unresolvedSuperClass != null && unresolvedSuperClass.getLineNumber() != -1) {
 				pushASTNode(unresolvedSuperClass);
@@ -657,7 +1460,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		if (targetType == null || methodName == null) {
 			return;
 		}
-		if (!targetType.getMethods(methodName).isEmpty()) {
+		if (!targetType.getMethods(methodName).isEmpty() || !canAddMembers(targetType)) {
 			return;
 		}
 		int modifiers = Modifier.PUBLIC | (isStatic ? Modifier.STATIC : 0);
@@ -779,6 +1582,9 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 				return;
 			}
 		}
+		if (!canAddMembers(node)) {
+			return;
+		}
 		ConstructorNode ctor = new ConstructorNode(Modifier.PUBLIC, parameters,
 				ClassNode.EMPTY_ARRAY, new BlockStatement());
 		ctor.setSynthetic(true);
@@ -903,12 +1709,26 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		if (target == null || method == null) {
 			return;
 		}
-		if (hasMethodSignature(target, method)) {
+		if (hasMethodSignature(target, method) || !canAddMembers(target)) {
 			return;
 		}
 		target.addMethod(method);
 	}
 
+	private boolean canAddMembers(ClassNode target) {
+		if (!ownClassesOnly) {
+			return true;
+		}
+		for (List<ClassNode> classNodes : classNodesByURI.values()) {
+			for (ClassNode classNode : classNodes) {
+				if (classNode == target) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private boolean hasMethodSignature(ClassNode target, MethodNode candidate) {
 		for (MethodNode existing : target.getMethods(candidate.getName())) {
 			if (sameParameterTypes(existing.getParameters(), candidate.getParameters())) {
@@ -943,7 +1763,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	private void addPropertyIfMissingInternal(ClassNode target, PropertyNode prop) {
-		if (target == null || prop == null) {
+		if (target == null || prop == null || !canAddMembers(target)) {
 			return;
 		}
 		if (target.getProperty(prop.getName()) != null || target.getField(prop.getName()) != null) {
@@ -965,7 +1785,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	private void addFieldAsPropertyIfMissingInternal(ClassNode target, FieldNode field) {
-		if (target == null || field == null) {
+		if (target == null || field == null || !canAddMembers(target)) {
 			return;
 		}
 		if (target.getProperty(field.getName()) != null || target.getField(field.getName()) != null) {
@@ -1055,19 +1875,6 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return null;
 	}
 
-	private ClassNode findClassNodeByName(String className) {
-		if (className == null) {
-			return null;
-		}
-		for (ClassNode classNode : getClassNodes()) {
-			if (className.equals(classNode.getName())
-					|| className.equals(classNode.getNameWithoutPackage())) {
-				return classNode;
-			}
-		}
-		return null;
-	}
-
 	@Override
 	public void visitImports(ModuleNode node) {
 		if (node != null) {
@@ -1324,34 +2131,38 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	public void visitBinaryExpression(BinaryExpression node) {
 		pushASTNode(node);
 		try {
-			captureMetaClassAssignment(node);
+			if (!expanding && isMetaClassAssignment(node)) {
+				metaClassAssignments.add(node);
+			}
 			super.visitBinaryExpression(node);
 		} finally {
 			popASTNode();
 		}
 	}
 
-	private void captureMetaClassAssignment(BinaryExpression node) {
+	private static boolean isMetaClassAssignment(BinaryExpression node) {
 		String operation = node.getOperation() != null ? node.getOperation().getText() : null;
 		if (!"=".equals(operation)) {
-			return;
+			return false;
 		}
 		if (!(node.getLeftExpression() instanceof PropertyExpression)) {
-			return;
+			return false;
 		}
 		PropertyExpression left = (PropertyExpression) node.getLeftExpression();
-		String propertyName = left.getPropertyAsString();
-		if (propertyName == null) {
-			return;
+		if (left.getPropertyAsString() == null) {
+			return false;
 		}
 		if (!(left.getObjectExpression() instanceof PropertyExpression)) {
-			return;
+			return false;
 		}
 		PropertyExpression metaClassExpr = (PropertyExpression) left.getObjectExpression();
-		String metaClassName = metaClassExpr.getPropertyAsString();
-		if (!"metaClass".equals(metaClassName)) {
-			return;
-		}
+		return "metaClass".equals(metaClassExpr.getPropertyAsString());
+	}
+
+	private void captureMetaClassAssignment(BinaryExpression node) {
+		PropertyExpression left = (PropertyExpression) node.getLeftExpression();
+		String propertyName = left.getPropertyAsString();
+		PropertyExpression metaClassExpr = (PropertyExpression) left.getObjectExpression();
 		Expression targetExpr = metaClassExpr.getObjectExpression();
 		ClassNode targetType = null;
 		if (targetExpr instanceof ClassExpression) {
@@ -1366,7 +2177,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 				targetType = exprType;
 			}
 		} else {
-			ASTNode def = net.prominic.groovyls.compiler.util.GroovyASTUtils.getDefinition(targetExpr, false, this);
+			ASTNode def = GroovyASTUtils.getDefinition(targetExpr, false, this);
 			if (def instanceof ClassNode) {
 				targetType = (ClassNode) def;
 			} else if (def instanceof VariableExpression) {
@@ -1382,15 +2193,12 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 				candidateName = ((VariableExpression) targetExpr).getName();
 			} else if (targetExpr instanceof ConstantExpression) {
 				candidateName = ((ConstantExpression) targetExpr).getText();
+			} else if (targetExpr instanceof PropertyExpression) {
+				// a qualified name of a class that isn't on the classpath
+				candidateName = targetExpr.getText();
 			}
 			if (candidateName != null) {
-				for (ClassNode classNode : getClassNodes()) {
-					if (candidateName.equals(classNode.getName())
-							|| candidateName.equals(classNode.getNameWithoutPackage())) {
-						targetType = classNode;
-						break;
-					}
-				}
+				targetType = findClassNodeByName(candidateName);
 			}
 			if (targetType == null && candidateName != null) {
 				targetType = new ClassNode(candidateName, 0, ClassHelper.OBJECT_TYPE);
@@ -1399,12 +2207,12 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 				return;
 			}
 		}
-		URI uri = sourceUnit != null ? sourceUnit.getSource().getURI() : null;
+		URI uri = sourceURI;
 		if (node.getRightExpression() instanceof ClosureExpression) {
 			MethodNode methodNode = new MethodNode(propertyName, 0, ClassHelper.dynamicType(), new Parameter[0],
 					new ClassNode[0], null);
 			methodNode.setDeclaringClass(targetType);
-			if (targetType.getMethods(propertyName).isEmpty()) {
+			if (targetType.getMethods(propertyName).isEmpty() && canAddMembers(targetType)) {
 				targetType.addMethod(methodNode);
 			}
 			metaClassMethodsByType.computeIfAbsent(targetType.getName(), key -> new HashMap<>()).put(propertyName,
@@ -1426,7 +2234,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			PropertyNode propNode = new PropertyNode(propertyName, 0, ClassHelper.dynamicType(),
 					targetType, null, null, null);
 			propNode.setDeclaringClass(targetType);
-			if (targetType.getProperty(propertyName) == null) {
+			if (targetType.getProperty(propertyName) == null && canAddMembers(targetType)) {
 				targetType.addProperty(propNode);
 			}
 			metaClassPropertiesByType.computeIfAbsent(targetType.getName(), key -> new HashMap<>()).put(propertyName,
@@ -1455,11 +2263,9 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		if (normalized.endsWith(".class")) {
 			normalized = normalized.substring(0, normalized.length() - ".class".length());
 		}
-		for (ClassNode classNode : getClassNodes()) {
-			if (normalized.equals(classNode.getName())
-					|| normalized.equals(classNode.getNameWithoutPackage())) {
-				return classNode;
-			}
+		ClassNode classNode = findClassNodeByName(normalized);
+		if (classNode != null) {
+			return classNode;
 		}
 		return new ClassNode(normalized, 0, ClassHelper.OBJECT_TYPE);
 	}
@@ -0,0 +1,61 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Diagnostic;
+
+/**
+ * The result of a compilation, published as a whole once the AST has been
+ * visited. The visitor in a snapshot is never visited again, so requests may
+ * read it while the next compilation is in progress.
+ */
+public class ASTSnapshot {
+	private final long version;
+	private final ASTNodeVisitor visitor;
+	private final Map<URI, List<Diagnostic>> diagnosticsByURI;
+
+	public ASTSnapshot(long version, ASTNodeVisitor visitor, Map<URI, List<Diagnostic>> diagnosticsByURI) {
+		this.version = version;
+		this.visitor = visitor;
+		this.diagnosticsByURI = diagnosticsByURI != null ? Collections.unmodifiableMap(diagnosticsByURI)
+				: Collections.emptyMap();
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public ASTNodeVisitor getVisitor() {
+		return visitor;
+	}
+
+	public List<Diagnostic> getDiagnostics(URI uri) {
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+		if (diagnostics == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(diagnostics);
+	}
+}
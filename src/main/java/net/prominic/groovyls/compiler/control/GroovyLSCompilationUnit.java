@@ -20,20 +20,77 @@
 package net.prominic.groovyls.compiler.control;
 
 import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.ast.AnnotatedNode;
+import org.codehaus.groovy.ast.AnnotationNode;
+import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.CompileUnit;
+import org.codehaus.groovy.ast.ConstructorNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.expr.ArrayExpression;
+import org.codehaus.groovy.ast.expr.CastExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.CatchStatement;
+import org.codehaus.groovy.ast.stmt.ForStatement;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.tools.GroovyClass;
 
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+import net.prominic.groovyls.util.FileContentsTracker;
+
+import java.net.URI;
+import java.nio.file.Paths;
 import java.security.CodeSource;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class GroovyLSCompilationUnit extends CompilationUnit {
+	// with CompilerConfiguration.PARALLEL_PARSE, the compiler parses source
+	// units with a parallel stream, which uses the pool that it runs in
+	private static final ForkJoinPool PARSE_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private List<GroovyLSCompilationUnit> partitions = Collections.emptyList();
+	private List<GroovyLSCompilationUnit> dependencies = Collections.emptyList();
+	private BooleanSupplier cancellationCheck;
+	private Function<String, ClassNode> classResolver;
+	private boolean compiling = false;
+	private Map<URI, SourceAPI> apiByURI;
+	private Set<URI> apiChangedURIs = new HashSet<>();
+	private Set<URI> reparsedURIs = new HashSet<>();
+	// the classes of sources that were compiled again without changing their
+	// API, mapped to the classes that replaced them
+	private Map<ClassNode, ClassNode> replacedClasses = new IdentityHashMap<>();
 
 	public GroovyLSCompilationUnit(CompilerConfiguration config) {
 		this(config, null, null);
@@ -42,13 +99,370 @@ public class GroovyLSCompilationUnit extends CompilationUnit {
 	public GroovyLSCompilationUnit(CompilerConfiguration config, CodeSource security, GroovyClassLoader loader) {
 		super(config, security, loader);
 		this.errorCollector = new LanguageServerErrorCollector(config);
+		this.ast = new PartitionCompileUnit();
+		this.sources = new CancellableSourcesMap();
 	}
 
 	public void setErrorCollector(LanguageServerErrorCollector errorCollector) {
 		this.errorCollector = errorCollector;
 	}
 
+	/**
+	 * Before each phase, and before each source unit that goes through a
+	 * phase, compile() checks if it should stop, and throws
+	 * CompilationCancelledException if it should. Sources that were already
+	 * compiled through a phase don't need to go through it again when
+	 * compile() is called the next time.
+	 */
+	public void setCancellationCheck(BooleanSupplier cancellationCheck) {
+		this.cancellationCheck = cancellationCheck;
+		for (GroovyLSCompilationUnit partition : partitions) {
+			partition.setCancellationCheck(cancellationCheck);
+		}
+	}
+
+	@Override
+	public void gotoPhase(int phase) throws CompilationFailedException {
+		checkCancelled();
+		super.gotoPhase(phase);
+	}
+
+	private void checkCancelled() throws CompilationCancelledException {
+		if (cancellationCheck != null && cancellationCheck.getAsBoolean()) {
+			throw new CompilationCancelledException(phase, this);
+		}
+	}
+
+	/**
+	 * Splits this compilation unit into partitions (one per module) that are
+	 * compiled separately. Sources must be added to the partitions instead of
+	 * this unit, and each partition must come after the partitions that it
+	 * depends on.
+	 */
+	public void setPartitions(List<GroovyLSCompilationUnit> partitions) {
+		this.partitions = new ArrayList<>(partitions);
+		for (GroovyLSCompilationUnit partition : this.partitions) {
+			partition.setErrorCollector((LanguageServerErrorCollector) errorCollector);
+		}
+	}
+
+	public List<GroovyLSCompilationUnit> getPartitions() {
+		return Collections.unmodifiableList(partitions);
+	}
+
+	/**
+	 * Classes that can't be found in this partition are resolved from the ASTs
+	 * of the partitions that it depends on.
+	 */
+	public void setDependencies(List<GroovyLSCompilationUnit> dependencies) {
+		this.dependencies = new ArrayList<>(dependencies);
+	}
+
+	@Override
+	public void setClassLoader(GroovyClassLoader classLoader) {
+		super.setClassLoader(classLoader);
+		if (partitions == null) {
+			// called by the superclass constructor
+			return;
+		}
+		for (GroovyLSCompilationUnit partition : partitions) {
+			partition.setClassLoader(classLoader);
+		}
+	}
+
+	@Override
+	public Iterator<SourceUnit> iterator() {
+		if (partitions.isEmpty()) {
+			return super.iterator();
+		}
+		List<SourceUnit> result = new ArrayList<>();
+		for (GroovyLSCompilationUnit partition : partitions) {
+			partition.iterator().forEachRemaining(result::add);
+		}
+		return result.iterator();
+	}
+
+	@Override
+	public void compile(int throughPhase) throws CompilationFailedException {
+		if (ForkJoinTask.getPool() != PARSE_POOL) {
+			PARSE_POOL.submit(() -> compile(throughPhase)).join();
+			return;
+		}
+		if (!partitions.isEmpty()) {
+			compilePartitions(throughPhase);
+			return;
+		}
+		compiling = true;
+		try {
+			super.compile(throughPhase);
+		} finally {
+			compiling = false;
+		}
+	}
+
+	/**
+	 * Compiles the partitions that have changed, in parallel, starting with
+	 * the partitions that don't depend on any others.
+	 */
+	private void compilePartitions(int throughPhase) throws CompilationFailedException {
+		Map<GroovyLSCompilationUnit, Integer> levels = new HashMap<>();
+		List<List<GroovyLSCompilationUnit>> layers = new ArrayList<>();
+		for (GroovyLSCompilationUnit partition : partitions) {
+			int level = 0;
+			for (GroovyLSCompilationUnit dependency : partition.dependencies) {
+				level = Math.max(level, levels.getOrDefault(dependency, -1) + 1);
+			}
+			levels.put(partition, level);
+			while (layers.size() <= level) {
+				layers.add(new ArrayList<>());
+			}
+			layers.get(level).add(partition);
+		}
+		CompilationFailedException failure = null;
+		for (List<GroovyLSCompilationUnit> layer : layers) {
+			checkCancelled();
+			List<GroovyLSCompilationUnit> partitionsToCompile = layer.stream()
+					.filter(partition -> partition.needsCompile(throughPhase)).collect(Collectors.toList());
+			List<CompilationFailedException> failures = partitionsToCompile.parallelStream().map(partition -> {
+				try {
+					checkCancelled();
+					partition.compile(throughPhase);
+					return null;
+				} catch (CompilationFailedException e) {
+					return e;
+				}
+			}).collect(Collectors.toList());
+			for (CompilationFailedException e : failures) {
+				if (e instanceof CompilationCancelledException) {
+					throw e;
+				}
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private boolean needsCompile(int throughPhase) {
+		if (hasPendingSources()) {
+			return true;
+		}
+		for (SourceUnit sourceUnit : sources.values()) {
+			if (sourceUnit.getPhase() < throughPhase
+					|| (sourceUnit.getPhase() == throughPhase && !sourceUnit.isPhaseComplete())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the names of the classes declared by sources whose public API
+	 * (the signatures of classes and their non-private members) changed since
+	 * the last time that this method was called, including sources that were
+	 * added or removed. The first call only records the API of every source.
+	 */
+	public Set<String> takeClassesWithChangedAPI() {
+		Map<URI, SourceUnit> sourcesByURI = new HashMap<>();
+		iterator().forEachRemaining(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			if (uri != null && sourceUnit.getAST() != null) {
+				sourcesByURI.put(uri, sourceUnit);
+			}
+		});
+		boolean firstCall = apiByURI == null;
+		if (firstCall) {
+			apiByURI = new HashMap<>();
+		}
+		Set<String> result = new HashSet<>();
+		apiByURI.keySet().removeIf(uri -> {
+			if (sourcesByURI.containsKey(uri)) {
+				return false;
+			}
+			result.addAll(apiByURI.get(uri).classNames);
+			return true;
+		});
+		apiChangedURIs.clear();
+		replacedClasses.clear();
+		sourcesByURI.forEach((uri, sourceUnit) -> {
+			SourceAPI previous = apiByURI.get(uri);
+			if (previous != null && previous.sourceUnit == sourceUnit) {
+				return;
+			}
+			SourceAPI next = new SourceAPI(sourceUnit);
+			apiByURI.put(uri, next);
+			apiChangedURIs.add(uri);
+			if (previous == null || previous.hash != next.hash) {
+				result.addAll(next.classNames);
+				if (previous != null) {
+					result.addAll(previous.classNames);
+				}
+			} else {
+				ModuleNode moduleNode = sourceUnit.getAST();
+				for (ClassNode classNode : previous.sourceUnit.getAST().getClasses()) {
+					ClassNode replacement = moduleNode.getClasses().stream()
+							.filter(newClassNode -> newClassNode.getName().equals(classNode.getName())).findFirst()
+							.orElse(null);
+					if (replacement != null) {
+						replacedClasses.put(classNode, replacement);
+					}
+				}
+			}
+		});
+		if (firstCall) {
+			result.clear();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the names of the classes declared by sources that were compiled
+	 * again without changing their API, according to the last call to
+	 * takeClassesWithChangedAPI(). Files that refer to them don't need to be
+	 * parsed again, but their references need to be redirected with
+	 * redirectReplacedClasses().
+	 */
+	public Set<String> getReplacedClassNames() {
+		Set<String> result = new HashSet<>();
+		for (ClassNode classNode : replacedClasses.keySet()) {
+			result.add(classNode.getName());
+		}
+		return result;
+	}
+
+	/**
+	 * Redirects the resolved class references of the sources with the
+	 * specified URIs from the classes that were replaced, according to the
+	 * last call to takeClassesWithChangedAPI(), to the classes that replaced
+	 * them, without resolving anything again.
+	 */
+	public void redirectReplacedClasses(Collection<URI> uris) {
+		if (replacedClasses.isEmpty()) {
+			return;
+		}
+		iterator().forEachRemaining(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			if (sourceUnit.getAST() != null && uris.contains(uri) && !apiChangedURIs.contains(uri)) {
+				new ClassRedirectVisitor(sourceUnit, replacedClasses).visitModule(sourceUnit.getAST());
+			}
+		});
+	}
+
+	/**
+	 * Parses the sources with the specified URIs again, so that their
+	 * references are resolved again when compiled. Sources that were just
+	 * compiled, according to the last call to takeClassesWithChangedAPI(), are
+	 * skipped. Returns the URIs of the sources that will be parsed.
+	 */
+	public Set<URI> reparseSources(Collection<URI> uris) {
+		Set<URI> result = new HashSet<>();
+		if (partitions.isEmpty()) {
+			result.addAll(reparseSources(uris, apiChangedURIs));
+		} else {
+			for (GroovyLSCompilationUnit partition : partitions) {
+				result.addAll(partition.reparseSources(uris, apiChangedURIs));
+			}
+		}
+		reparsedURIs.addAll(result);
+		return result;
+	}
+
+	private Set<URI> reparseSources(Collection<URI> uris, Set<URI> skippedURIs) {
+		Set<URI> result = new HashSet<>();
+		List<SourceUnit> sourceUnits = new ArrayList<>();
+		for (SourceUnit sourceUnit : sources.values()) {
+			URI uri = sourceUnit.getSource().getURI();
+			if (uris.contains(uri) && !skippedURIs.contains(uri)) {
+				sourceUnits.add(sourceUnit);
+				result.add(uri);
+			}
+		}
+		if (sourceUnits.isEmpty()) {
+			return result;
+		}
+		// unlike removeSources(), the errors of other sources are kept
+		((LanguageServerErrorCollector) errorCollector)
+				.clear(sourceUnits.stream().map(SourceUnit::getName).collect(Collectors.toList()));
+		removeSourcesAndModules(sourceUnits);
+		for (SourceUnit sourceUnit : sourceUnits) {
+			addSource(new SourceUnit(sourceUnit.getName(), sourceUnit.getSource(), configuration, classLoader,
+					errorCollector));
+		}
+		return result;
+	}
+
+	/**
+	 * Compiles a copy of a source with different contents, like a file with a
+	 * placeholder that completes an unfinished expression, in a separate unit.
+	 * Classes that the copy doesn't declare are resolved with the specified
+	 * function, like from the classes of the latest AST, instead of from this
+	 * unit, which may be compiling at the same time.
+	 */
+	public GroovyLSCompilationUnit compileDetachedSource(URI uri, String contents, int throughPhase,
+			Function<String, ClassNode> classResolver) {
+		GroovyLSCompilationUnit unit = createDetachedUnit(uri, contents);
+		unit.classResolver = classResolver;
+		unit.compileDetached(throughPhase);
+		return unit;
+	}
+
+	/**
+	 * Parses a copy of a source in a separate unit, without resolving any
+	 * classes, which is fast enough to run after every edit.
+	 */
+	public GroovyLSCompilationUnit parseDetachedSource(URI uri, String contents) {
+		GroovyLSCompilationUnit unit = createDetachedUnit(uri, contents);
+		unit.compileDetached(Phases.CONVERSION);
+		return unit;
+	}
+
+	private GroovyLSCompilationUnit createDetachedUnit(URI uri, String contents) {
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(configuration, null, classLoader);
+		unit.addSource(new SourceUnit(Paths.get(uri).toString(),
+				new StringReaderSourceWithURI(contents, uri, configuration), configuration, classLoader,
+				unit.getErrorCollector()));
+		return unit;
+	}
+
+	private void compileDetached(int throughPhase) {
+		try {
+			compile(throughPhase);
+		} catch (CompilationFailedException e) {
+			// the AST is still useful if there are errors
+		}
+	}
+
+	/**
+	 * Returns the URIs of the sources that were parsed again by
+	 * reparseSources() since the last time that this method was called.
+	 */
+	public Set<URI> takeReparsedURIs() {
+		Set<URI> result = reparsedURIs;
+		reparsedURIs = new HashSet<>();
+		return result;
+	}
+
 	public void removeSources(Collection<SourceUnit> sourceUnitsToRemove) {
+		if (!partitions.isEmpty()) {
+			for (GroovyLSCompilationUnit partition : partitions) {
+				List<SourceUnit> partitionSources = sourceUnitsToRemove.stream()
+						.filter(sourceUnit -> partition.sources.get(sourceUnit.getName()) == sourceUnit)
+						.collect(Collectors.toList());
+				if (!partitionSources.isEmpty()) {
+					partition.removeSources(partitionSources);
+				}
+			}
+			return;
+		}
+		removeSourcesAndModules(sourceUnitsToRemove);
+		LanguageServerErrorCollector lsErrorCollector = (LanguageServerErrorCollector) errorCollector;
+		lsErrorCollector.clear();
+	}
+
+	private void removeSourcesAndModules(Collection<SourceUnit> sourceUnitsToRemove) {
 		for (SourceUnit sourceUnit : sourceUnitsToRemove) {
 			if (sourceUnit.getAST() != null) {
 				List<String> sourceUnitClassNames = sourceUnit.getAST().getClasses().stream()
@@ -60,14 +474,12 @@ public class GroovyLSCompilationUnit extends CompilationUnit {
 		}
 		// keep existing modules from other source units
 		List<ModuleNode> modules = ast.getModules();
-		ast = new CompileUnit(this.classLoader, null, this.configuration);
+		ast = new PartitionCompileUnit();
 		for (ModuleNode module : modules) {
 			if (!sourceUnitsToRemove.contains(module.getContext())) {
 				ast.addModule(module);
 			}
 		}
-		LanguageServerErrorCollector lsErrorCollector = (LanguageServerErrorCollector) errorCollector;
-		lsErrorCollector.clear();
 	}
 
 	public void removeSource(SourceUnit sourceUnit) {
@@ -75,6 +487,343 @@ public class GroovyLSCompilationUnit extends CompilationUnit {
 	}
 
 	public boolean hasPendingSources() {
+		if (!partitions.isEmpty()) {
+			return partitions.stream().anyMatch(GroovyLSCompilationUnit::hasPendingSources);
+		}
 		return queuedSources != null && !queuedSources.isEmpty();
 	}
+
+	private static class SourceAPI {
+		private final SourceUnit sourceUnit;
+		private final List<String> classNames = new ArrayList<>();
+		private final long hash;
+
+		private SourceAPI(SourceUnit sourceUnit) {
+			this.sourceUnit = sourceUnit;
+			StringBuilder signature = new StringBuilder();
+			for (ClassNode classNode : sourceUnit.getAST().getClasses()) {
+				classNames.add(classNode.getName());
+				signature.append(classNode.getModifiers()).append(' ').append(classNode.getName());
+				appendType(classNode.getUnresolvedSuperClass(false), signature);
+				for (ClassNode interfaceNode : classNode.getInterfaces()) {
+					appendType(interfaceNode, signature);
+				}
+				signature.append('{');
+				for (FieldNode field : classNode.getFields()) {
+					if (!field.isPrivate()) {
+						signature.append(field.getModifiers()).append(' ').append(field.getName());
+						appendType(field.getType(), signature);
+						signature.append(';');
+					}
+				}
+				for (PropertyNode property : classNode.getProperties()) {
+					signature.append(property.getModifiers()).append(' ').append(property.getName());
+					appendType(property.getType(), signature);
+					signature.append(';');
+				}
+				for (ConstructorNode constructor : classNode.getDeclaredConstructors()) {
+					appendMethod(constructor, signature);
+				}
+				for (MethodNode method : classNode.getMethods()) {
+					appendMethod(method, signature);
+				}
+				signature.append('}');
+			}
+			hash = FileContentsTracker.hashContents(signature);
+		}
+
+		private static void appendMethod(MethodNode method, StringBuilder signature) {
+			if (method.isPrivate()) {
+				return;
+			}
+			signature.append(method.getModifiers()).append(' ').append(method.getName());
+			appendType(method.getReturnType(), signature);
+			signature.append('(');
+			for (Parameter parameter : method.getParameters()) {
+				appendType(parameter.getType(), signature);
+			}
+			signature.append(");");
+		}
+
+		private static void appendType(ClassNode type, StringBuilder signature) {
+			signature.append(' ').append(type != null ? type.toString(false) : "");
+		}
+	}
+
+	/**
+	 * Redirects the class references of a module that was already resolved,
+	 * which point to classes that were replaced by a new compile of another
+	 * source with the same API.
+	 */
+	private static class ClassRedirectVisitor extends ClassCodeVisitorSupport {
+		private final SourceUnit sourceUnit;
+		private final Map<ClassNode, ClassNode> replacedClasses;
+		private final Set<ClassNode> visitedTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		private ClassRedirectVisitor(SourceUnit sourceUnit, Map<ClassNode, ClassNode> replacedClasses) {
+			this.sourceUnit = sourceUnit;
+			this.replacedClasses = replacedClasses;
+		}
+
+		@Override
+		protected SourceUnit getSourceUnit() {
+			return sourceUnit;
+		}
+
+		private void visitModule(ModuleNode moduleNode) {
+			for (ImportNode importNode : moduleNode.getImports()) {
+				redirect(importNode.getType());
+			}
+			for (ImportNode importNode : moduleNode.getStaticImports().values()) {
+				redirect(importNode.getType());
+			}
+			for (ImportNode importNode : moduleNode.getStaticStarImports().values()) {
+				redirect(importNode.getType());
+			}
+			for (ClassNode classNode : moduleNode.getClasses()) {
+				visitClass(classNode);
+			}
+		}
+
+		private void redirect(ClassNode type) {
+			if (type == null || !visitedTypes.add(type)) {
+				return;
+			}
+			if (type.isArray()) {
+				redirect(type.getComponentType());
+				return;
+			}
+			if (type.isRedirectNode() && !type.isGenericsPlaceHolder()) {
+				ClassNode replacement = replacedClasses.get(type.redirect());
+				if (replacement != null) {
+					type.setRedirect(replacement);
+				}
+			}
+			GenericsType[] genericsTypes = type.getGenericsTypes();
+			if (genericsTypes == null) {
+				return;
+			}
+			for (GenericsType genericsType : genericsTypes) {
+				redirect(genericsType.getType());
+				redirect(genericsType.getLowerBound());
+				ClassNode[] upperBounds = genericsType.getUpperBounds();
+				if (upperBounds != null) {
+					for (ClassNode upperBound : upperBounds) {
+						redirect(upperBound);
+					}
+				}
+			}
+		}
+
+		private void redirect(Parameter[] parameters) {
+			if (parameters == null) {
+				return;
+			}
+			for (Parameter parameter : parameters) {
+				redirect(parameter.getOriginType());
+				redirect(parameter.getType());
+			}
+		}
+
+		@Override
+		public void visitClass(ClassNode node) {
+			redirect(node.getUnresolvedSuperClass(false));
+			for (ClassNode interfaceNode : node.getInterfaces()) {
+				redirect(interfaceNode);
+			}
+			super.visitClass(node);
+		}
+
+		@Override
+		public void visitAnnotations(AnnotatedNode node) {
+			for (AnnotationNode annotation : node.getAnnotations()) {
+				redirect(annotation.getClassNode());
+			}
+			super.visitAnnotations(node);
+		}
+
+		@Override
+		public void visitField(FieldNode node) {
+			redirect(node.getOriginType());
+			redirect(node.getType());
+			super.visitField(node);
+		}
+
+		@Override
+		public void visitProperty(PropertyNode node) {
+			redirect(node.getOriginType());
+			redirect(node.getType());
+			super.visitProperty(node);
+		}
+
+		@Override
+		protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+			redirect(node.getReturnType());
+			redirect(node.getParameters());
+			ClassNode[] exceptions = node.getExceptions();
+			if (exceptions != null) {
+				for (ClassNode exceptionType : exceptions) {
+					redirect(exceptionType);
+				}
+			}
+			super.visitConstructorOrMethod(node, isConstructor);
+		}
+
+		@Override
+		public void visitVariableExpression(VariableExpression expression) {
+			redirect(expression.getOriginType());
+			redirect(expression.getType());
+			super.visitVariableExpression(expression);
+		}
+
+		@Override
+		public void visitClassExpression(ClassExpression expression) {
+			redirect(expression.getType());
+			super.visitClassExpression(expression);
+		}
+
+		@Override
+		public void visitConstructorCallExpression(ConstructorCallExpression expression) {
+			redirect(expression.getType());
+			super.visitConstructorCallExpression(expression);
+		}
+
+		@Override
+		public void visitCastExpression(CastExpression expression) {
+			redirect(expression.getType());
+			super.visitCastExpression(expression);
+		}
+
+		@Override
+		public void visitStaticMethodCallExpression(StaticMethodCallExpression expression) {
+			redirect(expression.getOwnerType());
+			super.visitStaticMethodCallExpression(expression);
+		}
+
+		@Override
+		public void visitArrayExpression(ArrayExpression expression) {
+			redirect(expression.getElementType());
+			redirect(expression.getType());
+			super.visitArrayExpression(expression);
+		}
+
+		@Override
+		public void visitClosureExpression(ClosureExpression expression) {
+			redirect(expression.getParameters());
+			super.visitClosureExpression(expression);
+		}
+
+		@Override
+		public void visitCatchStatement(CatchStatement statement) {
+			redirect(statement.getVariable().getOriginType());
+			redirect(statement.getVariable().getType());
+			super.visitCatchStatement(statement);
+		}
+
+		@Override
+		public void visitForLoop(ForStatement forLoop) {
+			redirect(forLoop.getVariable().getOriginType());
+			redirect(forLoop.getVariable().getType());
+			super.visitForLoop(forLoop);
+		}
+	}
+
+	/**
+	 * The phase operations (and the parallel parse) go through the values of
+	 * the sources map, so the compile can be cancelled between source units.
+	 */
+	private class CancellableSourcesMap extends LinkedHashMap<String, SourceUnit> {
+		@Override
+		public Collection<SourceUnit> values() {
+			Collection<SourceUnit> values = super.values();
+			if (!compiling) {
+				return values;
+			}
+			return new AbstractCollection<SourceUnit>() {
+				@Override
+				public Iterator<SourceUnit> iterator() {
+					Iterator<SourceUnit> iterator = values.iterator();
+					return new Iterator<SourceUnit>() {
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public SourceUnit next() {
+							checkCancelled();
+							return iterator.next();
+						}
+					};
+				}
+
+				@Override
+				public Spliterator<SourceUnit> spliterator() {
+					return new CancellableSpliterator(values.spliterator());
+				}
+
+				@Override
+				public int size() {
+					return values.size();
+				}
+			};
+		}
+	}
+
+	/**
+	 * A parallel stream splits the sources before it goes through them, so the
+	 * check happens before each source unit is passed to the action instead.
+	 */
+	private class CancellableSpliterator implements Spliterator<SourceUnit> {
+		private Spliterator<SourceUnit> spliterator;
+
+		public CancellableSpliterator(Spliterator<SourceUnit> spliterator) {
+			this.spliterator = spliterator;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super SourceUnit> action) {
+			return spliterator.tryAdvance(sourceUnit -> {
+				checkCancelled();
+				action.accept(sourceUnit);
+			});
+		}
+
+		@Override
+		public Spliterator<SourceUnit> trySplit() {
+			Spliterator<SourceUnit> split = spliterator.trySplit();
+			return split != null ? new CancellableSpliterator(split) : null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return spliterator.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return spliterator.characteristics();
+		}
+	}
+
+	private class PartitionCompileUnit extends CompileUnit {
+		PartitionCompileUnit() {
+			super(GroovyLSCompilationUnit.this.classLoader, null, GroovyLSCompilationUnit.this.configuration);
+		}
+
+		@Override
+		public ClassNode getClass(String name) {
+			ClassNode result = super.getClass(name);
+			if (result != null) {
+				return result;
+			}
+			for (GroovyLSCompilationUnit dependency : dependencies) {
+				result = dependency.getAST().getClass(name);
+				if (result != null) {
+					return result;
+				}
+			}
+			return classResolver != null ? classResolver.apply(name) : null;
+		}
+	}
 }
\ No newline at end of file
@@ -19,13 +19,19 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.compiler.control;
 
+import java.util.Collection;
+
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.control.messages.WarningMessage;
 
 /**
  * A special ErrorCollector for language servers that can clear all errors and
- * does not throw exceptions.
+ * does not throw exceptions. Source units may be parsed in parallel, so
+ * messages may be added from multiple threads.
  */
 public class LanguageServerErrorCollector extends ErrorCollector {
     private static final long serialVersionUID = 1L;
@@ -34,7 +40,7 @@ public class LanguageServerErrorCollector extends ErrorCollector {
         super(configuration);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         if (errors != null) {
             errors.clear();
         }
@@ -43,6 +49,37 @@ public class LanguageServerErrorCollector extends ErrorCollector {
         }
     }
 
+    /**
+     * Removes the syntax errors reported for the source units with the
+     * specified names.
+     */
+    public synchronized void clear(Collection<String> sourceNames) {
+        if (errors != null) {
+            errors.removeIf(message -> message instanceof SyntaxErrorMessage
+                    && sourceNames.contains(((SyntaxErrorMessage) message).getCause().getSourceLocator()));
+        }
+    }
+
+    @Override
+    public synchronized void addErrorAndContinue(Message message) {
+        super.addErrorAndContinue(message);
+    }
+
+    @Override
+    public synchronized void addError(Message message) throws CompilationFailedException {
+        super.addError(message);
+    }
+
+    @Override
+    public synchronized void addWarning(WarningMessage message) {
+        super.addWarning(message);
+    }
+
+    @Override
+    public synchronized void addCollectorContents(ErrorCollector collector) {
+        super.addCollectorContents(collector);
+    }
+
     @Override
     protected void failIfErrors() throws CompilationFailedException {
         // don't fail
@@ -26,10 +26,16 @@ import org.codehaus.groovy.control.io.StringReaderSource;
 
 public class StringReaderSourceWithURI extends StringReaderSource {
 	private URI uri;
+	private String contents;
 
 	public StringReaderSourceWithURI(String string, URI uri, CompilerConfiguration configuration) {
 		super(string, configuration);
 		this.uri = uri;
+		this.contents = string;
+	}
+
+	public String getContents() {
+		return contents;
 	}
 
 	public URI getURI() {
@@ -63,6 +63,7 @@ import org.codehaus.groovy.ast.stmt.ReturnStatement;
 import org.codehaus.groovy.ast.stmt.Statement;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
@@ -187,7 +188,7 @@ public class GroovyASTUtils {
             return null;
         }
         ASTNode match = null;
-        for (ClassNode classNode : astVisitor.getClassNodes()) {
+        for (ClassNode classNode : astVisitor.getClassNodesWithField(name)) {
             PropertyNode prop = classNode.getProperty(name);
             if (prop != null) {
                 if (match != null && match != prop) {
@@ -227,21 +228,107 @@ public class GroovyASTUtils {
     }
 
     public static List<ASTNode> getReferences(ASTNode node, ASTNodeVisitor ast) {
+        return getReferences(node, ast, () -> {
+        });
+    }
+
+    /**
+     * The cancel checker is polled for every candidate, because resolving the
+     * candidates of a common name may take a while in a large workspace.
+     */
+    public static List<ASTNode> getReferences(ASTNode node, ASTNodeVisitor ast, CancelChecker cancelChecker) {
         ASTNode definitionNode = getDefinition(node, true, ast);
-        if (definitionNode == null) {
+        if (definitionNode == null || node.getLineNumber() == -1 || node.getColumnNumber() == -1) {
+            return Collections.emptyList();
+        }
+        String definitionName = getDefinitionName(definitionNode);
+        if (definitionName == null) {
             return Collections.emptyList();
         }
-        return ast.getNodes().stream().filter(otherNode -> {
+        List<ASTNode> candidates = new ArrayList<>(ast.getReferenceCandidates(definitionName));
+        if (definitionNode instanceof ClassNode) {
+            // it and delegate may resolve to a @DelegatesTo type
+            candidates.addAll(ast.getReferenceCandidates("it"));
+            candidates.addAll(ast.getReferenceCandidates("delegate"));
+        }
+        return candidates.stream().filter(otherNode -> {
+            cancelChecker.checkCanceled();
             ASTNode otherDefinition = getDefinition(otherNode, false, ast);
-            return definitionNode.equals(otherDefinition) && node.getLineNumber() != -1 && node.getColumnNumber() != -1;
+            return definitionNode.equals(otherDefinition);
         }).collect(Collectors.toList());
     }
 
-    private static ClassNode tryToResolveOriginalClassNode(ClassNode node, boolean strict, ASTNodeVisitor ast) {
-        for (ClassNode originalNode : ast.getClassNodes()) {
-            if (originalNode.equals(node)) {
-                return originalNode;
+    /**
+     * Returns the name shared by a definition and every node that
+     * getDefinition() resolves to it, or null if the node may not be
+     * referenced.
+     */
+    public static String getDefinitionName(ASTNode definitionNode) {
+        if (definitionNode instanceof ClassNode) {
+            return ((ClassNode) definitionNode).getNameWithoutPackage();
+        } else if (definitionNode instanceof MethodNode) {
+            return ((MethodNode) definitionNode).getName();
+        } else if (definitionNode instanceof Variable) {
+            return ((Variable) definitionNode).getName();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the definition that getDefinition() may resolve the
+     * node to, without resolving it. Returns null if the node can't be
+     * resolved to a definition.
+     */
+    public static String getReferenceName(ASTNode node) {
+        if (node instanceof ExpressionStatement) {
+            node = ((ExpressionStatement) node).getExpression();
+        }
+        if (node instanceof ClassNode) {
+            return ((ClassNode) node).getNameWithoutPackage();
+        } else if (node instanceof ConstructorCallExpression) {
+            return "<init>";
+        } else if (node instanceof MethodCallExpression) {
+            return ((MethodCallExpression) node).getMethod().getText();
+        } else if (node instanceof PropertyExpression) {
+            return ((PropertyExpression) node).getProperty().getText();
+        } else if (node instanceof DeclarationExpression) {
+            DeclarationExpression declExpression = (DeclarationExpression) node;
+            if (declExpression.isMultipleAssignmentDeclaration()) {
+                return null;
+            }
+            ClassNode originType = declExpression.getVariableExpression().getOriginType();
+            return originType != null ? originType.getNameWithoutPackage() : null;
+        } else if (node instanceof ConstantExpression) {
+            String text = ((ConstantExpression) node).getText();
+            return "it".equals(text) || "delegate".equals(text) ? text : null;
+        } else if (node instanceof ClassExpression) {
+            ClassNode type = ((ClassExpression) node).getType();
+            return type != null ? type.getNameWithoutPackage() : null;
+        } else if (node instanceof ImportNode) {
+            ImportNode importNode = (ImportNode) node;
+            if (importNode.getType() != null) {
+                return importNode.getType().getNameWithoutPackage();
             }
+            String className = importNode.getClassName();
+            if (className == null) {
+                return null;
+            }
+            return className.substring(className.lastIndexOf('.') + 1);
+        } else if (node instanceof MethodNode) {
+            return ((MethodNode) node).getName();
+        } else if (node instanceof VariableExpression) {
+            Variable accessedVariable = ((VariableExpression) node).getAccessedVariable();
+            return accessedVariable instanceof ASTNode ? accessedVariable.getName() : null;
+        } else if (node instanceof Variable) {
+            return ((Variable) node).getName();
+        }
+        return null;
+    }
+
+    private static ClassNode tryToResolveOriginalClassNode(ClassNode node, boolean strict, ASTNodeVisitor ast) {
+        ClassNode originalNode = ast.findOriginalClassNode(node);
+        if (originalNode != null) {
+            return originalNode;
         }
         if (strict) {
             return null;
@@ -1222,12 +1309,7 @@ public class GroovyASTUtils {
         if (name == null || astVisitor == null) {
             return null;
         }
-        for (ClassNode classNode : astVisitor.getClassNodes()) {
-            if (name.equals(classNode.getName()) || name.equals(classNode.getNameWithoutPackage())) {
-                return classNode;
-            }
-        }
-        return null;
+        return astVisitor.findClassNodeByName(name);
     }
 
     private static AnnotationNode findAnnotation(AnnotatedNode node, List<String> names) {
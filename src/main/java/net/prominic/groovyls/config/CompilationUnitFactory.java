@@ -32,15 +32,21 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.SourceUnit;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
 
 import groovy.lang.GroovyClassLoader;
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
@@ -71,6 +77,12 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 	private List<String> excludePatterns = new ArrayList<>();
 	private List<String> sourceRoots = new ArrayList<>();
 	private List<PathMatcher> excludeMatchers = new ArrayList<>();
+	private Path indexedWorkspaceRoot;
+	private List<Path> resolvedSourceRoots;
+	private Map<Path, Set<Path>> groovyFilesByDirectory = new HashMap<>();
+	private Map<Path, List<Path>> moduleDependencies = new HashMap<>();
+	private Map<Path, GroovyLSCompilationUnit> partitionsBySourceRoot = new LinkedHashMap<>();
+	private Map<URI, Long> contentHashes = new HashMap<>();
 
 	public CompilationUnitFactory() {
 		buildExcludeMatchers();
@@ -100,6 +112,7 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		}
 		this.excludePatterns = next;
 		buildExcludeMatchers();
+		invalidateFileIndex();
 		invalidateCompilationUnit();
 	}
 
@@ -109,6 +122,20 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 			return;
 		}
 		this.sourceRoots = next;
+		invalidateFileIndex();
+		invalidateCompilationUnit();
+	}
+
+	public Map<Path, List<Path>> getModuleDependencies() {
+		return moduleDependencies;
+	}
+
+	public void setModuleDependencies(Map<Path, List<Path>> moduleDependencies) {
+		Map<Path, List<Path>> next = moduleDependencies == null ? new HashMap<>() : new HashMap<>(moduleDependencies);
+		if (Objects.equals(this.moduleDependencies, next)) {
+			return;
+		}
+		this.moduleDependencies = next;
 		invalidateCompilationUnit();
 	}
 
@@ -116,9 +143,69 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		compilationUnit = null;
 		config = null;
 		classLoader = null;
+		partitionsBySourceRoot.clear();
+	}
+
+	/**
+	 * Keeps the index of source files up to date with files that were created
+	 * or deleted outside of the editor.
+	 */
+	public void didChangeWatchedFiles(List<FileEvent> changes) {
+		for (FileEvent change : changes) {
+			Path path;
+			try {
+				path = Paths.get(URI.create(change.getUri())).normalize();
+			} catch (Exception e) {
+				continue;
+			}
+			if (FileChangeType.Created.equals(change.getType())) {
+				if (Files.isDirectory(path)) {
+					// a new directory may be a new source root, or contain
+					// files that won't get events of their own
+					invalidateFileIndex();
+					return;
+				}
+				if (!path.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+					continue;
+				}
+				boolean indexed = false;
+				for (Map.Entry<Path, Set<Path>> entry : groovyFilesByDirectory.entrySet()) {
+					Path directory = entry.getKey();
+					if (path.startsWith(directory)) {
+						if (!isInExcludedDirectory(path, directory)) {
+							entry.getValue().add(path);
+						}
+						indexed = true;
+					}
+				}
+				if (!indexed && (sourceRoots == null || sourceRoots.isEmpty())) {
+					// the file may be in a new source root
+					resolvedSourceRoots = null;
+				}
+			} else if (FileChangeType.Deleted.equals(change.getType())) {
+				// the path may have been a directory, so anything inside of
+				// it is removed too
+				if (groovyFilesByDirectory.keySet().removeIf(directory -> directory.startsWith(path))) {
+					resolvedSourceRoots = null;
+				}
+				for (Set<Path> files : groovyFilesByDirectory.values()) {
+					files.removeIf(file -> file.startsWith(path));
+				}
+			}
+		}
+	}
+
+	private void invalidateFileIndex() {
+		resolvedSourceRoots = null;
+		groovyFilesByDirectory.clear();
 	}
 
 	public GroovyLSCompilationUnit create(Path workspaceRoot, FileContentsTracker fileContentsTracker) {
+		if (!Objects.equals(indexedWorkspaceRoot, workspaceRoot)) {
+			invalidateFileIndex();
+			indexedWorkspaceRoot = workspaceRoot;
+		}
+
 		if (config == null) {
 			config = getConfiguration();
 		}
@@ -127,34 +214,40 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 			classLoader = new GroovyClassLoader(ClassLoader.getSystemClassLoader().getParent(), config, true);
 		}
 
+		if (workspaceRoot != null && resolvedSourceRoots == null) {
+			resolvedSourceRoots = resolveSourceRoots(workspaceRoot);
+		}
+		if (compilationUnit != null && !partitionsBySourceRoot.isEmpty()
+				&& (workspaceRoot == null
+						|| !partitionsBySourceRoot.keySet().equals(new HashSet<>(resolvedSourceRoots)))) {
+			// a source root was added or removed, so the partitions are
+			// created again
+			compilationUnit = null;
+		}
+
 		Set<URI> changedUris = fileContentsTracker.getChangedURIs();
 		if (compilationUnit == null) {
 			compilationUnit = new GroovyLSCompilationUnit(config, null, classLoader);
+			if (workspaceRoot != null) {
+				createPartitions(workspaceRoot);
+			}
+			contentHashes.clear();
 			// we don't care about changed URIs if there's no compilation unit yet
 			changedUris = null;
 		} else {
 			compilationUnit.setClassLoader(classLoader);
-			final Set<URI> urisToRemove = changedUris;
-			List<SourceUnit> sourcesToRemove = new ArrayList<>();
-			compilationUnit.iterator().forEachRemaining(sourceUnit -> {
-				URI uri = sourceUnit.getSource().getURI();
-				if (urisToRemove.contains(uri)) {
-					sourcesToRemove.add(sourceUnit);
-				}
-			});
-			// if an URI has changed, we remove it from the compilation unit so
-			// that a new version can be built from the updated source file
-			compilationUnit.removeSources(sourcesToRemove);
+			changedUris = replaceChangedSources(changedUris, fileContentsTracker);
 		}
 
 		if (workspaceRoot != null) {
-			List<Path> roots = resolveSourceRoots(workspaceRoot);
+			List<Path> roots = resolvedSourceRoots;
 			if (roots.isEmpty()) {
 				addDirectoryToCompilationUnit(workspaceRoot, workspaceRoot, compilationUnit, fileContentsTracker,
 						changedUris);
 			} else {
 				for (Path root : roots) {
-					addDirectoryToCompilationUnit(workspaceRoot, root, compilationUnit, fileContentsTracker, changedUris);
+					GroovyLSCompilationUnit unit = partitionsBySourceRoot.getOrDefault(root, compilationUnit);
+					addDirectoryToCompilationUnit(workspaceRoot, root, unit, fileContentsTracker, changedUris);
 				}
 			}
 		} else {
@@ -173,11 +266,155 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		return compilationUnit;
 	}
 
+	/**
+	 * If the source roots belong to more than one module, the compilation unit
+	 * is split into a partition for each module, so that a change in one
+	 * module doesn't require the other modules to be compiled again, unless
+	 * they depend on it.
+	 */
+	private void createPartitions(Path workspaceRoot) {
+		partitionsBySourceRoot.clear();
+		if (moduleDependencies.isEmpty() || resolvedSourceRoots.isEmpty()) {
+			return;
+		}
+		Map<Path, List<Path>> sourceRootsByModule = new LinkedHashMap<>();
+		for (Path root : resolvedSourceRoots) {
+			Path moduleDir = getModuleDirectory(root, workspaceRoot);
+			sourceRootsByModule.computeIfAbsent(moduleDir, key -> new ArrayList<>()).add(root);
+		}
+		if (sourceRootsByModule.size() < 2) {
+			return;
+		}
+		Map<Path, List<Path>> partitionDependencies = new HashMap<>();
+		for (Path moduleDir : sourceRootsByModule.keySet()) {
+			Set<Path> result = new LinkedHashSet<>();
+			collectPartitionDependencies(moduleDir, sourceRootsByModule.keySet(), new HashSet<>(), result);
+			result.remove(moduleDir);
+			partitionDependencies.put(moduleDir, new ArrayList<>(result));
+		}
+		List<Path> orderedModules = new ArrayList<>();
+		Set<Path> visiting = new HashSet<>();
+		for (Path moduleDir : sourceRootsByModule.keySet()) {
+			if (!sortModules(moduleDir, partitionDependencies, visiting, orderedModules)) {
+				// modules that depend on each other need to be compiled
+				// together
+				return;
+			}
+		}
+		Map<Path, GroovyLSCompilationUnit> partitionsByModule = new HashMap<>();
+		List<GroovyLSCompilationUnit> partitions = new ArrayList<>();
+		for (Path moduleDir : orderedModules) {
+			GroovyLSCompilationUnit partition = new GroovyLSCompilationUnit(config, null, classLoader);
+			partition.setDependencies(partitionDependencies.get(moduleDir).stream().map(partitionsByModule::get)
+					.collect(Collectors.toList()));
+			partitionsByModule.put(moduleDir, partition);
+			partitions.add(partition);
+			for (Path root : sourceRootsByModule.get(moduleDir)) {
+				partitionsBySourceRoot.put(root, partition);
+			}
+		}
+		compilationUnit.setPartitions(partitions);
+	}
+
+	private Path getModuleDirectory(Path sourceRoot, Path workspaceRoot) {
+		Path path = sourceRoot.toAbsolutePath().normalize();
+		Path result = null;
+		for (Path moduleDir : moduleDependencies.keySet()) {
+			if (path.startsWith(moduleDir) && (result == null || moduleDir.startsWith(result))) {
+				result = moduleDir;
+			}
+		}
+		return result != null ? result : workspaceRoot.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Finds the nearest modules with sources that a module depends on. A
+	 * dependency without any sources of its own is skipped, but the modules
+	 * that it depends on are not.
+	 */
+	private void collectPartitionDependencies(Path moduleDir, Set<Path> partitionModules, Set<Path> visited,
+			Set<Path> result) {
+		for (Path dependency : moduleDependencies.getOrDefault(moduleDir, Collections.emptyList())) {
+			if (!visited.add(dependency)) {
+				continue;
+			}
+			if (partitionModules.contains(dependency)) {
+				result.add(dependency);
+			} else {
+				collectPartitionDependencies(dependency, partitionModules, visited, result);
+			}
+		}
+	}
+
+	/**
+	 * Adds a module to the result after the modules that it depends on.
+	 * Returns false if there is a cycle.
+	 */
+	private boolean sortModules(Path moduleDir, Map<Path, List<Path>> partitionDependencies, Set<Path> visiting,
+			List<Path> result) {
+		if (result.contains(moduleDir)) {
+			return true;
+		}
+		if (!visiting.add(moduleDir)) {
+			return false;
+		}
+		for (Path dependency : partitionDependencies.get(moduleDir)) {
+			if (!sortModules(dependency, partitionDependencies, visiting, result)) {
+				return false;
+			}
+		}
+		visiting.remove(moduleDir);
+		result.add(moduleDir);
+		return true;
+	}
+
+	/**
+	 * Removes the sources of changed URIs from the compilation unit, and
+	 * returns the URIs that need to be parsed again. A URI is skipped if its
+	 * text is the same as when it was compiled (for instance, the file was
+	 * reopened or saved). An older source with the same text, like after an
+	 * undo, is not added back, because it may refer to classes of other files
+	 * that were replaced since then.
+	 */
+	private Set<URI> replaceChangedSources(Set<URI> changedUris, FileContentsTracker fileContentsTracker) {
+		Map<URI, SourceUnit> sourcesByURI = new HashMap<>();
+		compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+			sourcesByURI.put(sourceUnit.getSource().getURI(), sourceUnit);
+		});
+		Set<URI> urisToParse = new HashSet<>();
+		List<SourceUnit> sourcesToRemove = new ArrayList<>();
+		for (URI uri : changedUris) {
+			String contents = fileContentsTracker.getContents(uri);
+			Long contentHash = contents != null ? FileContentsTracker.hashContents(contents) : null;
+			SourceUnit existing = sourcesByURI.get(uri);
+			if (existing != null) {
+				// files that weren't open were read from disk by the compiler,
+				// and they may have changed since then, so the hash is unknown
+				Long existingHash = contentHashes.get(uri);
+				if (contentHash != null && contentHash.equals(existingHash)) {
+					continue;
+				}
+				sourcesToRemove.add(existing);
+			}
+			contentHashes.remove(uri);
+			if (contentHash == null) {
+				// the file was deleted
+				continue;
+			}
+			urisToParse.add(uri);
+		}
+		// if an URI has changed, we remove it from the compilation unit so
+		// that a new version can be built from the updated source file
+		compilationUnit.removeSources(sourcesToRemove);
+		return urisToParse;
+	}
+
 	protected CompilerConfiguration getConfiguration() {
 		CompilerConfiguration config = new CompilerConfiguration();
 
 		Map<String, Boolean> optimizationOptions = new HashMap<>();
 		optimizationOptions.put(CompilerConfiguration.GROOVYDOC, true);
+		optimizationOptions.put(CompilerConfiguration.PARALLEL_PARSE, true);
 		config.setOptimizationOptions(optimizationOptions);
 
 		List<String> classpathList = new ArrayList<>();
@@ -344,9 +581,60 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 
 	protected void addDirectoryToCompilationUnit(Path workspaceRoot, Path dirPath, GroovyLSCompilationUnit compilationUnit,
 			FileContentsTracker fileContentsTracker, Set<URI> changedUris) {
+		Set<Path> groovyFiles = getGroovyFiles(workspaceRoot, dirPath);
+		List<Path> filesToAdd = new ArrayList<>();
+		if (changedUris == null) {
+			filesToAdd.addAll(groovyFiles);
+		} else {
+			// only the changed files need to be looked up
+			for (URI uri : changedUris) {
+				try {
+					Path filePath = Paths.get(uri).normalize();
+					if (groovyFiles.contains(filePath)) {
+						filesToAdd.add(filePath);
+					}
+				} catch (Exception e) {
+					// not a file URI
+				}
+			}
+		}
+		for (Path filePath : filesToAdd) {
+			URI fileURI = filePath.toUri();
+			if (!fileContentsTracker.isOpen(fileURI)) {
+				File file = filePath.toFile();
+				if (file.isFile()) {
+					compilationUnit.addSource(file);
+				}
+			}
+		}
+		fileContentsTracker.getOpenURIs().forEach(uri -> {
+			Path openPath = Paths.get(uri);
+			if (!openPath.normalize().startsWith(dirPath.normalize())) {
+				return;
+			}
+			if (changedUris != null && !changedUris.contains(uri)) {
+				return;
+			}
+			String contents = fileContentsTracker.getContents(uri);
+			addOpenFileToCompilationUnit(uri, contents, compilationUnit);
+		});
+	}
+
+	/**
+	 * Returns the source files in a directory. The directory is only walked
+	 * the first time, and after that, the index is updated by
+	 * didChangeWatchedFiles().
+	 */
+	private Set<Path> getGroovyFiles(Path workspaceRoot, Path dirPath) {
+		Path directory = dirPath.normalize();
+		Set<Path> files = groovyFilesByDirectory.get(directory);
+		if (files != null) {
+			return files;
+		}
+		Set<Path> result = new LinkedHashSet<>();
 		try {
-			if (Files.exists(dirPath)) {
-				Files.walkFileTree(dirPath, new SimpleFileVisitor<Path>() {
+			if (Files.exists(directory)) {
+				Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
 					@Override
 					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
 						if (workspaceRoot != null && shouldExclude(dir, workspaceRoot)) {
@@ -357,40 +645,37 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 
 					@Override
 					public FileVisitResult visitFile(Path filePath, BasicFileAttributes attrs) {
-						if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
-							return FileVisitResult.CONTINUE;
-						}
-						URI fileURI = filePath.toUri();
-						if (!fileContentsTracker.isOpen(fileURI)) {
-							File file = filePath.toFile();
-							if (file.isFile()) {
-								if (changedUris == null || changedUris.contains(fileURI)) {
-									compilationUnit.addSource(file);
-								}
-							}
+						if (filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+							result.add(filePath.normalize());
 						}
 						return FileVisitResult.CONTINUE;
 					}
 				});
 			}
-
 		} catch (IOException e) {
-			System.err.println("Failed to walk directory for source files: " + dirPath);
+			System.err.println("Failed to walk directory for source files: " + directory);
 		}
-		fileContentsTracker.getOpenURIs().forEach(uri -> {
-			Path openPath = Paths.get(uri);
-			if (!openPath.normalize().startsWith(dirPath.normalize())) {
-				return;
-			}
-			if (changedUris != null && !changedUris.contains(uri)) {
-				return;
+		groovyFilesByDirectory.put(directory, result);
+		return result;
+	}
+
+	private boolean isInExcludedDirectory(Path filePath, Path directory) {
+		if (indexedWorkspaceRoot == null) {
+			return false;
+		}
+		// same as the directories skipped by the walk in getGroovyFiles()
+		for (Path dir = filePath.getParent(); dir != null && dir.startsWith(directory); dir = dir.getParent()) {
+			if (shouldExclude(dir, indexedWorkspaceRoot)) {
+				return true;
 			}
-			String contents = fileContentsTracker.getContents(uri);
-			addOpenFileToCompilationUnit(uri, contents, compilationUnit);
-		});
+		}
+		return false;
 	}
 
 	protected void addOpenFileToCompilationUnit(URI uri, String contents, GroovyLSCompilationUnit compilationUnit) {
+		if (contents != null) {
+			contentHashes.put(uri, FileContentsTracker.hashContents(contents));
+		}
 		Path filePath = Paths.get(uri);
 		SourceUnit sourceUnit = new SourceUnit(filePath.toString(),
 				new StringReaderSourceWithURI(contents, uri, compilationUnit.getConfiguration()),
@@ -21,6 +21,9 @@ package net.prominic.groovyls.config;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.FileEvent;
 
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
 import net.prominic.groovyls.util.FileContentsTracker;
@@ -42,6 +45,21 @@ public interface ICompilationUnitFactory {
 
 	public void setSourceRoots(List<String> sourceRoots);
 
+	public Map<Path, List<Path>> getModuleDependencies();
+
+	/**
+	 * Sets the directories of the modules in the workspace, mapped to the
+	 * directories of the modules that they depend on. Sources in different
+	 * modules may be compiled separately.
+	 */
+	public void setModuleDependencies(Map<Path, List<Path>> moduleDependencies);
+
+	/**
+	 * Called when files in the workspace are created, changed, or deleted
+	 * outside of the editor.
+	 */
+	public void didChangeWatchedFiles(List<FileEvent> changes);
+
 	/**
 	 * Returns a compilation unit.
 	 */
@@ -0,0 +1,68 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+
+public class BestPracticeInspection implements Inspection {
+	public static final String ID = "bestPractice";
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		return new Visitor() {
+			@Override
+			public void visitNode(ASTNode node) {
+				if (!(node instanceof BinaryExpression)) {
+					return;
+				}
+				BinaryExpression binaryExpression = (BinaryExpression) node;
+				String operation = binaryExpression.getOperation() != null
+						? binaryExpression.getOperation().getText()
+						: null;
+				if (!"==".equals(operation)) {
+					return;
+				}
+				if (isBooleanConstant(binaryExpression.getLeftExpression())
+						|| isBooleanConstant(binaryExpression.getRightExpression())) {
+					context.addWarning(GroovyLanguageServerUtils.astNodeToRange(binaryExpression),
+							"Simplify boolean comparison");
+				}
+			}
+		};
+	}
+
+	private boolean isBooleanConstant(Expression expr) {
+		if (!(expr instanceof ConstantExpression)) {
+			return false;
+		}
+		Object value = ((ConstantExpression) expr).getValue();
+		return value instanceof Boolean;
+	}
+}
@@ -0,0 +1,66 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+public class CodeStyleInspection implements Inspection {
+	public static final String ID = "codeStyle";
+
+	private static final int MAX_LINE_LENGTH = 120;
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		return new Visitor() {
+			@Override
+			public void finish() {
+				if (context.getSource() == null) {
+					return;
+				}
+				String[] lines = context.getLines();
+				for (int i = 0; i < lines.length; i++) {
+					String line = lines[i];
+					if (line.endsWith("\r")) {
+						line = line.substring(0, line.length() - 1);
+					}
+					int length = line.length();
+					if (length > MAX_LINE_LENGTH) {
+						Range range = new Range(new Position(i, MAX_LINE_LENGTH), new Position(i, length));
+						context.addWarning(range, "Line exceeds 120 characters");
+					}
+					int trailingStart = length;
+					while (trailingStart > 0 && Character.isWhitespace(line.charAt(trailingStart - 1))) {
+						trailingStart--;
+					}
+					if (trailingStart < length) {
+						Range range = new Range(new Position(i, trailingStart), new Position(i, length));
+						context.addWarning(range, "Trailing whitespace");
+					}
+				}
+			}
+		};
+	}
+}
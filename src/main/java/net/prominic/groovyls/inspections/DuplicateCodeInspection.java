@@ -0,0 +1,102 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.eclipse.lsp4j.Range;
+
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+import net.prominic.groovyls.util.LineOffsets;
+
+public class DuplicateCodeInspection implements Inspection {
+	public static final String ID = "duplicateCode";
+
+	private static final int DUPLICATE_CODE_MIN_LENGTH = 10;
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		String source = context.getSource();
+		if (source == null || source.isBlank()) {
+			return new Visitor() {
+			};
+		}
+		Map<String, List<ASTNode>> blocksByText = new HashMap<>();
+		return new Visitor() {
+			@Override
+			public void visitNode(ASTNode node) {
+				if (!(node instanceof MethodNode) && !(node instanceof ClosureExpression)
+						&& !(node instanceof BlockStatement)) {
+					return;
+				}
+				Range range = GroovyLanguageServerUtils.astNodeToRange(node);
+				String text = getSourceText(source, context.getLineOffsets(), range);
+				if (text == null) {
+					return;
+				}
+				String trimmed = text.trim();
+				if (trimmed.length() <= DUPLICATE_CODE_MIN_LENGTH) {
+					return;
+				}
+				blocksByText.computeIfAbsent(trimmed, key -> new ArrayList<>()).add(node);
+			}
+
+			@Override
+			public void finish() {
+				for (List<ASTNode> duplicates : blocksByText.values()) {
+					if (duplicates.size() < 2) {
+						continue;
+					}
+					for (ASTNode node : duplicates) {
+						context.addWarning(GroovyLanguageServerUtils.astNodeToRange(node), "Duplicate code detected");
+					}
+				}
+			}
+		};
+	}
+
+	private String getSourceText(String source, LineOffsets lineOffsets, Range range) {
+		if (range == null) {
+			return null;
+		}
+		int startOffset = lineOffsets.getOffset(range.getStart());
+		int endOffset = lineOffsets.getOffset(range.getEnd());
+		if (startOffset < 0 || endOffset < 0 || endOffset < startOffset) {
+			return null;
+		}
+		int safeEnd = Math.min(source.length(), endOffset);
+		if (safeEnd <= startOffset) {
+			return null;
+		}
+		return source.substring(startOffset, safeEnd);
+	}
+}
@@ -0,0 +1,49 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * A check that reports warnings about a file. The nodes of a file are visited
+ * once for all inspections, so an inspection should do its work as each node
+ * is visited, rather than by scanning the node list again.
+ */
+public interface Inspection {
+	/**
+	 * The ID used to disable this inspection in the settings.
+	 */
+	String getId();
+
+	/**
+	 * Starts inspecting a file. Each of the file's nodes is passed to the
+	 * visitor, in order, and then finish() is called. Files may be inspected
+	 * in parallel, so any state belongs in the visitor.
+	 */
+	Visitor createVisitor(InspectionContext context);
+
+	interface Visitor {
+		default void visitNode(ASTNode node) {
+		}
+
+		default void finish() {
+		}
+	}
+}
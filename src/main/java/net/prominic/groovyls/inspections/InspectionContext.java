@@ -0,0 +1,137 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Range;
+
+import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.util.LineOffsets;
+
+/**
+ * The file being inspected. The source text is shared by all inspections, so
+ * it is only split into lines once.
+ */
+public class InspectionContext {
+	private final URI uri;
+	private final ASTNodeVisitor ast;
+	private final List<ASTNode> nodes;
+	private final String source;
+	private String[] lines;
+	private LineOffsets lineOffsets;
+	private final List<List<Diagnostic>> diagnosticsByInspection;
+	private List<Diagnostic> currentDiagnostics;
+	private final Set<String> classNameDependencies = new HashSet<>();
+
+	InspectionContext(URI uri, ASTNodeVisitor ast, List<ASTNode> nodes, String source, int inspectionCount) {
+		this.uri = uri;
+		this.ast = ast;
+		this.nodes = nodes;
+		this.source = source;
+		diagnosticsByInspection = new ArrayList<>(inspectionCount);
+		for (int i = 0; i < inspectionCount; i++) {
+			diagnosticsByInspection.add(new ArrayList<>());
+		}
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	public ASTNodeVisitor getAST() {
+		return ast;
+	}
+
+	public List<ASTNode> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the source text that the AST was built from, or null if it
+	 * could not be read.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the lines of the source text, without line terminators.
+	 */
+	public String[] getLines() {
+		if (lines == null) {
+			lines = source != null ? source.split("\\r?\\n", -1) : new String[0];
+		}
+		return lines;
+	}
+
+	public LineOffsets getLineOffsets() {
+		if (lineOffsets == null) {
+			lineOffsets = LineOffsets.of(source != null ? source : "");
+		}
+		return lineOffsets;
+	}
+
+	public void addWarning(Range range, String message) {
+		if (range == null) {
+			return;
+		}
+		Diagnostic diagnostic = new Diagnostic();
+		diagnostic.setRange(range);
+		diagnostic.setSeverity(DiagnosticSeverity.Warning);
+		diagnostic.setMessage(message);
+		currentDiagnostics.add(diagnostic);
+	}
+
+	/**
+	 * Records that the warnings depend on whether the workspace has a class
+	 * with the specified name, so that the file is inspected again when a
+	 * class with that name is added or removed.
+	 */
+	public void addClassNameDependency(String name) {
+		classNameDependencies.add(name);
+	}
+
+	/**
+	 * Warnings are kept separately for each inspection, so that they are
+	 * reported in the same order as the inspections, whatever order the
+	 * nodes are visited in.
+	 */
+	void setCurrentInspection(int index) {
+		currentDiagnostics = diagnosticsByInspection.get(index);
+	}
+
+	List<Diagnostic> getDiagnostics() {
+		List<Diagnostic> result = new ArrayList<>();
+		diagnosticsByInspection.forEach(result::addAll);
+		return result;
+	}
+
+	Set<String> getClassNameDependencies() {
+		return classNameDependencies;
+	}
+}
@@ -0,0 +1,153 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+
+/**
+ * Runs the inspections. Each file's nodes are traversed once, with every
+ * enabled inspection visiting each node, and separate files are inspected in
+ * parallel. The time spent in each inspection is recorded so that slow ones
+ * can be found and disabled.
+ */
+public class InspectionEngine {
+	private final List<Inspection> inspections;
+	private final Map<String, LongAdder> nanosById = new ConcurrentHashMap<>();
+	private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	private volatile Set<String> disabledInspections = Collections.emptySet();
+
+	public InspectionEngine() {
+		this(Arrays.asList(
+				new UndefinedVariableInspection(),
+				new UnusedImportInspection(),
+				new RedundantCastInspection(),
+				new UnnecessarySemicolonInspection(),
+				new EmptyBlockInspection(),
+				new DuplicateCodeInspection(),
+				new CodeStyleInspection(),
+				new BestPracticeInspection()));
+	}
+
+	public InspectionEngine(List<Inspection> inspections) {
+		this.inspections = Collections.unmodifiableList(inspections);
+		for (Inspection inspection : inspections) {
+			nanosById.put(inspection.getId(), new LongAdder());
+		}
+	}
+
+	public List<Inspection> getInspections() {
+		return inspections;
+	}
+
+	public Set<String> getDisabledInspections() {
+		return disabledInspections;
+	}
+
+	public void setDisabledInspections(Set<String> ids) {
+		disabledInspections = Collections.unmodifiableSet(new HashSet<>(ids));
+	}
+
+	/**
+	 * Returns the total time spent in each inspection, in milliseconds.
+	 */
+	public Map<String, Long> getTimings() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Inspection inspection : inspections) {
+			long nanos = nanosById.get(inspection.getId()).sum();
+			result.put(inspection.getId(), TimeUnit.NANOSECONDS.toMillis(nanos));
+		}
+		return result;
+	}
+
+	/**
+	 * Inspects the files with the given source text, which should be the text
+	 * that the AST was built from.
+	 */
+	public Map<URI, InspectionResult> inspect(ASTNodeVisitor ast, Map<URI, String> sourcesByURI) {
+		Set<String> disabled = disabledInspections;
+		List<Inspection> enabled = inspections.stream()
+				.filter(inspection -> !disabled.contains(inspection.getId()))
+				.collect(Collectors.toList());
+		if (sourcesByURI.size() == 1) {
+			Map.Entry<URI, String> entry = sourcesByURI.entrySet().iterator().next();
+			return Collections.singletonMap(entry.getKey(),
+					inspectFile(ast, entry.getKey(), entry.getValue(), enabled));
+		}
+		return pool.submit(() -> sourcesByURI.entrySet().parallelStream()
+				.collect(Collectors.toMap(Map.Entry::getKey,
+						entry -> inspectFile(ast, entry.getKey(), entry.getValue(), enabled))))
+				.join();
+	}
+
+	private InspectionResult inspectFile(ASTNodeVisitor ast, URI uri, String source, List<Inspection> enabled) {
+		List<ASTNode> nodes = ast.getNodes(uri);
+		if (nodes.isEmpty() || enabled.isEmpty()) {
+			return new InspectionResult(Collections.emptyList(), Collections.emptySet());
+		}
+		int count = enabled.size();
+		InspectionContext context = new InspectionContext(uri, ast, nodes, source, count);
+		Inspection.Visitor[] visitors = new Inspection.Visitor[count];
+		long[] nanos = new long[count];
+		long time = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			context.setCurrentInspection(i);
+			visitors[i] = enabled.get(i).createVisitor(context);
+			long now = System.nanoTime();
+			nanos[i] += now - time;
+			time = now;
+		}
+		for (ASTNode node : nodes) {
+			for (int i = 0; i < count; i++) {
+				context.setCurrentInspection(i);
+				visitors[i].visitNode(node);
+				long now = System.nanoTime();
+				nanos[i] += now - time;
+				time = now;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			context.setCurrentInspection(i);
+			visitors[i].finish();
+			long now = System.nanoTime();
+			nanos[i] += now - time;
+			time = now;
+		}
+		for (int i = 0; i < count; i++) {
+			nanosById.get(enabled.get(i).getId()).add(nanos[i]);
+		}
+		return new InspectionResult(context.getDiagnostics(), context.getClassNameDependencies());
+	}
+}
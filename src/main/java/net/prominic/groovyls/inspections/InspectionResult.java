@@ -0,0 +1,50 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.lsp4j.Diagnostic;
+
+/**
+ * The warnings about a file, with the class names that they depend on.
+ */
+public class InspectionResult {
+	private final List<Diagnostic> diagnostics;
+	private final Set<String> classNameDependencies;
+
+	InspectionResult(List<Diagnostic> diagnostics, Set<String> classNameDependencies) {
+		this.diagnostics = diagnostics;
+		this.classNameDependencies = classNameDependencies;
+	}
+
+	public List<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * The names of classes whose addition or removal anywhere in the
+	 * workspace may change the warnings.
+	 */
+	public Set<String> getClassNameDependencies() {
+		return classNameDependencies;
+	}
+}
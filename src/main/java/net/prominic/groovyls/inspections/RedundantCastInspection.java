@@ -0,0 +1,60 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.expr.CastExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+
+public class RedundantCastInspection implements Inspection {
+	public static final String ID = "redundantCast";
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		return new Visitor() {
+			@Override
+			public void visitNode(ASTNode node) {
+				if (!(node instanceof CastExpression)) {
+					return;
+				}
+				CastExpression castExpression = (CastExpression) node;
+				ClassNode castType = castExpression.getType();
+				Expression expr = castExpression.getExpression();
+				ClassNode exprType = expr != null ? expr.getType() : null;
+				if (castType == null || exprType == null) {
+					return;
+				}
+				ClassNode castRedirect = castType.redirect();
+				ClassNode exprRedirect = exprType.redirect();
+				if (castRedirect != null && castRedirect.equals(exprRedirect)) {
+					context.addWarning(GroovyLanguageServerUtils.astNodeToRange(castExpression), "Redundant cast");
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,108 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.DynamicVariable;
+import org.codehaus.groovy.ast.Variable;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+
+import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+
+public class UndefinedVariableInspection implements Inspection {
+	public static final String ID = "undefinedVariable";
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		ASTNodeVisitor ast = context.getAST();
+		return new Visitor() {
+			@Override
+			public void visitNode(ASTNode node) {
+				if (node instanceof PropertyExpression) {
+					visitPropertyExpression((PropertyExpression) node);
+				} else if (node instanceof VariableExpression) {
+					visitVariableExpression((VariableExpression) node);
+				}
+			}
+
+			private void visitPropertyExpression(PropertyExpression propExpr) {
+				Expression objectExpr = propExpr.getObjectExpression();
+				if (!(objectExpr instanceof VariableExpression)) {
+					return;
+				}
+				VariableExpression objVar = (VariableExpression) objectExpr;
+				if (!"this".equals(objVar.getName())) {
+					return;
+				}
+				String propName = propExpr.getPropertyAsString();
+				if (propName != null && !hasEnclosingMember(propName, objVar, ast)) {
+					context.addWarning(GroovyLanguageServerUtils.astNodeToRange(propExpr.getProperty()),
+							"Undefined variable: " + propName);
+				}
+			}
+
+			private void visitVariableExpression(VariableExpression variable) {
+				String name = variable.getName();
+				if (name == null || name.isBlank()) {
+					return;
+				}
+				if (name.equals("this") || name.equals("super") || name.equals("it")
+						|| name.equals("delegate") || name.equals("owner")) {
+					return;
+				}
+				Variable accessed = variable.getAccessedVariable();
+				if (!(accessed instanceof DynamicVariable)) {
+					return;
+				}
+				// a dynamic variable may be a reference to a class in any file
+				context.addClassNameDependency(name);
+				if (ast.findClassNodeByName(name) != null) {
+					return;
+				}
+				if (hasEnclosingMember(name, variable, ast)) {
+					return;
+				}
+				context.addWarning(GroovyLanguageServerUtils.astNodeToRange(variable), "Undefined variable: " + name);
+			}
+		};
+	}
+
+	private static boolean hasEnclosingMember(String name, VariableExpression variable, ASTNodeVisitor ast) {
+		ASTNode current = variable;
+		while (current != null) {
+			if (current instanceof ClassNode) {
+				ClassNode classNode = (ClassNode) current;
+				return classNode.getProperty(name) != null || classNode.getField(name) != null
+						|| !classNode.getMethods(name).isEmpty();
+			}
+			current = ast.getParent(current);
+		}
+		return false;
+	}
+}
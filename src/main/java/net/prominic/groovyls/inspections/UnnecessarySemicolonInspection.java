@@ -0,0 +1,86 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import java.util.regex.Pattern;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.stmt.EmptyStatement;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+
+public class UnnecessarySemicolonInspection implements Inspection {
+	public static final String ID = "unnecessarySemicolon";
+
+	private static final Pattern PATTERN_UNNECESSARY_SEMICOLON = Pattern.compile("^\\s*;\\s*$");
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		return new Visitor() {
+			private boolean foundSemicolon = false;
+
+			@Override
+			public void visitNode(ASTNode node) {
+				if (!(node instanceof EmptyStatement)) {
+					return;
+				}
+				Range range = GroovyLanguageServerUtils.astNodeToRange(node);
+				context.addWarning(range, "Unnecessary semicolon");
+				if (range != null) {
+					foundSemicolon = true;
+				}
+			}
+
+			@Override
+			public void finish() {
+				if (!foundSemicolon) {
+					inspectSource(context);
+				}
+			}
+		};
+	}
+
+	private void inspectSource(InspectionContext context) {
+		String source = context.getSource();
+		if (source == null || source.isBlank()) {
+			return;
+		}
+		String[] lines = context.getLines();
+		for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+			String line = lines[lineIndex];
+			if (!PATTERN_UNNECESSARY_SEMICOLON.matcher(line).matches()) {
+				continue;
+			}
+			int col = line.indexOf(';');
+			if (col < 0) {
+				continue;
+			}
+			Range range = new Range(new Position(lineIndex, col), new Position(lineIndex, col + 1));
+			context.addWarning(range, "Unnecessary semicolon");
+		}
+	}
+}
@@ -0,0 +1,208 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.inspections;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+
+public class UnusedImportInspection implements Inspection {
+	public static final String ID = "unusedImport";
+
+	private static final Pattern PATTERN_IMPORT_STATEMENT = Pattern
+			.compile("^\\s*import\\s+(?:static\\s+)?([^\\s;]+)(?:\\s+as\\s+(\\w+))?\\s*;?\\s*$");
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public Visitor createVisitor(InspectionContext context) {
+		Set<String> referencedNames = new HashSet<>();
+		List<ImportNode> importNodes = new ArrayList<>();
+		return new Visitor() {
+			@Override
+			public void visitNode(ASTNode node) {
+				if (node instanceof ImportNode) {
+					importNodes.add((ImportNode) node);
+				} else {
+					addReferencedNames(node, referencedNames);
+				}
+			}
+
+			@Override
+			public void finish() {
+				// the imports are only known after every node has been visited
+				if (importNodes.isEmpty()) {
+					inspectSource(context, referencedNames);
+					return;
+				}
+				for (ImportNode importNode : importNodes) {
+					if (importNode.isStar()) {
+						continue;
+					}
+					String importName = getImportReferenceName(importNode);
+					if (importName == null || importName.isBlank()) {
+						continue;
+					}
+					if (!referencedNames.contains(importName)) {
+						context.addWarning(GroovyLanguageServerUtils.astNodeToRange(importNode),
+								"Unused import: " + importName);
+					}
+				}
+			}
+		};
+	}
+
+	private void inspectSource(InspectionContext context, Set<String> referencedNames) {
+		String source = context.getSource();
+		if (source == null || source.isBlank()) {
+			return;
+		}
+		String[] lines = context.getLines();
+		for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+			String line = lines[lineIndex];
+			Matcher matcher = PATTERN_IMPORT_STATEMENT.matcher(line);
+			if (!matcher.matches()) {
+				continue;
+			}
+			String importPath = matcher.group(1);
+			if (importPath == null || importPath.isBlank() || importPath.endsWith(".*")) {
+				continue;
+			}
+			String alias = matcher.group(2);
+			String importName = alias != null && !alias.isBlank() ? alias : getSimpleImportName(importPath);
+			if (importName == null || importName.isBlank()) {
+				continue;
+			}
+			if (!referencedNames.contains(importName)) {
+				Range range = new Range(new Position(lineIndex, 0), new Position(lineIndex, line.length()));
+				context.addWarning(range, "Unused import: " + importName);
+			}
+		}
+	}
+
+	private String getSimpleImportName(String importPath) {
+		int lastDot = importPath.lastIndexOf('.');
+		String name = lastDot >= 0 ? importPath.substring(lastDot + 1) : importPath;
+		return name != null && !name.isBlank() ? name : null;
+	}
+
+	private void addReferencedNames(ASTNode node, Set<String> referencedNames) {
+		if (node instanceof ClassExpression) {
+			addClassNodeReference(((ClassExpression) node).getType(), referencedNames);
+		} else if (node instanceof ConstructorCallExpression) {
+			addClassNodeReference(((ConstructorCallExpression) node).getType(), referencedNames);
+		} else if (node instanceof VariableExpression) {
+			String name = ((VariableExpression) node).getName();
+			if (name != null && !name.isBlank()) {
+				referencedNames.add(name);
+			}
+		} else if (node instanceof PropertyExpression) {
+			String name = ((PropertyExpression) node).getPropertyAsString();
+			if (name != null && !name.isBlank()) {
+				referencedNames.add(name);
+			}
+		} else if (node instanceof MethodCallExpression) {
+			String name = ((MethodCallExpression) node).getMethodAsString();
+			if (name != null && !name.isBlank()) {
+				referencedNames.add(name);
+			}
+		} else if (node instanceof StaticMethodCallExpression) {
+			StaticMethodCallExpression staticCall = (StaticMethodCallExpression) node;
+			String name = staticCall.getMethod();
+			if (name != null && !name.isBlank()) {
+				referencedNames.add(name);
+			}
+			addClassNodeReference(staticCall.getOwnerType(), referencedNames);
+		} else if (node instanceof FieldNode) {
+			addClassNodeReference(((FieldNode) node).getType(), referencedNames);
+		} else if (node instanceof PropertyNode) {
+			addClassNodeReference(((PropertyNode) node).getType(), referencedNames);
+		} else if (node instanceof MethodNode) {
+			addClassNodeReference(((MethodNode) node).getReturnType(), referencedNames);
+		} else if (node instanceof Parameter) {
+			addClassNodeReference(((Parameter) node).getType(), referencedNames);
+		} else if (node instanceof ClassNode) {
+			addClassNodeReference((ClassNode) node, referencedNames);
+		}
+	}
+
+	private void addClassNodeReference(ClassNode classNode, Set<String> referencedNames) {
+		if (classNode == null) {
+			return;
+		}
+		String name = classNode.getName();
+		if (name != null && !name.isBlank()) {
+			referencedNames.add(name);
+		}
+		String simpleName = classNode.getNameWithoutPackage();
+		if (simpleName != null && !simpleName.isBlank()) {
+			referencedNames.add(simpleName);
+		}
+	}
+
+	private String getImportReferenceName(ImportNode importNode) {
+		String alias = importNode.getAlias();
+		if (alias != null && !alias.isBlank()) {
+			return alias;
+		}
+		String fieldName = importNode.getFieldName();
+		if (fieldName != null && !fieldName.isBlank()) {
+			return fieldName;
+		}
+		ClassNode type = importNode.getType();
+		if (type != null) {
+			String simpleName = type.getNameWithoutPackage();
+			if (simpleName != null && !simpleName.isBlank()) {
+				return simpleName;
+			}
+			return type.getName();
+		}
+		String className = importNode.getClassName();
+		if (className != null && !className.isBlank()) {
+			int lastDot = className.lastIndexOf('.');
+			return lastDot >= 0 ? className.substring(lastDot + 1) : className;
+		}
+		return null;
+	}
+}
@@ -41,6 +41,7 @@ import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.SymbolKind;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
@@ -48,9 +49,16 @@ import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class CallHierarchyProvider {
     private ASTNodeVisitor ast;
+    private CancelChecker cancelChecker;
 
     public CallHierarchyProvider(ASTNodeVisitor ast) {
+        this(ast, () -> {
+        });
+    }
+
+    public CallHierarchyProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
         this.ast = ast;
+        this.cancelChecker = cancelChecker;
     }
 
     public CompletableFuture<List<CallHierarchyItem>> prepareCallHierarchy(TextDocumentIdentifier textDocument,
@@ -82,6 +90,7 @@ public class CallHierarchyProvider {
 
         Map<MethodNode, List<Range>> rangesByCaller = new HashMap<>();
         for (ASTNode node : ast.getNodes()) {
+            cancelChecker.checkCanceled();
             if (!(node instanceof MethodCall)) {
                 continue;
             }
@@ -122,6 +131,7 @@ public class CallHierarchyProvider {
 
         Map<MethodNode, List<Range>> rangesByCallee = new HashMap<>();
         for (ASTNode node : ast.getNodes()) {
+            cancelChecker.checkCanceled();
             if (!(node instanceof MethodCall)) {
                 continue;
             }
@@ -176,6 +186,7 @@ public class CallHierarchyProvider {
             return null;
         }
         for (ASTNode node : ast.getNodes()) {
+            cancelChecker.checkCanceled();
             if (!(node instanceof MethodNode)) {
                 continue;
             }
@@ -25,6 +25,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import com.google.gson.JsonObject;
+
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.FieldNode;
@@ -32,6 +34,7 @@ import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.PropertyNode;
 import org.eclipse.lsp4j.CodeLens;
 import org.eclipse.lsp4j.Command;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 
@@ -40,6 +43,10 @@ import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class CodeLensProvider {
+	private static final String DATA_URI = "uri";
+	private static final String DATA_KIND = "kind";
+	private static final String DATA_NAME = "name";
+
 	private ASTNodeVisitor ast;
 
 	public CodeLensProvider(ASTNodeVisitor ast) {
@@ -59,7 +66,7 @@ public class CodeLensProvider {
 			if (node instanceof ClassNode) {
 				ClassNode classNode = (ClassNode) node;
 				// Add code lens for class
-				CodeLens classLens = createCodeLensForNode(classNode, "class");
+				CodeLens classLens = createCodeLensForNode(classNode, "class", uri);
 				if (classLens != null) {
 					lenses.add(classLens);
 				}
@@ -70,7 +77,7 @@ public class CodeLensProvider {
 					if (method.isSynthetic() || method.getName().contains("$")) {
 						continue;
 					}
-					CodeLens methodLens = createCodeLensForNode(method, "method");
+					CodeLens methodLens = createCodeLensForNode(method, "method", uri);
 					if (methodLens != null) {
 						lenses.add(methodLens);
 					}
@@ -78,7 +85,7 @@ public class CodeLensProvider {
 
 				// Add code lenses for properties
 				for (PropertyNode property : classNode.getProperties()) {
-					CodeLens propertyLens = createCodeLensForNode(property, "property");
+					CodeLens propertyLens = createCodeLensForNode(property, "property", uri);
 					if (propertyLens != null) {
 						lenses.add(propertyLens);
 					}
@@ -90,7 +97,7 @@ public class CodeLensProvider {
 					if (field.isSynthetic() || field.getName().contains("$")) {
 						continue;
 					}
-					CodeLens fieldLens = createCodeLensForNode(field, "field");
+					CodeLens fieldLens = createCodeLensForNode(field, "field", uri);
 					if (fieldLens != null) {
 						lenses.add(fieldLens);
 					}
@@ -99,7 +106,7 @@ public class CodeLensProvider {
 				// Top-level method (script method)
 				MethodNode method = (MethodNode) node;
 				if (!method.isSynthetic() && !method.getName().contains("$")) {
-					CodeLens methodLens = createCodeLensForNode(method, "method");
+					CodeLens methodLens = createCodeLensForNode(method, "method", uri);
 					if (methodLens != null) {
 						lenses.add(methodLens);
 					}
@@ -110,15 +117,28 @@ public class CodeLensProvider {
 		return CompletableFuture.completedFuture(lenses);
 	}
 
-	private CodeLens createCodeLensForNode(ASTNode node, String nodeType) {
-		Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-		if (range == null) {
-			return null;
+	public CompletableFuture<CodeLens> resolveCodeLens(CodeLens codeLens) {
+		if (ast == null || codeLens == null || !(codeLens.getData() instanceof JsonObject)) {
+			return CompletableFuture.completedFuture(codeLens);
+		}
+		JsonObject data = (JsonObject) codeLens.getData();
+		if (!data.has(DATA_URI) || !data.has(DATA_KIND) || !data.has(DATA_NAME)) {
+			return CompletableFuture.completedFuture(codeLens);
+		}
+		URI uri = URI.create(data.get(DATA_URI).getAsString());
+		Position start = codeLens.getRange().getStart();
+		ASTNode declaration = findDeclaration(uri, start, data.get(DATA_KIND).getAsString(),
+				data.get(DATA_NAME).getAsString());
+		if (declaration == null) {
+			return CompletableFuture.completedFuture(codeLens);
 		}
 
 		// Count references
-		List<ASTNode> references = GroovyASTUtils.getReferences(node, ast);
-		int referenceCount = references.size();
+		Integer referenceCount = ast.getCachedReferenceCount(declaration);
+		if (referenceCount == null) {
+			referenceCount = GroovyASTUtils.getReferences(declaration, ast).size();
+			ast.cacheReferenceCount(declaration, referenceCount);
+		}
 
 		// Create command text
 		String commandTitle;
@@ -134,12 +154,86 @@ public class CodeLensProvider {
 		Command command = new Command();
 		command.setTitle(commandTitle);
 		command.setCommand("editor.action.showReferences");
-		
+		codeLens.setCommand(command);
+
+		return CompletableFuture.completedFuture(codeLens);
+	}
+
+	private CodeLens createCodeLensForNode(ASTNode node, String nodeType, URI uri) {
+		Range range = GroovyLanguageServerUtils.astNodeToRange(node);
+		if (range == null) {
+			return null;
+		}
+
+		// the reference count is computed when the lens is resolved, so that
+		// lenses that are never displayed cost nothing
+		JsonObject data = new JsonObject();
+		data.addProperty(DATA_URI, uri.toString());
+		data.addProperty(DATA_KIND, nodeType);
+		data.addProperty(DATA_NAME, getDeclarationName(node));
+
 		// Create the code lens
 		CodeLens lens = new CodeLens();
 		lens.setRange(range);
-		lens.setCommand(command);
+		lens.setData(data);
 
 		return lens;
 	}
+
+	private ASTNode findDeclaration(URI uri, Position start, String nodeType, String name) {
+		List<ASTNode> containingNodes = ast.getNodesAtLineAndColumn(uri, start.getLine(), start.getCharacter());
+		for (ASTNode node : containingNodes) {
+			if (isDeclaration(node, start, nodeType, name)) {
+				return node;
+			}
+		}
+		// members that weren't visited may still be found on their class
+		for (ASTNode node : containingNodes) {
+			if (!(node instanceof ClassNode)) {
+				continue;
+			}
+			ClassNode classNode = (ClassNode) node;
+			List<ASTNode> members = new ArrayList<>();
+			members.addAll(classNode.getMethods());
+			members.addAll(classNode.getProperties());
+			members.addAll(classNode.getFields());
+			for (ASTNode member : members) {
+				if (isDeclaration(member, start, nodeType, name)) {
+					return member;
+				}
+			}
+		}
+		return null;
+	}
+
+	private boolean isDeclaration(ASTNode node, Position start, String nodeType, String name) {
+		boolean isKind = false;
+		if ("class".equals(nodeType)) {
+			isKind = node instanceof ClassNode;
+		} else if ("method".equals(nodeType)) {
+			isKind = node instanceof MethodNode;
+		} else if ("property".equals(nodeType)) {
+			isKind = node instanceof PropertyNode;
+		} else if ("field".equals(nodeType)) {
+			isKind = node instanceof FieldNode;
+		}
+		if (!isKind || !name.equals(getDeclarationName(node))) {
+			return false;
+		}
+		Range range = GroovyLanguageServerUtils.astNodeToRange(node);
+		return range != null && range.getStart().equals(start);
+	}
+
+	private String getDeclarationName(ASTNode node) {
+		if (node instanceof ClassNode) {
+			return ((ClassNode) node).getName();
+		} else if (node instanceof MethodNode) {
+			return ((MethodNode) node).getName();
+		} else if (node instanceof PropertyNode) {
+			return ((PropertyNode) node).getName();
+		} else if (node instanceof FieldNode) {
+			return ((FieldNode) node).getName();
+		}
+		return null;
+	}
 }
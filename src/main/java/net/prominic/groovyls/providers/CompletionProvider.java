@@ -43,7 +43,6 @@ import org.codehaus.groovy.ast.PropertyNode;
 import org.codehaus.groovy.ast.VariableScope;
 import org.codehaus.groovy.ast.expr.BinaryExpression;
 import org.codehaus.groovy.ast.expr.ClassExpression;
-import org.codehaus.groovy.ast.expr.ClosureExpression;
 import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
 import org.codehaus.groovy.ast.expr.DeclarationExpression;
 import org.codehaus.groovy.ast.expr.Expression;
@@ -62,6 +61,7 @@ import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import io.github.classgraph.ClassGraph;
@@ -74,11 +74,10 @@ import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.compiler.util.GroovydocUtils;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 import net.prominic.groovyls.util.FileContentsTracker;
-import net.prominic.lsp.utils.Positions;
+import net.prominic.groovyls.util.LineOffsets;
+import net.prominic.groovyls.util.PieceTable;
 
 public class CompletionProvider {
-	private static final Pattern METACLASS_METHOD_PATTERN = Pattern
-			.compile("([A-Za-z_][\\w\\.]*)\\.metaClass\\.([A-Za-z_][\\w]*)\\s*=\\s*\\{");
 	private static final Object SYSTEM_SCAN_LOCK = new Object();
 	private static volatile ScanResult SYSTEM_SCAN_RESULT;
 	private static final List<String> KEYWORDS = Arrays.asList(
@@ -91,15 +90,27 @@ public class CompletionProvider {
 	private ASTNodeVisitor ast;
 	private ScanResult classGraphScanResult;
 	private FileContentsTracker files;
+	private CancelChecker cancelChecker;
 	private URI completionUri;
 	private Position completionPosition;
 	private int maxItemCount = 5000;
 	private boolean isIncomplete = false;
 
 	public CompletionProvider(ASTNodeVisitor ast, ScanResult classGraphScanResult, FileContentsTracker files) {
+		this(ast, classGraphScanResult, files, () -> {
+		});
+	}
+
+	/**
+	 * The cancel checker is polled in the loops over every node of the
+	 * workspace and over the classes on the classpath.
+	 */
+	public CompletionProvider(ASTNodeVisitor ast, ScanResult classGraphScanResult, FileContentsTracker files,
+			CancelChecker cancelChecker) {
 		this.ast = ast;
 		this.classGraphScanResult = classGraphScanResult;
 		this.files = files;
+		this.cancelChecker = cancelChecker;
 	}
 
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> provideCompletion(
@@ -188,7 +199,7 @@ public class CompletionProvider {
 			if (prefix == null) {
 				prefix = "";
 			}
-			populateItemsFromSourceMetaClassAssignments(prefix, items);
+			populateItemsFromFileMetaClassAssignments(prefix, new HashSet<>(), items);
 		}
 
 		if (items.isEmpty()) {
@@ -214,16 +225,31 @@ public class CompletionProvider {
 		if (ast == null || uri == null) {
 			return null;
 		}
-		List<ASTNode> nodes = ast.getNodes(uri);
-		if (nodes == null || nodes.isEmpty()) {
-			nodes = ast.getNodes();
+		if (ast.getNodes(uri).isEmpty()) {
+			return findPropertyExpressionAtPositionInWorkspace(position);
+		}
+		// the property of a PropertyExpression is visited as a child of it, so
+		// the closest property that starts on this line identifies the
+		// expression
+		ASTNode property = ast.getLastNodeStartingOnLine(uri, position.getLine(), position.getCharacter(), node -> {
+			ASTNode parent = ast.getParent(node);
+			return parent instanceof PropertyExpression && ((PropertyExpression) parent).getProperty() == node;
+		});
+		if (property == null) {
+			return null;
 		}
+		return (PropertyExpression) ast.getParent(property);
+	}
+
+	private PropertyExpression findPropertyExpressionAtPositionInWorkspace(Position position) {
+		List<ASTNode> nodes = ast.getNodes();
 		if (nodes == null || nodes.isEmpty()) {
 			return null;
 		}
 		PropertyExpression best = null;
 		int bestStart = -1;
 		for (ASTNode node : nodes) {
+			cancelChecker.checkCanceled();
 			if (!(node instanceof PropertyExpression)) {
 				continue;
 			}
@@ -345,6 +371,7 @@ public class CompletionProvider {
 		items.addAll(packageItems);
 
 		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
+			cancelChecker.checkCanceled();
 			String packageName = classInfo.getPackageName();
 			if (packageName == null || packageName.length() == 0 || packageName.equals(enclosingPackageName)) {
 				return false;
@@ -516,6 +543,7 @@ public class CompletionProvider {
 					&& leftSide instanceof VariableExpression) {
 				String varName = ((VariableExpression) leftSide).getName();
 				for (ASTNode candidate : ast.getNodes()) {
+					cancelChecker.checkCanceled();
 					if (candidate instanceof DeclarationExpression) {
 						DeclarationExpression decl = (DeclarationExpression) candidate;
 						if (decl.getVariableExpression() != null
@@ -545,51 +573,7 @@ public class CompletionProvider {
 			populateItemsFromMethods(ast.getMetaClassMethods(leftType), memberNamePrefix, existingNames, items);
 		}
 		populateItemsFromMetaClassAssignments(leftType, memberNamePrefix, existingNames, items);
-		populateItemsFromSourceMetaClassAssignments(leftSide, leftType, memberNamePrefix, existingNames, items);
-		populateItemsFromSourceMetaClassAssignments(memberNamePrefix, items);
-	}
-
-	private void populateItemsFromSourceMetaClassAssignments(Expression leftSide, ClassNode leftType,
-			String memberNamePrefix, Set<String> existingNames, List<CompletionItem> items) {
-		if (files == null || ast == null || leftSide == null) {
-			return;
-		}
-		URI uri = ast.getURI(leftSide);
-		if (uri == null) {
-			uri = completionUri;
-		}
-		if (uri == null) {
-			return;
-		}
-		String text = files.getContents(uri);
-		if (text == null || text.isBlank()) {
-			return;
-		}
-		boolean matchAllTypes = leftType == null || ClassHelper.isDynamicTyped(leftType)
-				|| leftType == ClassHelper.OBJECT_TYPE
-				|| "groovy.lang.GroovyObject".equals(leftType.getName());
-		String targetName = matchAllTypes ? null : leftType.getName();
-		String targetSimple = matchAllTypes ? null : leftType.getNameWithoutPackage();
-		Matcher matcher = METACLASS_METHOD_PATTERN.matcher(text);
-		while (matcher.find()) {
-			String className = matcher.group(1);
-			String methodName = matcher.group(2);
-			if (!matchAllTypes) {
-				boolean matches = className.equals(targetName)
-						|| (targetSimple != null && className.equals(targetSimple));
-				if (!matches) {
-					continue;
-				}
-			}
-			if (!methodName.startsWith(memberNamePrefix) || existingNames.contains(methodName)) {
-				continue;
-			}
-			CompletionItem item = new CompletionItem();
-			item.setLabel(methodName);
-			item.setKind(CompletionItemKind.Method);
-			items.add(item);
-			existingNames.add(methodName);
-		}
+		populateItemsFromFileMetaClassAssignments(memberNamePrefix, existingNames, items);
 	}
 
 	private void populateItemsFromMetaClassAssignments(ClassNode leftType, String memberNamePrefix,
@@ -597,69 +581,16 @@ public class CompletionProvider {
 		boolean matchAllTypes = leftType == null || ClassHelper.isDynamicTyped(leftType)
 				|| leftType == ClassHelper.OBJECT_TYPE
 				|| "groovy.lang.GroovyObject".equals(leftType.getName());
-		String targetName = matchAllTypes ? null : leftType.getName();
-		String targetSimple = matchAllTypes ? null : leftType.getNameWithoutPackage();
-		for (ASTNode node : ast.getNodes()) {
-			if (!(node instanceof BinaryExpression)) {
-				continue;
-			}
-			BinaryExpression binary = (BinaryExpression) node;
-			if (binary.getOperation() == null || !"=".equals(binary.getOperation().getText())) {
-				continue;
-			}
-			if (!(binary.getLeftExpression() instanceof PropertyExpression)) {
-				continue;
-			}
-			PropertyExpression left = (PropertyExpression) binary.getLeftExpression();
-			String methodName = left.getPropertyAsString();
-			if (methodName == null) {
-				continue;
-			}
-			if (!(left.getObjectExpression() instanceof PropertyExpression)) {
-				continue;
-			}
-			PropertyExpression metaClassExpr = (PropertyExpression) left.getObjectExpression();
-			if (!"metaClass".equals(metaClassExpr.getPropertyAsString())) {
-				continue;
-			}
-			String className = null;
-			Expression targetExpr = metaClassExpr.getObjectExpression();
-			if (targetExpr instanceof ClassExpression) {
-				ClassNode exprType = ((ClassExpression) targetExpr).getType();
-				if (exprType != null) {
-					if (exprType.redirect() == ClassHelper.CLASS_Type) {
-						String exprText = targetExpr.getText();
-						if (exprText != null && exprText.endsWith(".class")) {
-							exprText = exprText.substring(0, exprText.length() - ".class".length());
-						}
-						className = exprText;
-					} else {
-						className = exprType.getName();
-					}
-				}
-			} else if (targetExpr instanceof VariableExpression) {
-				className = ((VariableExpression) targetExpr).getName();
-			}
-			if (className == null && !matchAllTypes) {
-				continue;
-			}
-			boolean matches = matchAllTypes || className.equals(targetName)
-					|| (targetSimple != null && className.equals(targetSimple));
-			if (!matches) {
-				continue;
-			}
-			if (!(binary.getRightExpression() instanceof ClosureExpression)) {
-				continue;
-			}
-			if (!methodName.startsWith(memberNamePrefix) || existingNames.contains(methodName)) {
-				continue;
-			}
-			CompletionItem item = new CompletionItem();
-			item.setLabel(methodName);
-			item.setKind(CompletionItemKind.Method);
-			items.add(item);
-			existingNames.add(methodName);
+		List<MethodNode> methods = matchAllTypes ? ast.getAllMetaClassMethods() : ast.getMetaClassMethods(leftType);
+		populateItemsFromMethods(methods, memberNamePrefix, existingNames, items);
+	}
+
+	private void populateItemsFromFileMetaClassAssignments(String memberNamePrefix, Set<String> existingNames,
+			List<CompletionItem> items) {
+		if (ast == null || completionUri == null) {
+			return;
 		}
+		populateItemsFromMethods(ast.getMetaClassMethods(completionUri), memberNamePrefix, existingNames, items);
 	}
 
 	private void populateItemsFromVariableScope(VariableScope variableScope, String memberNamePrefix,
@@ -817,6 +748,7 @@ public class CompletionProvider {
 		List<ClassInfo> classes = classGraphScanResult.getAllClasses();
 
 		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
+			cancelChecker.checkCanceled();
 			if (isIncomplete) {
 				return false;
 			}
@@ -860,6 +792,7 @@ public class CompletionProvider {
 		Set<String> existingNames = collectExistingNames(items);
 		List<ClassInfo> classes = scanResult.getAllClasses();
 		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
+			cancelChecker.checkCanceled();
 			if (isIncomplete) {
 				return false;
 			}
@@ -917,22 +850,27 @@ public class CompletionProvider {
 		return "";
 	}
 
+	private String getSourceLine(Position position) {
+		PieceTable.Snapshot contents = files.getContentsSnapshot(completionUri);
+		if (contents == null) {
+			return null;
+		}
+		LineOffsets lineOffsets = contents.getLineOffsets();
+		int lineStart = lineOffsets.getLineStart(position.getLine());
+		if (lineStart == -1) {
+			return "";
+		}
+		return contents.toString().substring(lineStart, lineOffsets.getLineEnd(position.getLine()));
+	}
+
 	private String getMemberNameFromSource(Position position) {
 		if (files == null || completionUri == null) {
 			return null;
 		}
-		String text = files.getContents(completionUri);
-		if (text == null) {
+		String line = getSourceLine(position);
+		if (line == null) {
 			return null;
 		}
-		int offset = Positions.getOffset(text, position);
-		int lineStart = text.lastIndexOf('\n', Math.max(0, offset - 1));
-		lineStart = lineStart == -1 ? 0 : lineStart + 1;
-		int lineEnd = text.indexOf('\n', offset);
-		if (lineEnd == -1) {
-			lineEnd = text.length();
-		}
-		String line = text.substring(lineStart, lineEnd);
 		int column = position.getCharacter();
 		if (column > line.length()) {
 			column = line.length();
@@ -948,18 +886,10 @@ public class CompletionProvider {
 		if (files == null || completionUri == null) {
 			return null;
 		}
-		String text = files.getContents(completionUri);
-		if (text == null) {
+		String line = getSourceLine(position);
+		if (line == null) {
 			return null;
 		}
-		int offset = Positions.getOffset(text, position);
-		int lineStart = text.lastIndexOf('\n', Math.max(0, offset - 1));
-		lineStart = lineStart == -1 ? 0 : lineStart + 1;
-		int lineEnd = text.indexOf('\n', offset);
-		if (lineEnd == -1) {
-			lineEnd = text.length();
-		}
-		String line = text.substring(lineStart, lineEnd);
 		int column = position.getCharacter();
 		if (column > line.length()) {
 			column = line.length();
@@ -983,18 +913,10 @@ public class CompletionProvider {
 		if (files == null || completionUri == null) {
 			return false;
 		}
-		String text = files.getContents(completionUri);
-		if (text == null) {
+		String line = getSourceLine(position);
+		if (line == null) {
 			return false;
 		}
-		int offset = Positions.getOffset(text, position);
-		int lineStart = text.lastIndexOf('\n', Math.max(0, offset - 1));
-		lineStart = lineStart == -1 ? 0 : lineStart + 1;
-		int lineEnd = text.indexOf('\n', offset);
-		if (lineEnd == -1) {
-			lineEnd = text.length();
-		}
-		String line = text.substring(lineStart, lineEnd);
 		int column = position.getCharacter();
 		if (column > line.length()) {
 			column = line.length();
@@ -1007,18 +929,10 @@ public class CompletionProvider {
 		if (files == null || completionUri == null) {
 			return null;
 		}
-		String text = files.getContents(completionUri);
-		if (text == null) {
+		String line = getSourceLine(position);
+		if (line == null) {
 			return null;
 		}
-		int offset = Positions.getOffset(text, position);
-		int lineStart = text.lastIndexOf('\n', Math.max(0, offset - 1));
-		lineStart = lineStart == -1 ? 0 : lineStart + 1;
-		int lineEnd = text.indexOf('\n', offset);
-		if (lineEnd == -1) {
-			lineEnd = text.length();
-		}
-		String line = text.substring(lineStart, lineEnd);
 		int column = position.getCharacter();
 		if (column > line.length()) {
 			column = line.length();
@@ -1136,12 +1050,7 @@ public class CompletionProvider {
 		if (name == null || ast == null) {
 			return null;
 		}
-		for (ClassNode classNode : ast.getClassNodes()) {
-			if (name.equals(classNode.getName()) || name.equals(classNode.getNameWithoutPackage())) {
-				return classNode;
-			}
-		}
-		return null;
+		return ast.findClassNodeByName(name);
 	}
 
 	private ClassNode resolveTypeFromSourceText(URI uri, String name, Position position) {
@@ -1234,18 +1143,10 @@ public class CompletionProvider {
 		if (files == null || completionUri == null) {
 			return false;
 		}
-		String text = files.getContents(completionUri);
-		if (text == null) {
+		String line = getSourceLine(position);
+		if (line == null) {
 			return false;
 		}
-		int offset = Positions.getOffset(text, position);
-		int lineStart = text.lastIndexOf('\n', Math.max(0, offset - 1));
-		lineStart = lineStart == -1 ? 0 : lineStart + 1;
-		int lineEnd = text.indexOf('\n', offset);
-		if (lineEnd == -1) {
-			lineEnd = text.length();
-		}
-		String line = text.substring(lineStart, lineEnd);
 		int column = position.getCharacter();
 		if (column > line.length()) {
 			column = line.length();
@@ -1261,29 +1162,6 @@ public class CompletionProvider {
 		return i >= 0 && line.charAt(i) == ')';
 	}
 
-	private void populateItemsFromSourceMetaClassAssignments(String memberNamePrefix, List<CompletionItem> items) {
-		if (files == null || completionUri == null) {
-			return;
-		}
-		String text = files.getContents(completionUri);
-		if (text == null || text.isBlank()) {
-			return;
-		}
-		Matcher matcher = METACLASS_METHOD_PATTERN.matcher(text);
-		while (matcher.find()) {
-			String methodName = matcher.group(2);
-			boolean hasMethod = items.stream().anyMatch(item -> methodName.equals(item.getLabel())
-					&& CompletionItemKind.Method.equals(item.getKind()));
-			if (!methodName.startsWith(memberNamePrefix) || hasMethod) {
-				continue;
-			}
-			CompletionItem item = new CompletionItem();
-			item.setLabel(methodName);
-			item.setKind(CompletionItemKind.Method);
-			items.add(item);
-		}
-	}
-
 	private CompletionItemKind classInfoToCompletionItemKind(ClassInfo classInfo) {
 		if (classInfo.isInterface()) {
 			return CompletionItemKind.Interface;
@@ -61,6 +61,9 @@ public class DocumentSymbolProvider {
 		for (ASTNode node : nodes) {
 			DocumentSymbol symbol = null;
 			if (node instanceof ClassNode) {
+				if (isSupertypeReference((ClassNode) node)) {
+					continue;
+				}
 				symbol = GroovyLanguageServerUtils.astNodeToDocumentSymbol((ClassNode) node);
 			} else if (node instanceof MethodNode) {
 				symbol = GroovyLanguageServerUtils.astNodeToDocumentSymbol((MethodNode) node);
@@ -102,4 +105,26 @@ public class DocumentSymbolProvider {
 		}
 		return CompletableFuture.completedFuture(result);
 	}
+
+	/**
+	 * The supertypes of a class are nodes too, but they're references rather
+	 * than declarations, and their names are resolved only after the file is
+	 * compiled with the rest of the workspace.
+	 */
+	private boolean isSupertypeReference(ClassNode node) {
+		ASTNode parent = ast.getParent(node);
+		if (!(parent instanceof ClassNode)) {
+			return false;
+		}
+		ClassNode parentClass = (ClassNode) parent;
+		if (node == parentClass.getUnresolvedSuperClass()) {
+			return true;
+		}
+		for (ClassNode interfaceNode : parentClass.getUnresolvedInterfaces()) {
+			if (node == interfaceNode) {
+				return true;
+			}
+		}
+		return false;
+	}
 }
\ No newline at end of file
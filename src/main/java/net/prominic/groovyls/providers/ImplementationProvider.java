@@ -90,7 +90,7 @@ public class ImplementationProvider {
             return Collections.emptyList();
         }
         List<ASTNode> results = new ArrayList<>();
-        for (ClassNode classNode : ast.getClassNodes()) {
+        for (ClassNode classNode : ast.getSubtypeCandidates(target)) {
             if (classNode == null || classNode.equals(target)) {
                 continue;
             }
@@ -107,7 +107,7 @@ public class ImplementationProvider {
             return Collections.emptyList();
         }
         List<ASTNode> results = new ArrayList<>();
-        for (ClassNode classNode : ast.getClassNodes()) {
+        for (ClassNode classNode : ast.getSubtypeCandidates(targetClass)) {
             if (classNode == null || classNode.equals(targetClass)) {
                 continue;
             }
@@ -29,6 +29,7 @@ import org.codehaus.groovy.ast.ASTNode;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
@@ -36,9 +37,16 @@ import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class ReferenceProvider {
 	private ASTNodeVisitor ast;
+	private CancelChecker cancelChecker;
 
 	public ReferenceProvider(ASTNodeVisitor ast) {
+		this(ast, () -> {
+		});
+	}
+
+	public ReferenceProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
 		this.ast = ast;
+		this.cancelChecker = cancelChecker;
 	}
 
 	public CompletableFuture<List<? extends Location>> provideReferences(TextDocumentIdentifier textDocument,
@@ -54,7 +62,7 @@ public class ReferenceProvider {
 			return CompletableFuture.completedFuture(Collections.emptyList());
 		}
 
-		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
+		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast, cancelChecker);
 		List<Location> locations = references.stream().map(node -> {
 			URI uri = ast.getURI(node);
 			return GroovyLanguageServerUtils.astNodeToLocation(node, uri);
@@ -48,11 +48,10 @@ public class SelectionRangeProvider {
 		}
 
 		URI uri = URI.create(textDocument.getUri());
-		List<ASTNode> nodes = ast.getNodes(uri);
 
 		List<SelectionRange> results = new ArrayList<>();
 		for (Position position : positions) {
-			SelectionRange selectionRange = createSelectionRangeForPosition(nodes, position);
+			SelectionRange selectionRange = createSelectionRangeForPosition(uri, position);
 			if (selectionRange != null) {
 				results.add(selectionRange);
 			}
@@ -61,10 +60,10 @@ public class SelectionRangeProvider {
 		return CompletableFuture.completedFuture(results);
 	}
 
-	private SelectionRange createSelectionRangeForPosition(List<ASTNode> nodes, Position position) {
+	private SelectionRange createSelectionRangeForPosition(URI uri, Position position) {
 		// Find all nodes that contain the position, sorted from smallest to largest
 		List<ASTNode> containingNodes = new ArrayList<>();
-		for (ASTNode node : nodes) {
+		for (ASTNode node : ast.getNodesAtLineAndColumn(uri, position.getLine(), position.getCharacter())) {
 			if (nodeContainsPosition(node, position)) {
 				containingNodes.add(node);
 			}
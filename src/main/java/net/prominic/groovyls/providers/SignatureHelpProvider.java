@@ -26,11 +26,17 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.Variable;
 import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
 import org.codehaus.groovy.ast.expr.Expression;
 import org.codehaus.groovy.ast.expr.MethodCall;
+import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.eclipse.lsp4j.MarkupContent;
 import org.eclipse.lsp4j.MarkupKind;
 import org.eclipse.lsp4j.ParameterInformation;
@@ -45,6 +51,7 @@ import groovy.lang.groovydoc.Groovydoc;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.compiler.util.GroovydocUtils;
+import net.prominic.groovyls.util.CallSite;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 import net.prominic.groovyls.util.GroovyNodeToStringUtils;
 
@@ -88,6 +95,155 @@ public class SignatureHelpProvider {
 			return CompletableFuture.completedFuture(new SignatureHelp(Collections.emptyList(), -1, -1));
 		}
 
+		MethodNode bestMethod = GroovyASTUtils.getMethodFromCallExpression(methodCall, ast, activeParamIndex);
+		int activeSignature = methods.indexOf(bestMethod);
+
+		return CompletableFuture.completedFuture(createSignatureHelp(methods, activeSignature, activeParamIndex));
+	}
+
+	/**
+	 * Provides signature help for a call found by scanning the text of a
+	 * file, which may be newer than the AST, so the method is looked up by
+	 * name in the AST instead of by the node at the position.
+	 */
+	public CompletableFuture<SignatureHelp> provideSignatureHelp(TextDocumentIdentifier textDocument,
+			Position openParenPosition, CallSite callSite) {
+		if (ast == null || callSite == null) {
+			return CompletableFuture.completedFuture(new SignatureHelp(Collections.emptyList(), -1, -1));
+		}
+		URI uri = URI.create(textDocument.getUri());
+		List<MethodNode> methods = getMethods(uri, openParenPosition, callSite);
+		if (methods.isEmpty()) {
+			return CompletableFuture.completedFuture(new SignatureHelp(Collections.emptyList(), -1, -1));
+		}
+		int activeParamIndex = callSite.getActiveParameter();
+		int activeSignature = 0;
+		for (int i = 0; i < methods.size(); i++) {
+			if (methods.get(i).getParameters().length > activeParamIndex) {
+				activeSignature = i;
+				break;
+			}
+		}
+		return CompletableFuture.completedFuture(createSignatureHelp(methods, activeSignature, activeParamIndex));
+	}
+
+	private List<MethodNode> getMethods(URI uri, Position position, CallSite callSite) {
+		if (callSite.isConstructorCall()) {
+			ClassNode type = ast.findClassNodeByName(callSite.getName());
+			if (type == null) {
+				return Collections.emptyList();
+			}
+			return new ArrayList<>(type.getDeclaredConstructors());
+		}
+		ClassNode type = getReceiverType(uri, position, callSite.getReceiver());
+		if (type == null) {
+			return Collections.emptyList();
+		}
+		List<MethodNode> methods = new ArrayList<>(type.getMethods(callSite.getName()));
+		for (MethodNode method : ast.getMetaClassMethods(type)) {
+			if (method.getName().equals(callSite.getName())) {
+				methods.add(method);
+			}
+		}
+		return methods;
+	}
+
+	private ClassNode getReceiverType(URI uri, Position position, String receiver) {
+		ClassNode enclosingClass = findEnclosingClass(uri, position);
+		if (receiver == null || receiver.equals("this")) {
+			return enclosingClass;
+		}
+		if (receiver.equals("super")) {
+			return enclosingClass != null ? enclosingClass.getSuperClass() : null;
+		}
+		if (receiver.indexOf('.') == -1) {
+			ASTNode declaration = findDeclaration(uri, position, receiver, enclosingClass);
+			if (declaration != null) {
+				return GroovyASTUtils.getTypeOfNode(declaration, ast);
+			}
+		}
+		// a static method of a class
+		ClassNode classNode = ast.findClassNodeByName(receiver);
+		if (classNode != null && (classNode.getName().equals(receiver)
+				|| classNode.getNameWithoutPackage().equals(receiver))) {
+			return classNode;
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the class that contains a position, or else the last class that
+	 * starts before it, since the AST may be older than the text.
+	 */
+	private ClassNode findEnclosingClass(URI uri, Position position) {
+		ModuleNode moduleNode = ast.getModuleNode(uri);
+		if (moduleNode == null || moduleNode.getClasses().isEmpty()) {
+			return null;
+		}
+		// the lines of the AST start at 1
+		int line = position.getLine() + 1;
+		ClassNode containing = null;
+		ClassNode preceding = null;
+		for (ClassNode classNode : moduleNode.getClasses()) {
+			if (classNode.getLineNumber() == -1 || classNode.getLineNumber() > line) {
+				continue;
+			}
+			if (line <= classNode.getLastLineNumber()
+					&& (containing == null || classNode.getLineNumber() >= containing.getLineNumber())) {
+				containing = classNode;
+			}
+			if (preceding == null || classNode.getLineNumber() > preceding.getLineNumber()) {
+				preceding = classNode;
+			}
+		}
+		if (containing != null) {
+			return containing;
+		}
+		return preceding != null ? preceding : moduleNode.getClasses().get(0);
+	}
+
+	/**
+	 * Finds the last declaration of a local variable or parameter with the
+	 * specified name before a position, or else a field or property of the
+	 * enclosing class.
+	 */
+	private ASTNode findDeclaration(URI uri, Position position, String name, ClassNode enclosingClass) {
+		int line = position.getLine() + 1;
+		int column = position.getCharacter() + 1;
+		ASTNode result = null;
+		for (ASTNode node : ast.getNodes(uri)) {
+			Variable variable = null;
+			if (node instanceof Parameter) {
+				variable = (Parameter) node;
+			} else if (node instanceof DeclarationExpression
+					&& ((DeclarationExpression) node).getLeftExpression() instanceof VariableExpression) {
+				variable = ((DeclarationExpression) node).getVariableExpression();
+			}
+			if (variable == null || !name.equals(variable.getName())) {
+				continue;
+			}
+			ASTNode declaration = (ASTNode) variable;
+			if (declaration.getLineNumber() > line
+					|| (declaration.getLineNumber() == line && declaration.getColumnNumber() > column)) {
+				continue;
+			}
+			if (result == null || declaration.getLineNumber() > result.getLineNumber()
+					|| (declaration.getLineNumber() == result.getLineNumber()
+							&& declaration.getColumnNumber() > result.getColumnNumber())) {
+				result = declaration;
+			}
+		}
+		if (result != null || enclosingClass == null) {
+			return result;
+		}
+		PropertyNode property = enclosingClass.getProperty(name);
+		if (property != null) {
+			return property;
+		}
+		return enclosingClass.getField(name);
+	}
+
+	private SignatureHelp createSignatureHelp(List<MethodNode> methods, int activeSignature, int activeParamIndex) {
 		List<SignatureInformation> sigInfos = new ArrayList<>();
 		for (MethodNode method : methods) {
 			List<ParameterInformation> parameters = new ArrayList<>();
@@ -108,11 +264,7 @@ public class SignatureHelpProvider {
 			}
 			sigInfos.add(sigInfo);
 		}
-
-		MethodNode bestMethod = GroovyASTUtils.getMethodFromCallExpression(methodCall, ast, activeParamIndex);
-		int activeSignature = methods.indexOf(bestMethod);
-
-		return CompletableFuture.completedFuture(new SignatureHelp(sigInfos, activeSignature, activeParamIndex));
+		return new SignatureHelp(sigInfos, activeSignature, activeParamIndex);
 	}
 
 	private int getActiveParameter(Position position, List<Expression> expressions) {
@@ -34,6 +34,7 @@ import org.codehaus.groovy.ast.Parameter;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
@@ -41,9 +42,16 @@ import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class SuperMethodProvider {
     private ASTNodeVisitor ast;
+    private CancelChecker cancelChecker;
 
     public SuperMethodProvider(ASTNodeVisitor ast) {
+        this(ast, () -> {
+        });
+    }
+
+    public SuperMethodProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
         this.ast = ast;
+        this.cancelChecker = cancelChecker;
     }
 
     public CompletableFuture<List<? extends Location>> provideSuperMethod(TextDocumentIdentifier textDocument,
@@ -90,6 +98,7 @@ public class SuperMethodProvider {
         List<MethodNode> results = new ArrayList<>();
         ClassNode current = declaringClass.getSuperClass();
         while (current != null) {
+            cancelChecker.checkCanceled();
             MethodNode match = findMatchingMethod(current, target);
             if (match != null) {
                 results.add(match);
@@ -98,6 +107,7 @@ public class SuperMethodProvider {
             current = current.getSuperClass();
         }
         for (ClassNode iface : declaringClass.getInterfaces()) {
+            cancelChecker.checkCanceled();
             MethodNode match = findMatchingMethod(iface, target);
             if (match != null) {
                 results.add(match);
@@ -98,7 +98,7 @@ public class TypeHierarchyProvider {
         if (target == null) {
             return CompletableFuture.completedFuture(Collections.emptyList());
         }
-        List<TypeHierarchyItem> results = ast.getClassNodes().stream().filter(node -> {
+        List<TypeHierarchyItem> results = ast.getSubtypeCandidates(target).stream().filter(node -> {
             return node != null && !node.equals(target) && isSubtypeOf(node, target);
         }).map(this::toTypeHierarchyItem).filter(itemNode -> itemNode != null).collect(Collectors.toList());
         return CompletableFuture.completedFuture(results);
@@ -133,27 +133,14 @@ public class TypeHierarchyProvider {
         if (name == null) {
             return null;
         }
-        for (ClassNode classNode : ast.getClassNodes()) {
-            if (classNode == null) {
-                continue;
-            }
-            if (name.equals(classNode.getName()) || name.equals(classNode.getNameWithoutPackage())) {
-                return classNode;
-            }
-        }
-        return null;
+        return ast.findClassNodeByName(name);
     }
 
     private ClassNode resolveClassNode(ClassNode node) {
         if (node == null) {
             return null;
         }
-        for (ClassNode classNode : ast.getClassNodes()) {
-            if (classNode != null && classNode.equals(node)) {
-                return classNode;
-            }
-        }
-        return null;
+        return ast.findOriginalClassNode(node);
     }
 
     private TypeHierarchyItem toTypeHierarchyItem(ClassNode classNode) {
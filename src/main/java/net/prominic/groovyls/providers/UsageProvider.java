@@ -41,6 +41,7 @@ import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
@@ -57,9 +58,16 @@ public class UsageProvider {
     public static final String TYPE_REFERENCE = "reference";
 
     private ASTNodeVisitor ast;
+    private CancelChecker cancelChecker;
 
     public UsageProvider(ASTNodeVisitor ast) {
+        this(ast, () -> {
+        });
+    }
+
+    public UsageProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
         this.ast = ast;
+        this.cancelChecker = cancelChecker;
     }
 
     public List<UsageItem> provideUsages(TextDocumentIdentifier textDocument, Position position,
@@ -72,8 +80,11 @@ public class UsageProvider {
         if (offsetNode == null) {
             return Collections.emptyList();
         }
-        List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
-        return references.stream().map(node -> toUsageItem(node)).filter(item -> item != null)
+        List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast, cancelChecker);
+        return references.stream().map(node -> {
+            cancelChecker.checkCanceled();
+            return toUsageItem(node);
+        }).filter(item -> item != null)
                 .filter(item -> typeFilter == null || typeFilter.isEmpty() || typeFilter.contains(item.getType()))
                 .collect(Collectors.toList());
     }
@@ -31,6 +31,7 @@ import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.PropertyNode;
 import org.eclipse.lsp4j.WorkspaceSymbol;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
@@ -38,9 +39,16 @@ import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class WorkspaceSymbolProvider {
 	private ASTNodeVisitor ast;
+	private CancelChecker cancelChecker;
 
 	public WorkspaceSymbolProvider(ASTNodeVisitor ast) {
+		this(ast, () -> {
+		});
+	}
+
+	public WorkspaceSymbolProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
 		this.ast = ast;
+		this.cancelChecker = cancelChecker;
 	}
 
 	public CompletableFuture<List<? extends WorkspaceSymbol>> provideWorkspaceSymbols(String query) {
@@ -52,6 +60,7 @@ public class WorkspaceSymbolProvider {
 		String lowerCaseQuery = query.toLowerCase();
 		List<ASTNode> nodes = ast.getNodes();
 		List<WorkspaceSymbol> symbols = nodes.stream().filter(node -> {
+			cancelChecker.checkCanceled();
 			String name = null;
 			if (node instanceof ClassNode) {
 				ClassNode classNode = (ClassNode) node;
@@ -0,0 +1,203 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * The call whose argument list contains an offset, found by scanning the
+ * text of a file, so that a call that is still being typed can be found
+ * without compiling the file. Strings and comments are skipped, but slashy
+ * strings are not recognized.
+ */
+public class CallSite {
+	private static final Set<String> KEYWORDS = Set.of("if", "for", "while", "switch", "catch", "synchronized",
+			"return", "assert", "throw");
+
+	private final String receiver;
+	private final String name;
+	private final boolean constructorCall;
+	private final int openParenOffset;
+	private final int activeParameter;
+
+	CallSite(String receiver, String name, boolean constructorCall, int openParenOffset, int activeParameter) {
+		this.receiver = receiver;
+		this.name = name;
+		this.constructorCall = constructorCall;
+		this.openParenOffset = openParenOffset;
+		this.activeParameter = activeParameter;
+	}
+
+	/**
+	 * The text before the method name and its dot, like a variable or a
+	 * class name, or null if the method is called without a receiver.
+	 */
+	public String getReceiver() {
+		return receiver;
+	}
+
+	/**
+	 * The name of the method, or the possibly qualified name of the class for
+	 * a constructor call.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public boolean isConstructorCall() {
+		return constructorCall;
+	}
+
+	public int getOpenParenOffset() {
+		return openParenOffset;
+	}
+
+	public int getActiveParameter() {
+		return activeParameter;
+	}
+
+	/**
+	 * Returns the innermost call whose argument list is open at the offset, or
+	 * null if there isn't one, like inside a closure or a parenthesized
+	 * expression.
+	 */
+	public static CallSite find(CharSequence text, int offset) {
+		// each open bracket, with the number of commas directly inside it
+		Deque<int[]> open = new ArrayDeque<>();
+		int end = Math.min(offset, text.length());
+		int i = 0;
+		while (i < end) {
+			char c = text.charAt(i);
+			if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/') {
+				i = indexOf(text, "\n", i + 2, end);
+			} else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+				i = indexOf(text, "*/", i + 2, end) + 2;
+			} else if (c == '"' || c == '\'') {
+				i = skipString(text, i, end);
+			} else if (c == '(' || c == '[' || c == '{') {
+				open.push(new int[] { i, 0 });
+				i++;
+			} else if (c == ')' || c == ']' || c == '}') {
+				open.poll();
+				i++;
+			} else {
+				if (c == ',' && !open.isEmpty()) {
+					open.peek()[1]++;
+				}
+				i++;
+			}
+		}
+		// the arguments may be inside a list, but not inside a closure
+		for (Iterator<int[]> iterator = open.iterator(); iterator.hasNext();) {
+			int[] bracket = iterator.next();
+			char c = text.charAt(bracket[0]);
+			if (c == '{') {
+				return null;
+			}
+			if (c == '(') {
+				return create(text, bracket[0], bracket[1]);
+			}
+		}
+		return null;
+	}
+
+	private static CallSite create(CharSequence text, int openParenOffset, int activeParameter) {
+		int nameEnd = skipWhitespaceBackward(text, openParenOffset);
+		int chainStart = nameEnd;
+		while (chainStart > 0 && (Character.isJavaIdentifierPart(text.charAt(chainStart - 1))
+				|| text.charAt(chainStart - 1) == '.')) {
+			chainStart--;
+		}
+		String chain = text.subSequence(chainStart, nameEnd).toString();
+		if (chain.isEmpty() || chain.startsWith(".") || chain.endsWith(".")
+				|| !Character.isJavaIdentifierStart(chain.charAt(0))) {
+			return null;
+		}
+		int wordEnd = skipWhitespaceBackward(text, chainStart);
+		int wordStart = wordEnd;
+		while (wordStart > 0 && Character.isJavaIdentifierPart(text.charAt(wordStart - 1))) {
+			wordStart--;
+		}
+		if (wordEnd < chainStart && "new".contentEquals(text.subSequence(wordStart, wordEnd))) {
+			return new CallSite(null, chain, true, openParenOffset, activeParameter);
+		}
+		int dot = chain.lastIndexOf('.');
+		String name = chain.substring(dot + 1);
+		if (dot == -1 && KEYWORDS.contains(name)) {
+			return null;
+		}
+		String receiver = dot != -1 ? chain.substring(0, dot) : null;
+		return new CallSite(receiver, name, false, openParenOffset, activeParameter);
+	}
+
+	private static int skipWhitespaceBackward(CharSequence text, int offset) {
+		while (offset > 0 && Character.isWhitespace(text.charAt(offset - 1))) {
+			offset--;
+		}
+		return offset;
+	}
+
+	private static int skipString(CharSequence text, int start, int end) {
+		char quote = text.charAt(start);
+		String delimiter = String.valueOf(quote);
+		if (start + 2 < end && text.charAt(start + 1) == quote && text.charAt(start + 2) == quote) {
+			delimiter = delimiter + quote + quote;
+		}
+		int i = start + delimiter.length();
+		while (i < end) {
+			char c = text.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (delimiter.length() == 1 && c == '\n') {
+				// an unterminated string ends with its line
+				return i;
+			} else if (startsWith(text, delimiter, i, end)) {
+				return i + delimiter.length();
+			} else {
+				i++;
+			}
+		}
+		return end;
+	}
+
+	private static int indexOf(CharSequence text, String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (startsWith(text, s, i, end)) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private static boolean startsWith(CharSequence text, String s, int start, int end) {
+		if (start + s.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (text.charAt(start + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -22,8 +22,11 @@ package net.prominic.groovyls.util;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -35,66 +38,123 @@ import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 
-import net.prominic.lsp.utils.Positions;
-
 public class FileContentsTracker {
+	// characters are hashed in chunks of this many bytes
+	private static final int HASH_BUFFER_SIZE = 8192;
+
+	private static class OpenFile {
+		private final PieceTable text;
+		private Integer version;
 
-	private Map<URI, String> openFiles = new HashMap<>();
+		private OpenFile(String text, Integer version) {
+			this.text = new PieceTable(text);
+			this.version = version;
+		}
+	}
+
+	private Map<URI, OpenFile> openFiles = new HashMap<>();
 	private Set<URI> changedFiles = new HashSet<>();
+	private long modificationCount;
 
-	public Set<URI> getOpenURIs() {
-		return openFiles.keySet();
+	public synchronized Set<URI> getOpenURIs() {
+		return new HashSet<>(openFiles.keySet());
 	}
 
-	public Set<URI> getChangedURIs() {
-		return changedFiles;
+	public synchronized Set<URI> getChangedURIs() {
+		return new HashSet<>(changedFiles);
 	}
 
-	public void resetChangedFiles() {
+	public synchronized void resetChangedFiles() {
 		changedFiles = new HashSet<>();
 	}
 
-	public void forceChanged(URI uri) {
+	public synchronized void forceChanged(URI uri) {
 		changedFiles.add(uri);
 	}
 
-	public boolean isOpen(URI uri) {
+	public synchronized boolean isOpen(URI uri) {
 		return openFiles.containsKey(uri);
 	}
 
-	public void didOpen(DidOpenTextDocumentParams params) {
+	/**
+	 * Returns a number that increases every time that the contents of any
+	 * file are changed.
+	 */
+	public synchronized long getModificationCount() {
+		return modificationCount;
+	}
+
+	public synchronized Integer getVersion(URI uri) {
+		OpenFile openFile = openFiles.get(uri);
+		if (openFile == null) {
+			return null;
+		}
+		return openFile.version;
+	}
+
+	public synchronized void didOpen(DidOpenTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		openFiles.put(uri, params.getTextDocument().getText());
+		openFiles.put(uri, new OpenFile(params.getTextDocument().getText(), params.getTextDocument().getVersion()));
 		changedFiles.add(uri);
+		modificationCount++;
 	}
 
-	public void didChange(DidChangeTextDocumentParams params) {
+	public synchronized void didChange(DidChangeTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		String oldText = openFiles.get(uri);
-		TextDocumentContentChangeEvent change = params.getContentChanges().get(0);
-		Range range = change.getRange();
-		if (range == null) {
-			openFiles.put(uri, change.getText());
-		} else {
-			int offsetStart = Positions.getOffset(oldText, change.getRange().getStart());
-			int offsetEnd = Positions.getOffset(oldText, change.getRange().getEnd());
-			StringBuilder builder = new StringBuilder();
-			builder.append(oldText.substring(0, offsetStart));
-			builder.append(change.getText());
-			builder.append(oldText.substring(offsetEnd));
-			openFiles.put(uri, builder.toString());
+		OpenFile openFile = openFiles.get(uri);
+		if (openFile == null) {
+			openFile = new OpenFile("", null);
+			openFiles.put(uri, openFile);
+		}
+		// with incremental sync, each change's range refers to the text after
+		// the previous changes were applied
+		for (TextDocumentContentChangeEvent change : params.getContentChanges()) {
+			Range range = change.getRange();
+			if (range == null) {
+				openFile.text.setText(change.getText());
+			} else {
+				openFile.text.replace(range.getStart(), range.getEnd(), change.getText());
+			}
+		}
+		if (params.getTextDocument().getVersion() != null) {
+			openFile.version = params.getTextDocument().getVersion();
 		}
 		changedFiles.add(uri);
+		modificationCount++;
 	}
 
-	public void didClose(DidCloseTextDocumentParams params) {
+	public synchronized void didClose(DidCloseTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
 		openFiles.remove(uri);
 		changedFiles.add(uri);
+		modificationCount++;
+	}
+
+	/**
+	 * Returns the contents of a file, along with the offsets of its lines,
+	 * without copying them. The result doesn't change if the file is edited
+	 * later.
+	 */
+	public PieceTable.Snapshot getContentsSnapshot(URI uri) {
+		synchronized (this) {
+			OpenFile openFile = openFiles.get(uri);
+			if (openFile != null) {
+				return openFile.text.getSnapshot();
+			}
+		}
+		String contents = getContents(uri);
+		if (contents == null) {
+			return null;
+		}
+		return new PieceTable(contents).getSnapshot();
 	}
 
 	public String getContents(URI uri) {
-		if (!openFiles.containsKey(uri)) {
+		OpenFile openFile;
+		synchronized (this) {
+			openFile = openFiles.get(uri);
+		}
+		if (openFile == null) {
 			BufferedReader reader = null;
 			try {
 				reader = Files.newBufferedReader(Paths.get(uri));
@@ -115,10 +175,46 @@ public class FileContentsTracker {
 				}
 			}
 		}
-		return openFiles.get(uri);
+		synchronized (this) {
+			return openFile.text.getSnapshot().toString();
+		}
+	}
+
+	/**
+	 * Returns the first 64 bits of the SHA-256 digest of a file's contents, so
+	 * that files aren't treated as unchanged because edits happened to keep
+	 * the same hash.
+	 */
+	public static long hashContents(CharSequence contents) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every implementation of the Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[HASH_BUFFER_SIZE];
+		int count = 0;
+		for (int i = 0; i < contents.length(); i++) {
+			char c = contents.charAt(i);
+			buffer[count++] = (byte) (c >> 8);
+			buffer[count++] = (byte) c;
+			if (count == buffer.length) {
+				digest.update(buffer, 0, count);
+				count = 0;
+			}
+		}
+		digest.update(buffer, 0, count);
+		return ByteBuffer.wrap(digest.digest()).getLong();
 	}
 
-	public void setContents(URI uri, String contents) {
-		openFiles.put(uri, contents);
+	public synchronized void setContents(URI uri, String contents) {
+		OpenFile openFile = openFiles.get(uri);
+		if (openFile == null) {
+			openFiles.put(uri, new OpenFile(contents, null));
+		} else {
+			openFile.text.setText(contents);
+		}
+		modificationCount++;
 	}
 }
\ No newline at end of file
@@ -24,8 +24,10 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,6 +39,8 @@ public final class GradleProjectDetector {
     private static final String SETTINGS_GRADLE_KTS = "settings.gradle.kts";
     private static final Pattern INCLUDE_PATTERN = Pattern
             .compile("^\\s*include\\s*(?:\\((.*)\\)|(.+))", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PROJECT_DEPENDENCY_PATTERN = Pattern
+            .compile("project\\s*\\(\\s*(?:path\\s*:\\s*)?[\"'](:[^\"']*)[\"']");
 
     private GradleProjectDetector() {
     }
@@ -72,7 +76,42 @@ public final class GradleProjectDetector {
             }
         }
 
-        return new GradleProjectInfo(root, buildFiles, settingsFiles, new ArrayList<>(moduleDirectories));
+        Map<Path, List<Path>> moduleDependencies = new LinkedHashMap<>();
+        addModuleDependencies(root, root, moduleDirectories, moduleDependencies);
+        for (Path moduleDir : moduleDirectories) {
+            addModuleDependencies(root, moduleDir, moduleDirectories, moduleDependencies);
+        }
+
+        return new GradleProjectInfo(root, buildFiles, settingsFiles, new ArrayList<>(moduleDirectories),
+                moduleDependencies);
+    }
+
+    private static void addModuleDependencies(Path root, Path projectDir, Set<Path> moduleDirectories,
+            Map<Path, List<Path>> result) {
+        Set<Path> dependencies = new LinkedHashSet<>();
+        for (String buildFileName : new String[] { BUILD_GRADLE, BUILD_GRADLE_KTS }) {
+            Path buildFile = projectDir.resolve(buildFileName);
+            if (!Files.exists(buildFile)) {
+                continue;
+            }
+            String content;
+            try {
+                content = Files.readString(buildFile);
+            } catch (IOException e) {
+                continue;
+            }
+            Matcher matcher = PROJECT_DEPENDENCY_PATTERN.matcher(content);
+            while (matcher.find()) {
+                String projectPath = matcher.group(1).substring(1);
+                Path dependencyDir = projectPath.isEmpty() ? root
+                        : root.resolve(projectPath.replace(':', File.separatorChar)).normalize();
+                if (!dependencyDir.equals(projectDir)
+                        && (dependencyDir.equals(root) || moduleDirectories.contains(dependencyDir))) {
+                    dependencies.add(dependencyDir);
+                }
+            }
+        }
+        result.put(projectDir, new ArrayList<>(dependencies));
     }
 
     private static void addIfExists(List<Path> list, Path path) {
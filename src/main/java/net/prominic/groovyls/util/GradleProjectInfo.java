@@ -22,19 +22,27 @@ package net.prominic.groovyls.util;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public final class GradleProjectInfo {
     private final Path root;
     private final List<Path> buildFiles;
     private final List<Path> settingsFiles;
     private final List<Path> moduleDirectories;
+    private final Map<Path, List<Path>> moduleDependencies;
 
     public GradleProjectInfo(Path root, List<Path> buildFiles, List<Path> settingsFiles,
             List<Path> moduleDirectories) {
+        this(root, buildFiles, settingsFiles, moduleDirectories, Collections.emptyMap());
+    }
+
+    public GradleProjectInfo(Path root, List<Path> buildFiles, List<Path> settingsFiles,
+            List<Path> moduleDirectories, Map<Path, List<Path>> moduleDependencies) {
         this.root = root;
         this.buildFiles = Collections.unmodifiableList(buildFiles);
         this.settingsFiles = Collections.unmodifiableList(settingsFiles);
         this.moduleDirectories = Collections.unmodifiableList(moduleDirectories);
+        this.moduleDependencies = Collections.unmodifiableMap(moduleDependencies);
     }
 
     public Path getRoot() {
@@ -53,6 +61,14 @@ public final class GradleProjectInfo {
         return moduleDirectories;
     }
 
+    /**
+     * Returns the directories of the projects that each project (including the
+     * root project) depends on with project(':path').
+     */
+    public Map<Path, List<Path>> getModuleDependencies() {
+        return moduleDependencies;
+    }
+
     public boolean isMultiModule() {
         return !moduleDirectories.isEmpty();
     }
@@ -0,0 +1,115 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.Arrays;
+
+import org.eclipse.lsp4j.Position;
+
+/**
+ * The offset where each line of a text starts, for converting between
+ * zero-based line/character positions and offsets without scanning the text.
+ * Only '\n' ends a line, like Positions.getOffset().
+ */
+public class LineOffsets {
+	private final int[] lineStarts;
+	private final int lineCount;
+	private final int length;
+
+	LineOffsets(int[] lineStarts, int lineCount, int length) {
+		this.lineStarts = lineStarts;
+		this.lineCount = lineCount;
+		this.length = length;
+	}
+
+	public static LineOffsets of(CharSequence text) {
+		int[] lineStarts = new int[16];
+		int lineCount = 1;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n') {
+				if (lineCount == lineStarts.length) {
+					lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+				}
+				lineStarts[lineCount] = i + 1;
+				lineCount++;
+			}
+		}
+		return new LineOffsets(lineStarts, lineCount, text.length());
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Returns the offset of the first character of a line, or -1 if the text
+	 * doesn't have that many lines.
+	 */
+	public int getLineStart(int line) {
+		if (line < 0 || line >= lineCount) {
+			return -1;
+		}
+		return lineStarts[line];
+	}
+
+	/**
+	 * Returns the offset of the '\n' at the end of a line (or the length of
+	 * the text, for the last line), or -1 if the text doesn't have that many
+	 * lines.
+	 */
+	public int getLineEnd(int line) {
+		if (line < 0 || line >= lineCount) {
+			return -1;
+		}
+		if (line == lineCount - 1) {
+			return length;
+		}
+		return lineStarts[line + 1] - 1;
+	}
+
+	/**
+	 * Returns the offset of a position, or -1 if the text doesn't have that
+	 * many lines. A character past the end of the line is clamped to the end
+	 * of the line.
+	 */
+	public int getOffset(Position position) {
+		int lineStart = getLineStart(position.getLine());
+		if (lineStart == -1) {
+			return -1;
+		}
+		int character = Math.max(0, position.getCharacter());
+		return Math.min(lineStart + character, getLineEnd(position.getLine()));
+	}
+
+	public Position getPosition(int offset) {
+		offset = Math.max(0, Math.min(offset, length));
+		int low = 0;
+		int high = lineCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (lineStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return new Position(low, offset - lineStarts[low]);
+	}
+}
@@ -61,15 +61,37 @@ public final class MavenProjectDetector {
         Set<Path> moduleDirectories = new LinkedHashSet<>();
         Set<String> repositories = new LinkedHashSet<>();
         Set<String> dependencies = new LinkedHashSet<>();
+        Map<Path, PomModel> modelsByDirectory = new LinkedHashMap<>();
 
-        collectPom(rootPom, pomFiles, moduleDirectories, repositories, dependencies, new LinkedHashSet<>());
+        collectPom(rootPom, pomFiles, moduleDirectories, repositories, dependencies, modelsByDirectory,
+                new LinkedHashSet<>());
 
         return new MavenProjectInfo(root, new ArrayList<>(pomFiles), new ArrayList<>(moduleDirectories),
-                new ArrayList<>(repositories), new ArrayList<>(dependencies));
+                new ArrayList<>(repositories), new ArrayList<>(dependencies), getModuleDependencies(modelsByDirectory));
+    }
+
+    private static Map<Path, List<Path>> getModuleDependencies(Map<Path, PomModel> modelsByDirectory) {
+        Map<String, Path> directoriesByKey = new LinkedHashMap<>();
+        modelsByDirectory.forEach((directory, model) -> {
+            directoriesByKey.put(model.groupId + ":" + model.artifactId, directory);
+        });
+        Map<Path, List<Path>> result = new LinkedHashMap<>();
+        modelsByDirectory.forEach((directory, model) -> {
+            Set<Path> moduleDependencies = new LinkedHashSet<>();
+            for (String key : model.dependencyKeys) {
+                Path dependencyDir = directoriesByKey.get(key);
+                if (dependencyDir != null && !dependencyDir.equals(directory)) {
+                    moduleDependencies.add(dependencyDir);
+                }
+            }
+            result.put(directory, new ArrayList<>(moduleDependencies));
+        });
+        return result;
     }
 
     private static void collectPom(Path pom, Set<Path> pomFiles, Set<Path> moduleDirectories,
-            Set<String> repositories, Set<String> dependencies, Set<Path> visited) {
+            Set<String> repositories, Set<String> dependencies, Map<Path, PomModel> modelsByDirectory,
+            Set<Path> visited) {
         if (pom == null || !Files.exists(pom)) {
             return;
         }
@@ -87,6 +109,7 @@ public final class MavenProjectDetector {
 
         repositories.addAll(model.repositories);
         dependencies.addAll(model.dependencies);
+        modelsByDirectory.put(normalized.getParent(), model);
 
         for (String modulePath : model.modules) {
             Path moduleDir = normalized.getParent().resolve(modulePath).normalize();
@@ -95,7 +118,8 @@ public final class MavenProjectDetector {
             }
             moduleDirectories.add(moduleDir);
             Path modulePom = moduleDir.resolve(POM_FILE);
-            collectPom(modulePom, pomFiles, moduleDirectories, repositories, dependencies, visited);
+            collectPom(modulePom, pomFiles, moduleDirectories, repositories, dependencies, modelsByDirectory,
+                    visited);
         }
     }
 
@@ -151,9 +175,10 @@ public final class MavenProjectDetector {
         }
         managedVersions.putAll(parseDependencyManagement(project, properties));
         List<String> dependencies = parseDependencies(project, properties, managedVersions);
+        List<String> dependencyKeys = parseDependencyKeys(project, properties);
 
         return new PomModel(groupId, artifactId, version, packaging, properties, modules, repositories, dependencies,
-                managedVersions);
+                dependencyKeys, managedVersions);
     }
 
     private static Document loadDocument(Path pomPath) {
@@ -311,6 +336,31 @@ public final class MavenProjectDetector {
         return results;
     }
 
+    private static List<String> parseDependencyKeys(Element project, Map<String, String> properties) {
+        // unlike parseDependencies(), test dependencies and dependencies
+        // without a version are included because modules of the same project
+        // are often referenced that way
+        Element dependencies = getChild(project, "dependencies");
+        if (dependencies == null) {
+            return Collections.emptyList();
+        }
+        List<String> results = new ArrayList<>();
+        NodeList nodes = dependencies.getElementsByTagName("dependency");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element dep = asElement(nodes.item(i));
+            if (dep == null) {
+                continue;
+            }
+            String groupId = resolvePlaceholders(textOrNull(getChild(dep, "groupId")), properties);
+            String artifactId = resolvePlaceholders(textOrNull(getChild(dep, "artifactId")), properties);
+            if (groupId == null || artifactId == null) {
+                continue;
+            }
+            results.add(groupId.trim() + ":" + artifactId.trim());
+        }
+        return results;
+    }
+
     private static String resolvePlaceholders(String value, Map<String, String> properties) {
         if (value == null) {
             return null;
@@ -370,11 +420,12 @@ public final class MavenProjectDetector {
         private final List<String> modules;
         private final List<String> repositories;
         private final List<String> dependencies;
+        private final List<String> dependencyKeys;
         private final Map<String, String> managedVersions;
 
         private PomModel(String groupId, String artifactId, String version, String packaging,
                 Map<String, String> properties, List<String> modules, List<String> repositories,
-                List<String> dependencies, Map<String, String> managedVersions) {
+                List<String> dependencies, List<String> dependencyKeys, Map<String, String> managedVersions) {
             this.groupId = groupId;
             this.artifactId = artifactId;
             this.version = version;
@@ -383,6 +434,7 @@ public final class MavenProjectDetector {
             this.modules = modules == null ? Collections.emptyList() : new ArrayList<>(modules);
             this.repositories = repositories == null ? Collections.emptyList() : new ArrayList<>(repositories);
             this.dependencies = dependencies == null ? Collections.emptyList() : new ArrayList<>(dependencies);
+            this.dependencyKeys = dependencyKeys == null ? Collections.emptyList() : new ArrayList<>(dependencyKeys);
             this.managedVersions = managedVersions == null ? Collections.emptyMap()
                     : new LinkedHashMap<>(managedVersions);
         }
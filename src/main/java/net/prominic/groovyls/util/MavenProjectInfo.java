@@ -22,6 +22,7 @@ package net.prominic.groovyls.util;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public final class MavenProjectInfo {
     private final Path root;
@@ -29,14 +30,21 @@ public final class MavenProjectInfo {
     private final List<Path> moduleDirectories;
     private final List<String> repositories;
     private final List<String> dependencies;
+    private final Map<Path, List<Path>> moduleDependencies;
 
     public MavenProjectInfo(Path root, List<Path> pomFiles, List<Path> moduleDirectories,
             List<String> repositories, List<String> dependencies) {
+        this(root, pomFiles, moduleDirectories, repositories, dependencies, Collections.emptyMap());
+    }
+
+    public MavenProjectInfo(Path root, List<Path> pomFiles, List<Path> moduleDirectories,
+            List<String> repositories, List<String> dependencies, Map<Path, List<Path>> moduleDependencies) {
         this.root = root;
         this.pomFiles = Collections.unmodifiableList(pomFiles);
         this.moduleDirectories = Collections.unmodifiableList(moduleDirectories);
         this.repositories = Collections.unmodifiableList(repositories);
         this.dependencies = Collections.unmodifiableList(dependencies);
+        this.moduleDependencies = Collections.unmodifiableMap(moduleDependencies);
     }
 
     public Path getRoot() {
@@ -59,6 +67,14 @@ public final class MavenProjectInfo {
         return dependencies;
     }
 
+    /**
+     * Returns the directories of the modules in this project that each module
+     * (including the root project) declares as a dependency.
+     */
+    public Map<Path, List<Path>> getModuleDependencies() {
+        return moduleDependencies;
+    }
+
     public boolean isMultiModule() {
         return !moduleDirectories.isEmpty();
     }
@@ -0,0 +1,276 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+
+/**
+ * Text that is edited in place without copying the whole document. The text
+ * is stored as a list of pieces, where each piece is a range of an immutable
+ * string: either the original text or the text of an edit. An edit only
+ * splits the pieces at its start and end, and snapshots share the strings.
+ */
+public class PieceTable {
+	// when there are more pieces than this, they're joined into one string so
+	// that lookups don't get slower over time
+	private static final int MAX_PIECES = 512;
+
+	private static class Piece {
+		private final String source;
+		private final int start;
+		private final int length;
+
+		private Piece(String source, int start, int length) {
+			this.source = source;
+			this.start = start;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * An immutable view of the text at the time that it was created.
+	 */
+	public static class Snapshot implements CharSequence {
+		private final Piece[] pieces;
+		// the offset where each piece starts
+		private final int[] offsets;
+		private final int length;
+		private final LineOffsets lineOffsets;
+		private String text;
+
+		private Snapshot(Piece[] pieces, int length, LineOffsets lineOffsets) {
+			this.pieces = pieces;
+			this.length = length;
+			this.lineOffsets = lineOffsets;
+			offsets = new int[pieces.length];
+			int offset = 0;
+			for (int i = 0; i < pieces.length; i++) {
+				offsets[i] = offset;
+				offset += pieces[i].length;
+			}
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		public LineOffsets getLineOffsets() {
+			return lineOffsets;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			int low = 0;
+			int high = offsets.length - 1;
+			while (low < high) {
+				int mid = (low + high + 1) >>> 1;
+				if (offsets[mid] <= index) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			Piece piece = pieces[low];
+			return piece.source.charAt(piece.start + index - offsets[low]);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public synchronized String toString() {
+			if (text == null) {
+				StringBuilder builder = new StringBuilder(length);
+				for (Piece piece : pieces) {
+					builder.append(piece.source, piece.start, piece.start + piece.length);
+				}
+				text = builder.toString();
+			}
+			return text;
+		}
+	}
+
+	private List<Piece> pieces = new ArrayList<>();
+	private int length;
+	// updated with each edit, so that positions don't need to be found by
+	// scanning the text
+	private int[] lineStarts = new int[16];
+	private int lineCount;
+	private Snapshot snapshot;
+
+	public PieceTable(String text) {
+		setText(text);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public void setText(String text) {
+		pieces = new ArrayList<>();
+		if (text.length() > 0) {
+			pieces.add(new Piece(text, 0, text.length()));
+		}
+		length = text.length();
+		lineCount = 1;
+		addLineStarts(text, 0);
+		snapshot = null;
+	}
+
+	/**
+	 * Replaces the text between two offsets.
+	 */
+	public void replace(int start, int end, String text) {
+		start = Math.max(0, Math.min(start, length));
+		end = Math.max(start, Math.min(end, length));
+		List<Piece> result = new ArrayList<>(pieces.size() + 2);
+		int offset = 0;
+		boolean inserted = false;
+		for (Piece piece : pieces) {
+			int pieceEnd = offset + piece.length;
+			if (pieceEnd <= start || offset >= end) {
+				if (!inserted && offset >= end) {
+					addInsertedText(result, text);
+					inserted = true;
+				}
+				result.add(piece);
+			} else {
+				if (offset < start) {
+					result.add(new Piece(piece.source, piece.start, start - offset));
+				}
+				if (!inserted) {
+					addInsertedText(result, text);
+					inserted = true;
+				}
+				if (pieceEnd > end) {
+					result.add(new Piece(piece.source, piece.start + end - offset, pieceEnd - end));
+				}
+			}
+			offset = pieceEnd;
+		}
+		if (!inserted) {
+			addInsertedText(result, text);
+		}
+		pieces = result;
+		updateLineStarts(start, end, text);
+		length += text.length() - (end - start);
+		snapshot = null;
+		if (pieces.size() > MAX_PIECES) {
+			setText(getSnapshot().toString());
+		}
+	}
+
+	/**
+	 * Replaces the text between two zero-based line/character positions.
+	 */
+	public void replace(Position start, Position end, String text) {
+		replace(getOffset(start), getOffset(end), text);
+	}
+
+	/**
+	 * Returns the offset of a zero-based line/character position, clamped to
+	 * the length of the text. A character past the end of the line is
+	 * clamped to the end of the line.
+	 */
+	public int getOffset(Position position) {
+		int line = position.getLine();
+		if (line < 0) {
+			return 0;
+		}
+		if (line >= lineCount) {
+			return length;
+		}
+		int lineEnd = line == lineCount - 1 ? length : lineStarts[line + 1] - 1;
+		return Math.min(lineStarts[line] + Math.max(0, position.getCharacter()), lineEnd);
+	}
+
+	public Snapshot getSnapshot() {
+		if (snapshot == null) {
+			snapshot = new Snapshot(pieces.toArray(new Piece[0]), length,
+					new LineOffsets(Arrays.copyOf(lineStarts, lineCount), lineCount, length));
+		}
+		return snapshot;
+	}
+
+	private void updateLineStarts(int start, int end, String text) {
+		// lines that started inside the replaced text are gone, and the ones
+		// after it have moved
+		int removeFrom = upperBoundOfLineStart(start);
+		int removeTo = upperBoundOfLineStart(end);
+		int added = 0;
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+			added++;
+		}
+		int newLineCount = lineCount - (removeTo - removeFrom) + added;
+		ensureLineCapacity(newLineCount);
+		System.arraycopy(lineStarts, removeTo, lineStarts, removeFrom + added, lineCount - removeTo);
+		int delta = text.length() - (end - start);
+		for (int i = removeFrom + added; i < newLineCount; i++) {
+			lineStarts[i] += delta;
+		}
+		lineCount = removeFrom;
+		addLineStarts(text, start);
+		lineCount = newLineCount;
+	}
+
+	private void addLineStarts(String text, int offset) {
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+			ensureLineCapacity(lineCount + 1);
+			lineStarts[lineCount] = offset + i + 1;
+			lineCount++;
+		}
+	}
+
+	private void ensureLineCapacity(int capacity) {
+		if (capacity > lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, Math.max(capacity, lineStarts.length * 2));
+		}
+	}
+
+	private int upperBoundOfLineStart(int offset) {
+		int low = 0;
+		int high = lineCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (lineStarts[mid] <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private void addInsertedText(List<Piece> result, String text) {
+		if (text.length() > 0) {
+			result.add(new Piece(text, 0, text.length()));
+		}
+	}
+}
@@ -0,0 +1,175 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+
+/**
+ * Runs the work of the language server in lanes of different priority, so
+ * that slow background work, like resolving a classpath or compiling for
+ * diagnostics, does not delay the requests that a user is waiting on. Each
+ * lane has its own threads, and the number of threads limits how much of its
+ * work may run at the same time.
+ */
+public class PriorityScheduler {
+	public enum Lane {
+		/**
+		 * Requests made while typing, like completion, signature help and
+		 * hover.
+		 */
+		INTERACTIVE,
+		/**
+		 * Other requests, like definition and references.
+		 */
+		NORMAL,
+		/**
+		 * Background compiles that publish diagnostics.
+		 */
+		DIAGNOSTICS,
+		/**
+		 * Background indexing, like resolving and scanning the classpath.
+		 */
+		INDEXING;
+
+		public boolean isBackground() {
+			return this == DIAGNOSTICS || this == INDEXING;
+		}
+	}
+
+	// background work waits for interactive work to finish, but not forever
+	private static final long MAX_BACKGROUND_WAIT_MS = 1000;
+
+	private final Map<Lane, ThreadPoolExecutor> executors = new EnumMap<>(Lane.class);
+	private final ScheduledExecutorService timer;
+	private final Object interactiveLock = new Object();
+	private int interactiveCount = 0;
+
+	/**
+	 * Work in the background lanes runs one task at a time, so that compiles
+	 * and classpath scans don't compete with each other for memory.
+	 */
+	public PriorityScheduler(int interactiveLimit, int normalLimit) {
+		executors.put(Lane.INTERACTIVE,
+				createExecutor("groovyls-interactive", interactiveLimit, Thread.NORM_PRIORITY + 1));
+		executors.put(Lane.NORMAL, createExecutor("groovyls-request", normalLimit, Thread.NORM_PRIORITY));
+		executors.put(Lane.DIAGNOSTICS, createExecutor("groovyls-compile", 1, Thread.NORM_PRIORITY - 1));
+		executors.put(Lane.INDEXING, createExecutor("groovyls-index", 1, Thread.NORM_PRIORITY - 1));
+		timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "groovyls-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static ThreadPoolExecutor createExecutor(String name, int limit, int priority) {
+		return new ThreadPoolExecutor(limit, limit, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			thread.setPriority(priority);
+			return thread;
+		});
+	}
+
+	public void execute(Lane lane, Runnable task) {
+		ThreadPoolExecutor executor = executors.get(lane);
+		if (lane == Lane.INTERACTIVE) {
+			synchronized (interactiveLock) {
+				interactiveCount++;
+			}
+			executor.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					synchronized (interactiveLock) {
+						interactiveCount--;
+						interactiveLock.notifyAll();
+					}
+				}
+			});
+		} else if (lane.isBackground()) {
+			executor.execute(() -> {
+				awaitInteractiveIdle();
+				task.run();
+			});
+		} else {
+			executor.execute(task);
+		}
+	}
+
+	/**
+	 * Computes a result in a lane. Cancelling the returned future, like lsp4j
+	 * does when the client sends $/cancelRequest, makes the cancel checker
+	 * throw, so that the task can stop early.
+	 */
+	public <T> CompletableFuture<T> compute(Lane lane, Function<CancelChecker, T> task) {
+		return CompletableFutures.computeAsync(runnable -> execute(lane, runnable), task);
+	}
+
+	/**
+	 * Runs a task in a lane after a delay. Cancelling the returned future
+	 * prevents the task from running, if it has not started yet.
+	 */
+	public Future<?> schedule(Lane lane, Runnable task, long delay, TimeUnit unit) {
+		FutureTask<Void> futureTask = new FutureTask<>(task, null);
+		timer.schedule(() -> {
+			if (!futureTask.isCancelled()) {
+				execute(lane, futureTask);
+			}
+		}, delay, unit);
+		return futureTask;
+	}
+
+	public boolean hasInteractiveWork() {
+		synchronized (interactiveLock) {
+			return interactiveCount > 0;
+		}
+	}
+
+	private void awaitInteractiveIdle() {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BACKGROUND_WAIT_MS);
+		synchronized (interactiveLock) {
+			while (interactiveCount > 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(interactiveLock, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+}
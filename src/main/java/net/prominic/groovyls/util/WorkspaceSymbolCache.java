@@ -0,0 +1,257 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolKind;
+import org.eclipse.lsp4j.WorkspaceSymbol;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+/**
+ * Workspace symbols saved to disk, so that they can be searched when the
+ * server starts, before the workspace has been compiled. Symbols are stored
+ * per file with a hash of the file's contents, and files that have changed
+ * since are dropped by revalidate().
+ */
+public class WorkspaceSymbolCache {
+	private static final int MAGIC = 0x47534958;
+	private static final int FORMAT_VERSION = 2;
+
+	private static class FileSymbols {
+		private final long contentHash;
+		private final List<WorkspaceSymbol> symbols;
+
+		private FileSymbols(long contentHash, List<WorkspaceSymbol> symbols) {
+			this.contentHash = contentHash;
+			this.symbols = symbols;
+		}
+	}
+
+	private final long classpathSignature;
+	private volatile Map<URI, FileSymbols> symbolsByURI;
+
+	private WorkspaceSymbolCache(long classpathSignature, Map<URI, FileSymbols> symbolsByURI) {
+		this.classpathSignature = classpathSignature;
+		this.symbolsByURI = symbolsByURI;
+	}
+
+	public boolean isEmpty() {
+		return symbolsByURI.isEmpty();
+	}
+
+	/**
+	 * Returns the locations of the classes with the specified fully qualified
+	 * or simple name, for going to the definition of a class in a file that
+	 * isn't open before the workspace has been compiled.
+	 */
+	public List<Location> findClassDeclarations(String name) {
+		List<Location> result = new ArrayList<>();
+		for (FileSymbols fileSymbols : symbolsByURI.values()) {
+			for (WorkspaceSymbol symbol : fileSymbols.symbols) {
+				// only classes are saved without a container
+				if (symbol.getContainerName() != null) {
+					continue;
+				}
+				String symbolName = symbol.getName();
+				if (symbolName.equals(name) || (symbolName.endsWith(name)
+						&& isNameSeparator(symbolName.charAt(symbolName.length() - name.length() - 1)))) {
+					result.add(symbol.getLocation().getLeft());
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean isNameSeparator(char c) {
+		// the names of inner classes are separated by $
+		return c == '.' || c == '$';
+	}
+
+	public List<WorkspaceSymbol> findSymbols(String query) {
+		String lowerCaseQuery = query.toLowerCase();
+		List<WorkspaceSymbol> result = new ArrayList<>();
+		for (FileSymbols fileSymbols : symbolsByURI.values()) {
+			for (WorkspaceSymbol symbol : fileSymbols.symbols) {
+				if (symbol.getName().toLowerCase().contains(lowerCaseQuery)) {
+					result.add(symbol);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the symbols of files that have changed, or everything if the
+	 * classpath is different. If the classpath isn't known yet, it is not
+	 * checked.
+	 */
+	public void revalidate(FileContentsTracker fileContentsTracker, List<String> classpath) {
+		if (classpath != null && hashClasspath(classpath) != classpathSignature) {
+			symbolsByURI = Collections.emptyMap();
+			return;
+		}
+		Map<URI, FileSymbols> valid = new HashMap<>();
+		for (Map.Entry<URI, FileSymbols> entry : symbolsByURI.entrySet()) {
+			String contents = fileContentsTracker.getContents(entry.getKey());
+			if (contents != null && FileContentsTracker.hashContents(contents) == entry.getValue().contentHash) {
+				valid.put(entry.getKey(), entry.getValue());
+			}
+		}
+		symbolsByURI = valid;
+	}
+
+	public static long hashClasspath(List<String> classpath) {
+		if (classpath == null) {
+			return 0;
+		}
+		return FileContentsTracker.hashContents(String.join(File.pathSeparator, classpath));
+	}
+
+	/**
+	 * Reads a cache file. If the file doesn't exist, or it can't be read, the
+	 * cache is empty.
+	 */
+	public static WorkspaceSymbolCache load(Path cacheFile) {
+		if (!Files.isRegularFile(cacheFile)) {
+			return new WorkspaceSymbolCache(0, Collections.emptyMap());
+		}
+		try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+				return new WorkspaceSymbolCache(0, Collections.emptyMap());
+			}
+			long classpathSignature = buffer.getLong();
+			int fileCount = buffer.getInt();
+			Map<URI, FileSymbols> symbolsByURI = new HashMap<>();
+			for (int i = 0; i < fileCount; i++) {
+				URI uri = URI.create(readString(buffer));
+				long contentHash = buffer.getLong();
+				int symbolCount = buffer.getInt();
+				List<WorkspaceSymbol> symbols = new ArrayList<>(symbolCount);
+				for (int j = 0; j < symbolCount; j++) {
+					WorkspaceSymbol symbol = new WorkspaceSymbol();
+					symbol.setName(readString(buffer));
+					symbol.setKind(SymbolKind.forValue(buffer.get()));
+					String containerName = readString(buffer);
+					symbol.setContainerName(containerName.isEmpty() ? null : containerName);
+					Range range = new Range(new Position(buffer.getInt(), buffer.getInt()),
+							new Position(buffer.getInt(), buffer.getInt()));
+					symbol.setLocation(Either.forLeft(new Location(uri.toString(), range)));
+					symbols.add(symbol);
+				}
+				symbolsByURI.put(uri, new FileSymbols(contentHash, symbols));
+			}
+			return new WorkspaceSymbolCache(classpathSignature, symbolsByURI);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read symbol cache: " + cacheFile);
+			return new WorkspaceSymbolCache(0, Collections.emptyMap());
+		}
+	}
+
+	/**
+	 * Writes the symbols of a workspace to a cache file. The file is replaced
+	 * at the end, so a cache that is being loaded is never partially written.
+	 */
+	public static void save(Path cacheFile, List<String> classpath, Map<URI, Long> contentHashes,
+			List<WorkspaceSymbol> symbols) throws IOException {
+		Map<URI, List<WorkspaceSymbol>> symbolsByURI = new LinkedHashMap<>();
+		for (URI uri : contentHashes.keySet()) {
+			symbolsByURI.put(uri, new ArrayList<>());
+		}
+		for (WorkspaceSymbol symbol : symbols) {
+			if (symbol.getLocation() == null || !symbol.getLocation().isLeft()) {
+				continue;
+			}
+			URI uri = URI.create(symbol.getLocation().getLeft().getUri());
+			List<WorkspaceSymbol> fileSymbols = symbolsByURI.get(uri);
+			if (fileSymbols != null) {
+				fileSymbols.add(symbol);
+			}
+		}
+		Files.createDirectories(cacheFile.getParent());
+		Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(FORMAT_VERSION);
+				output.writeLong(hashClasspath(classpath));
+				output.writeInt(symbolsByURI.size());
+				for (Map.Entry<URI, List<WorkspaceSymbol>> entry : symbolsByURI.entrySet()) {
+					writeString(output, entry.getKey().toString());
+					output.writeLong(contentHashes.get(entry.getKey()));
+					output.writeInt(entry.getValue().size());
+					for (WorkspaceSymbol symbol : entry.getValue()) {
+						writeString(output, symbol.getName());
+						output.writeByte(symbol.getKind().getValue());
+						writeString(output, symbol.getContainerName() != null ? symbol.getContainerName() : "");
+						Range range = symbol.getLocation().getLeft().getRange();
+						output.writeInt(range.getStart().getLine());
+						output.writeInt(range.getStart().getCharacter());
+						output.writeInt(range.getEnd().getLine());
+						output.writeInt(range.getEnd().getCharacter());
+					}
+				}
+			}
+			try {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
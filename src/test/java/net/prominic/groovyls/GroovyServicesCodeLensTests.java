@@ -117,8 +117,10 @@ class GroovyServicesCodeLensTests {
 		Assertions.assertNotNull(lenses);
 		Assertions.assertFalse(lenses.isEmpty(), "Should have code lenses for class and method");
 
-		// Check that lenses have commands
+		// Check that lenses have commands once resolved
 		for (CodeLens lens : lenses) {
+			Assertions.assertNull(lens.getCommand(), "Code lens should be resolved lazily");
+			lens = services.resolveCodeLens(lens).get();
 			Assertions.assertNotNull(lens.getCommand(), "Code lens should have a command");
 			Assertions.assertTrue(lens.getCommand().getTitle().contains("reference"), 
 				"Command title should mention references");
@@ -159,10 +161,16 @@ class GroovyServicesCodeLensTests {
 		Assertions.assertFalse(lenses.isEmpty(), "Should have code lenses");
 
 		// Find the lens for myMethod
-		boolean foundMethodLens = lenses.stream()
-				.anyMatch(lens -> lens.getCommand().getTitle().contains("reference"));
-		
-		Assertions.assertTrue(foundMethodLens, "Should have a code lens showing references");
+		CodeLens methodLens = null;
+		for (CodeLens lens : lenses) {
+			if (lens.getRange().getStart().getLine() == 3) {
+				methodLens = services.resolveCodeLens(lens).get();
+			}
+		}
+
+		Assertions.assertNotNull(methodLens, "Should have a code lens for myMethod");
+		Assertions.assertTrue(methodLens.getCommand().getTitle().endsWith(" references"),
+				"Should have a code lens showing references");
 	}
 
 	@Test
@@ -186,6 +194,7 @@ class GroovyServicesCodeLensTests {
 		
 		// All lenses should have commands with reference text
 		for (CodeLens lens : lenses) {
+			lens = services.resolveCodeLens(lens).get();
 			Assertions.assertNotNull(lens.getCommand());
 			String title = lens.getCommand().getTitle();
 			Assertions.assertTrue(title.contains("reference"), "Should contain 'reference' text");
@@ -22,6 +22,7 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -30,14 +31,17 @@ import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionItemKind;
 import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
@@ -128,6 +132,62 @@ class GroovyServicesCompletionTests {
 		Assertions.assertEquals(1, filteredItems.size());
 	}
 
+	@Test
+	void testMemberAccessAfterChangeBeforeCompileFinishes() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1,
+				"class Completion {\n  public Completion() {\n  }\n}");
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		services.completion(new CompletionParams(textDocument, new Position(1, 0))).get();
+
+		// the file is compiled again for completion, without waiting for the
+		// background compile of the change
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("class Completion {\n  public Completion() {\n    String localVar\n    localVar.\n  }\n}");
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(uri, 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, new Position(3, 13))).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> filteredItems = result.getLeft().stream().filter(item -> {
+			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
+		}).collect(Collectors.toList());
+		Assertions.assertEquals(1, filteredItems.size());
+	}
+
+	@Test
+	void testMemberAccessOnClassFromOtherFileAfterDot() throws Exception {
+		Path otherFilePath = srcRoot.resolve("CompletionOther.groovy");
+		String otherUri = otherFilePath.toUri().toString();
+		TextDocumentItem otherTextDocumentItem = new TextDocumentItem(otherUri, LANGUAGE_GROOVY, 1,
+				"class CompletionOther {\n  def otherMethod() {}\n}");
+		services.didOpen(new DidOpenTextDocumentParams(otherTextDocumentItem));
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    CompletionOther localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(3, 13);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> filteredItems = result.getLeft().stream().filter(item -> {
+			return item.getLabel().equals("otherMethod") && item.getKind().equals(CompletionItemKind.Method);
+		}).collect(Collectors.toList());
+		Assertions.assertEquals(1, filteredItems.size());
+	}
+
 	@Test
 	void testMemberAccessOnGStringAfterDot() throws Exception {
 		Path filePath = srcRoot.resolve("Completion.groovy");
@@ -22,10 +22,12 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.lsp4j.DefinitionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.MessageActionItem;
@@ -33,8 +35,10 @@ import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -539,4 +543,50 @@ class GroovyServicesDefinitionTests {
 		Assertions.assertEquals(5, location.getRange().getEnd().getLine());
 		Assertions.assertEquals(21, location.getRange().getEnd().getCharacter());
 	}
+
+	@Test
+	void testMemberMethodDefinitionInOtherFileAfterMethodBodyChanged() throws Exception {
+		Path definitionPath = srcRoot.resolve("DefinitionsOther.groovy");
+		String definitionUri = definitionPath.toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(definitionUri, LANGUAGE_GROOVY, 1,
+				"class DefinitionsOther {\n  public void memberMethod() {}\n}\n")));
+		Path filePath = srcRoot.resolve("Definitions.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Definitions {\n");
+		contents.append("  public Definitions() {\n");
+		contents.append("    DefinitionsOther other\n");
+		contents.append("    other.memberMethod()\n");
+		contents.append("  }\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(3, 12);
+		List<? extends Location> locations = services.definition(new DefinitionParams(textDocument, position)).get()
+				.getLeft();
+		Assertions.assertEquals(1, locations.size());
+		Assertions.assertEquals(definitionUri, locations.get(0).getUri());
+		Assertions.assertEquals(1, locations.get(0).getRange().getStart().getLine());
+
+		// the API of the other file stays the same, so this file isn't
+		// parsed again
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("class DefinitionsOther {\n\n  public void memberMethod() { println 1 }\n}\n");
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(definitionUri, 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+		long deadline = System.currentTimeMillis() + 5000;
+		do {
+			Thread.sleep(10);
+			locations = services.definition(new DefinitionParams(textDocument, position)).get().getLeft();
+		} while ((locations.size() != 1 || !locations.get(0).getUri().equals(definitionUri)
+				|| locations.get(0).getRange().getStart().getLine() != 2) && System.currentTimeMillis() < deadline);
+		Assertions.assertEquals(1, locations.size());
+		Location location = locations.get(0);
+		Assertions.assertEquals(definitionUri, location.getUri());
+		Assertions.assertEquals(2, location.getRange().getStart().getLine());
+		Assertions.assertEquals(2, location.getRange().getStart().getCharacter());
+	}
 }
\ No newline at end of file
@@ -19,23 +19,36 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls;
 
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeConfigurationParams;
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.HoverParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.services.LanguageClient;
@@ -44,6 +57,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import net.prominic.groovyls.compiler.ast.ASTSnapshot;
 import net.prominic.groovyls.config.CompilationUnitFactory;
 
 class GroovyServicesDiagnosticsTests {
@@ -57,6 +71,12 @@ class GroovyServicesDiagnosticsTests {
 	private AtomicInteger publishCount;
 	private AtomicReference<PublishDiagnosticsParams> lastDiagnostics;
 	private CountDownLatch publishLatch;
+	private Map<String, PublishDiagnosticsParams> diagnosticsByUri;
+	// the snapshots with diagnostics for Diagnostics.groovy
+	private URI diagnosticsURI;
+	private List<ASTSnapshot> snapshotsWithDiagnostics;
+	private CountDownLatch snapshotLatch;
+	private Map<String, CountDownLatch> syntaxPublishLatches;
 
 	@BeforeEach
 	void setup() {
@@ -69,9 +89,20 @@ class GroovyServicesDiagnosticsTests {
 		publishCount = new AtomicInteger();
 		lastDiagnostics = new AtomicReference<>();
 		publishLatch = new CountDownLatch(1);
+		diagnosticsByUri = new ConcurrentHashMap<>();
+		diagnosticsURI = srcRoot.resolve("Diagnostics.groovy").toUri();
+		snapshotsWithDiagnostics = new CopyOnWriteArrayList<>();
+		snapshotLatch = new CountDownLatch(1);
+		syntaxPublishLatches = new ConcurrentHashMap<>();
 
 		services = new GroovyServices(new CompilationUnitFactory());
 		services.setWorkspaceRoot(workspaceRoot);
+		services.setSnapshotListener(snapshot -> {
+			if (!snapshot.getDiagnostics(diagnosticsURI).isEmpty()) {
+				snapshotsWithDiagnostics.add(snapshot);
+				snapshotLatch.countDown();
+			}
+		});
 		services.connect(new LanguageClient() {
 
 			@Override
@@ -92,6 +123,14 @@ class GroovyServicesDiagnosticsTests {
 			@Override
 			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
 				lastDiagnostics.set(diagnostics);
+				diagnosticsByUri.put(diagnostics.getUri(), diagnostics);
+				CountDownLatch syntaxLatch = syntaxPublishLatches.get(diagnostics.getUri());
+				if (syntaxLatch != null && diagnostics.getDiagnostics().stream()
+						.anyMatch(diag -> "Undefined variable: missingVar".equals(diag.getMessage()))
+						&& diagnostics.getDiagnostics().stream()
+								.anyMatch(diag -> diag.getMessage().startsWith("Unexpected input"))) {
+					syntaxLatch.countDown();
+				}
 				publishCount.incrementAndGet();
 				publishLatch.countDown();
 			}
@@ -137,13 +176,40 @@ class GroovyServicesDiagnosticsTests {
 		changeParams2.setContentChanges(Collections.singletonList(changeEvent2));
 		services.didChange(changeParams2);
 
-		boolean published = publishLatch.await(2, TimeUnit.SECONDS);
+		// syntax errors may be published before the semantic diagnostics, so
+		// only the snapshots of the semantic compile are counted
+		boolean published = snapshotLatch.await(2, TimeUnit.SECONDS);
 		Assertions.assertTrue(published, "Expected diagnostics to be published");
-		Assertions.assertEquals(1, publishCount.get(), "Expected debounced diagnostics to publish once");
-		PublishDiagnosticsParams diagnostics = lastDiagnostics.get();
-		Assertions.assertNotNull(diagnostics);
-		Assertions.assertEquals(uri, diagnostics.getUri());
-		Assertions.assertFalse(diagnostics.getDiagnostics().isEmpty());
+		Assertions.assertEquals(1, snapshotsWithDiagnostics.size(), "Expected debounced diagnostics to publish once");
+		List<Diagnostic> diagnostics = snapshotsWithDiagnostics.get(0).getDiagnostics(diagnosticsURI);
+		Assertions.assertFalse(diagnostics.isEmpty());
+	}
+
+	@Test
+	void testSyntaxErrorsPublishedWithLastInspections() throws Exception {
+		String uri = srcRoot.resolve("Diagnostics.groovy").toUri().toString();
+		String source = String.join("\n",
+				"class Diagnostics {",
+				"  void testMethod() {",
+				"    missingVar",
+				"  }",
+				"}");
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, source)));
+		boolean published = snapshotLatch.await(2, TimeUnit.SECONDS);
+		Assertions.assertTrue(published, "Expected diagnostics to be published");
+
+		// the semantic compile can't find undefined variables in a file with
+		// syntax errors, so only the syntax check publishes both
+		CountDownLatch syntaxLatch = new CountDownLatch(1);
+		syntaxPublishLatches.put(uri, syntaxLatch);
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText(source.replace("  }\n}", "  }\n  def x = \n}"));
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(uri, 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+		Assertions.assertTrue(syntaxLatch.await(2, TimeUnit.SECONDS),
+				"Expected syntax errors to be published with the last inspection results");
 	}
 
 	@Test
@@ -219,4 +285,160 @@ class GroovyServicesDiagnosticsTests {
 		Assertions.assertTrue(diagnostics.getDiagnostics().stream()
 				.anyMatch(diag -> "Simplify boolean comparison".equals(diag.getMessage())));
 	}
+
+	@Test
+	void testDiagnosticsKeptForUnchangedFile() throws Exception {
+		String uri = srcRoot.resolve("Diagnostics.groovy").toUri().toString();
+		String source = String.join("\n",
+				"class Diagnostics {",
+				"  void testMethod() {",
+				"    missingVar",
+				"  }",
+				"}");
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, source)));
+		String otherUri = srcRoot.resolve("Other.groovy").toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(otherUri, LANGUAGE_GROOVY, 1, "class Other { }")));
+		boolean published = publishLatch.await(2, TimeUnit.SECONDS);
+		Assertions.assertTrue(published, "Expected diagnostics to be published");
+
+		diagnosticsByUri.clear();
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("class Other { def x = 1 }");
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(otherUri, 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+
+		PublishDiagnosticsParams diagnostics = awaitDiagnostics(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics for the unchanged file to be published again");
+		Assertions.assertTrue(diagnostics.getDiagnostics().stream()
+				.anyMatch(diag -> "Undefined variable: missingVar".equals(diag.getMessage())));
+	}
+
+	@Test
+	void testInspectionsReusedWhenUnrelatedClassIsAdded() throws Exception {
+		String uri = srcRoot.resolve("Diagnostics.groovy").toUri().toString();
+		String source = String.join("\n",
+				"class Diagnostics {",
+				"  void testMethod() {",
+				"    missingVar",
+				"  }",
+				"}");
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, source)));
+		PublishDiagnosticsParams diagnostics = awaitDiagnostics(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics to be published");
+		Diagnostic undefinedVariable = diagnostics.getDiagnostics().stream()
+				.filter(diag -> "Undefined variable: missingVar".equals(diag.getMessage())).findFirst().orElse(null);
+		Assertions.assertNotNull(undefinedVariable);
+
+		diagnosticsByUri.clear();
+		String otherUri = srcRoot.resolve("Other.groovy").toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(otherUri, LANGUAGE_GROOVY, 1, "class Other { }")));
+
+		diagnostics = awaitDiagnostics(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics for the unchanged file to be published again");
+		Assertions.assertTrue(diagnostics.getDiagnostics().stream().anyMatch(diag -> diag == undefinedVariable),
+				"Expected the unchanged file not to be inspected again");
+	}
+
+	@Test
+	void testUndefinedVariableInspectedAgainWhenClassIsAdded() throws Exception {
+		String uri = srcRoot.resolve("Diagnostics.groovy").toUri().toString();
+		String source = String.join("\n",
+				"class Diagnostics {",
+				"  void testMethod() {",
+				"    println DiagnosticsMissing",
+				"  }",
+				"}");
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, source)));
+		PublishDiagnosticsParams diagnostics = awaitDiagnostics(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics to be published");
+		Assertions.assertTrue(diagnostics.getDiagnostics().stream()
+				.anyMatch(diag -> "Undefined variable: DiagnosticsMissing".equals(diag.getMessage())));
+
+		diagnosticsByUri.clear();
+		String otherUri = srcRoot.resolve("DiagnosticsMissing.groovy").toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(otherUri, LANGUAGE_GROOVY, 1, "class DiagnosticsMissing { }")));
+
+		diagnostics = awaitDiagnostics(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics for the unchanged file to be published again");
+		Assertions.assertFalse(diagnostics.getDiagnostics().stream()
+				.anyMatch(diag -> "Undefined variable: DiagnosticsMissing".equals(diag.getMessage())));
+	}
+
+	@Test
+	void testInspectionsRunAgainForTextWithSameHashCode() throws Exception {
+		String uri = srcRoot.resolve("Diagnostics.groovy").toUri().toString();
+		String source = String.join("\n",
+				"class Diagnostics {",
+				"  void testMethod() {",
+				"    def Aa = 1",
+				"    println Aa",
+				"  }",
+				"}");
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, source)));
+		services.hover(new HoverParams(new TextDocumentIdentifier(uri), new Position(0, 6))).get();
+
+		// "Aa" and "BB" have the same String.hashCode(), and so do the texts
+		String changedSource = source.replace("println Aa", "println BB");
+		Assertions.assertEquals(source.hashCode(), changedSource.hashCode());
+		diagnosticsByUri.clear();
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText(changedSource);
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(uri, 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+
+		PublishDiagnosticsParams diagnostics = awaitDiagnostics(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics for the changed file to be published");
+		Assertions.assertTrue(diagnostics.getDiagnostics().stream()
+				.anyMatch(diag -> "Undefined variable: BB".equals(diag.getMessage())));
+	}
+
+	@Test
+	void testDisabledInspection() throws Exception {
+		String uri = srcRoot.resolve("Diagnostics.groovy").toUri().toString();
+		String source = String.join("\n",
+				"class Diagnostics {",
+				"  void testMethod() {",
+				"    missingVar",
+				"    def flag = true == true",
+				"  }",
+				"}");
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, source)));
+		boolean published = publishLatch.await(2, TimeUnit.SECONDS);
+		Assertions.assertTrue(published, "Expected diagnostics to be published");
+
+		diagnosticsByUri.clear();
+		JsonObject inspections = new JsonObject();
+		JsonArray disabled = new JsonArray();
+		disabled.add("undefinedVariable");
+		inspections.add("disabled", disabled);
+		JsonObject groovy = new JsonObject();
+		groovy.add("inspections", inspections);
+		JsonObject settings = new JsonObject();
+		settings.add("groovy", groovy);
+		services.didChangeConfiguration(new DidChangeConfigurationParams(settings));
+
+		PublishDiagnosticsParams diagnostics = diagnosticsByUri.get(uri);
+		Assertions.assertNotNull(diagnostics, "Expected diagnostics to be published again");
+		Assertions.assertFalse(diagnostics.getDiagnostics().stream()
+				.anyMatch(diag -> diag.getMessage().startsWith("Undefined variable")));
+		Assertions.assertTrue(diagnostics.getDiagnostics().stream()
+				.anyMatch(diag -> "Simplify boolean comparison".equals(diag.getMessage())));
+	}
+
+	// reads don't wait for the pending compile, so this waits for the
+	// background compile to publish the diagnostics of the file
+	private PublishDiagnosticsParams awaitDiagnostics(String uri) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 2000;
+		while (!diagnosticsByUri.containsKey(uri) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		return diagnosticsByUri.get(uri);
+	}
 }
@@ -0,0 +1,213 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ReferenceContext;
+import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesReferencesTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+	}
+
+	@Test
+	void testReferencesToMethodInOtherFile() throws Exception {
+		String classText = "class ReferencesDefinition {\n" +
+				"    def referencedMethod() { }\n" +
+				"}\n";
+		String usageText = "class ReferencesUsage {\n" +
+				"    def test() {\n" +
+				"        def obj = new ReferencesDefinition()\n" +
+				"        obj.referencedMethod()\n" +
+				"        obj.referencedMethod()\n" +
+				"    }\n" +
+				"}\n";
+
+		Path classPath = srcRoot.resolve("ReferencesDefinition.groovy");
+		Path usagePath = srcRoot.resolve("ReferencesUsage.groovy");
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(classPath.toUri().toString(), LANGUAGE_GROOVY, 1, classText)));
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(usagePath.toUri().toString(), LANGUAGE_GROOVY, 1, usageText)));
+
+		ReferenceParams params = new ReferenceParams(new TextDocumentIdentifier(classPath.toUri().toString()),
+				new Position(1, 10), new ReferenceContext(true));
+		List<? extends Location> locations = services.references(params).get();
+
+		long usageLineCount = locations.stream()
+				.filter(location -> location.getUri().equals(usagePath.toUri().toString()))
+				.map(location -> location.getRange().getStart().getLine()).distinct().count();
+		Assertions.assertEquals(2, usageLineCount, "Should find both calls in the other file");
+		Assertions.assertTrue(locations.stream()
+				.anyMatch(location -> location.getUri().equals(classPath.toUri().toString())
+						&& location.getRange().getStart().getLine() == 1),
+				"Should include the declaration");
+	}
+
+	@Test
+	void testReferencesToMethodInOtherFileAfterMethodBodyChanged() throws Exception {
+		String classText = "class ReferencesDefinition {\n" +
+				"    def referencedMethod() { }\n" +
+				"}\n";
+		String usageText = "class ReferencesUsage {\n" +
+				"    def test() {\n" +
+				"        new ReferencesDefinition().referencedMethod()\n" +
+				"    }\n" +
+				"}\n";
+
+		Path classPath = srcRoot.resolve("ReferencesDefinition.groovy");
+		Path usagePath = srcRoot.resolve("ReferencesUsage.groovy");
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(classPath.toUri().toString(), LANGUAGE_GROOVY, 1, classText)));
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(usagePath.toUri().toString(), LANGUAGE_GROOVY, 1, usageText)));
+		ReferenceParams params = new ReferenceParams(new TextDocumentIdentifier(classPath.toUri().toString()),
+				new Position(1, 10), new ReferenceContext(true));
+		services.references(params).get();
+
+		// only the method body changes, and the method moves to the next line
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("class ReferencesDefinition {\n\n    def referencedMethod() { 1 }\n}\n");
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(classPath.toUri().toString(), 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+		ReferenceParams changedParams = new ReferenceParams(new TextDocumentIdentifier(classPath.toUri().toString()),
+				new Position(2, 10), new ReferenceContext(true));
+		List<? extends Location> locations;
+		long deadline = System.currentTimeMillis() + 5000;
+		do {
+			Thread.sleep(10);
+			locations = services.references(changedParams).get();
+		} while (locations.stream().noneMatch(location -> location.getUri().equals(usagePath.toUri().toString()))
+				&& System.currentTimeMillis() < deadline);
+
+		Assertions.assertTrue(locations.stream()
+				.anyMatch(location -> location.getUri().equals(usagePath.toUri().toString())
+						&& location.getRange().getStart().getLine() == 2),
+				"Should find the call in the other file");
+		Assertions.assertTrue(locations.stream()
+				.anyMatch(location -> location.getUri().equals(classPath.toUri().toString())
+						&& location.getRange().getStart().getLine() == 2),
+				"Should include the declaration");
+	}
+
+	@Test
+	void testReferencesToLocalVariable() throws Exception {
+		String sourceText = "class ReferencesLocalVariable {\n" +
+				"    def test() {\n" +
+				"        def counter = 1\n" +
+				"        counter++\n" +
+				"        println counter\n" +
+				"    }\n" +
+				"    def other() {\n" +
+				"        def counter = 2\n" +
+				"    }\n" +
+				"}\n";
+
+		Path filePath = srcRoot.resolve("ReferencesLocalVariable.groovy");
+		URI uri = filePath.toUri();
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, sourceText)));
+
+		ReferenceParams params = new ReferenceParams(new TextDocumentIdentifier(uri.toString()),
+				new Position(3, 9), new ReferenceContext(true));
+		List<? extends Location> locations = services.references(params).get();
+
+		Assertions.assertEquals(3, locations.size(), "Should find the declaration and both usages");
+		Assertions.assertTrue(locations.stream().allMatch(location -> location.getRange().getStart().getLine() < 6),
+				"Should not include the variable with the same name in another method");
+	}
+}
@@ -22,21 +22,26 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.ParameterInformation;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureHelpParams;
 import org.eclipse.lsp4j.SignatureInformation;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -187,4 +192,41 @@ class GroovyServicesSignatureHelpTests {
 		Assertions.assertEquals((int) 0, (int) signatureHelp.getActiveSignature());
 		Assertions.assertEquals((int) 1, (int) signatureHelp.getActiveParameter());
 	}
+
+	@Test
+	void testSignatureHelpAfterChangeBeforeCompileFinishes() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class SignatureHelp {\n");
+		contents.append("  public SignatureHelp() {\n");
+		contents.append("    Other other\n");
+		contents.append("  }\n");
+		contents.append("}\n");
+		contents.append("class Other {\n");
+		contents.append("  public void method(int param0, String param1) {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		services.signatureHelp(new SignatureHelpParams(textDocument, new Position(2, 0))).get();
+
+		// the call is found in the text, without waiting for the background
+		// compile of the change
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setRange(new Range(new Position(2, 15), new Position(2, 15)));
+		changeEvent.setText("\n    other.method(123, [1, 2], ");
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier(uri, 2));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		services.didChange(changeParams);
+		Position position = new Position(3, 30);
+		SignatureHelp signatureHelp = services.signatureHelp(new SignatureHelpParams(textDocument, position)).get();
+		List<SignatureInformation> signatures = signatureHelp.getSignatures();
+		Assertions.assertEquals(1, signatures.size());
+		SignatureInformation signature = signatures.get(0);
+		Assertions.assertEquals("public void method(int param0, String param1)", signature.getLabel());
+		Assertions.assertEquals((int) 0, (int) signatureHelp.getActiveSignature());
+		Assertions.assertEquals((int) 2, (int) signatureHelp.getActiveParameter());
+	}
 }
\ No newline at end of file
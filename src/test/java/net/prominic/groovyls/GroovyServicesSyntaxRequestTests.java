@@ -0,0 +1,193 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.codehaus.groovy.control.Phases;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.FoldingRange;
+import org.eclipse.lsp4j.FoldingRangeRequestParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.SelectionRange;
+import org.eclipse.lsp4j.SelectionRangeParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.config.CompilationUnitFactory;
+import net.prominic.groovyls.providers.DocumentSymbolProvider;
+import net.prominic.groovyls.providers.FoldingRangeProvider;
+import net.prominic.groovyls.providers.SelectionRangeProvider;
+import net.prominic.groovyls.util.FileContentsTracker;
+
+/**
+ * Document symbols, folding ranges and selection ranges of open files are
+ * provided by parsing the file on its own, without resolving it. These tests
+ * compare the results with those of the whole compilation.
+ */
+class GroovyServicesSyntaxRequestTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+	private static final String SOURCE = String.join("\n",
+			"package syntax",
+			"",
+			"import java.util.concurrent.atomic.AtomicInteger",
+			"",
+			"/**",
+			" * A class with a bit of everything.",
+			" */",
+			"class SyntaxRequest extends ArrayList<String> implements Runnable {",
+			"  private AtomicInteger counter = new AtomicInteger()",
+			"  String name",
+			"",
+			"  SyntaxRequest(String name) {",
+			"    this.name = name",
+			"  }",
+			"",
+			"  void run() {",
+			"    [1, 2, 3].each { value ->",
+			"      if (value > 1) {",
+			"        counter.addAndGet(value)",
+			"      }",
+			"    }",
+			"  }",
+			"",
+			"  static class Inner {",
+			"    def call(Map<String, Object> args) {",
+			"      return args.size()",
+			"    }",
+			"  }",
+			"}",
+			"",
+			"enum SyntaxKind {",
+			"  ONE, TWO",
+			"}");
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+	}
+
+	@Test
+	void testSyntaxRequestsMatchCompiledResults() throws Exception {
+		URI uri = srcRoot.resolve("SyntaxRequest.groovy").toUri();
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri.toString());
+		services.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, SOURCE)));
+		ASTNodeVisitor compiled = compile(uri);
+		List<Position> positions = Arrays.asList(new Position(8, 30), new Position(18, 20), new Position(25, 15),
+				new Position(31, 5));
+
+		List<Either<SymbolInformation, DocumentSymbol>> symbols = services
+				.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+		Assertions.assertFalse(symbols.isEmpty());
+		Assertions.assertEquals(new DocumentSymbolProvider(compiled).provideDocumentSymbols(textDocument).get(),
+				symbols);
+
+		List<FoldingRange> foldingRanges = services.foldingRange(new FoldingRangeRequestParams(textDocument)).get();
+		Assertions.assertFalse(foldingRanges.isEmpty());
+		Assertions.assertEquals(new FoldingRangeProvider(compiled).provideFoldingRanges(textDocument).get(),
+				foldingRanges);
+
+		List<SelectionRange> selectionRanges = services
+				.selectionRange(new SelectionRangeParams(textDocument, positions)).get();
+		Assertions.assertEquals(positions.size(), selectionRanges.size());
+		Assertions.assertEquals(
+				new SelectionRangeProvider(compiled).provideSelectionRanges(textDocument, positions).get(),
+				selectionRanges);
+	}
+
+	private ASTNodeVisitor compile(URI uri) {
+		FileContentsTracker tracker = new FileContentsTracker();
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, SOURCE)));
+		GroovyLSCompilationUnit unit = new CompilationUnitFactory().create(workspaceRoot, tracker);
+		tracker.resetChangedFiles();
+		unit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(unit);
+		return visitor;
+	}
+}
@@ -19,14 +19,23 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls;
 
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+import org.eclipse.lsp4j.DefinitionParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.WorkspaceSymbol;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
@@ -35,6 +44,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import net.prominic.groovyls.config.CompilationUnitFactory;
 
@@ -107,4 +117,70 @@ class GroovyServicesWorkspaceSymbolTests {
 		List<? extends WorkspaceSymbol> symbols = result.getRight();
 		Assertions.assertTrue(symbols.stream().anyMatch(symbol -> "index.gsp".equals(symbol.getName())));
 	}
+
+	@Test
+	void testWorkspaceSymbolsFromCacheBeforeCompile(@TempDir Path tempWorkspaceRoot, @TempDir Path cacheDirectory)
+			throws Exception {
+		saveSymbolCache(tempWorkspaceRoot, cacheDirectory);
+
+		GroovyServices secondServices = new GroovyServices(new CompilationUnitFactory());
+		AtomicInteger snapshotCount = new AtomicInteger();
+		secondServices.setSnapshotListener(snapshot -> snapshotCount.incrementAndGet());
+		secondServices.setSymbolCacheDirectory(cacheDirectory);
+		secondServices.setWorkspaceRoot(tempWorkspaceRoot);
+		Either<List<? extends org.eclipse.lsp4j.SymbolInformation>, List<? extends WorkspaceSymbol>> result = secondServices
+				.symbol(new WorkspaceSymbolParams("cachedMethod")).get();
+		Assertions.assertEquals(0, snapshotCount.get(), "Expected an answer before the workspace was compiled");
+		List<? extends WorkspaceSymbol> symbols = result.getRight();
+		Assertions.assertTrue(symbols.stream().anyMatch(
+				symbol -> "cachedMethod".equals(symbol.getName()) && "Cached".equals(symbol.getContainerName())));
+	}
+
+	@Test
+	void testDefinitionFromCacheBeforeCompile(@TempDir Path tempWorkspaceRoot, @TempDir Path cacheDirectory)
+			throws Exception {
+		saveSymbolCache(tempWorkspaceRoot, cacheDirectory);
+
+		GroovyServices secondServices = new GroovyServices(new CompilationUnitFactory());
+		AtomicInteger snapshotCount = new AtomicInteger();
+		secondServices.setSnapshotListener(snapshot -> snapshotCount.incrementAndGet());
+		secondServices.setSymbolCacheDirectory(cacheDirectory);
+		secondServices.setWorkspaceRoot(tempWorkspaceRoot);
+		Path usagePath = tempWorkspaceRoot.resolve("src/main/groovy/Usage.groovy");
+		String usageUri = usagePath.toUri().toString();
+		secondServices.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(usageUri, "groovy", 1, "class Usage {\n  Cached cached\n}\n")));
+		List<? extends Location> locations = secondServices
+				.definition(new DefinitionParams(new TextDocumentIdentifier(usageUri), new Position(1, 4))).get()
+				.getLeft();
+		Assertions.assertEquals(0, snapshotCount.get(), "Expected an answer before the workspace was compiled");
+		Assertions.assertEquals(1, locations.size());
+		Location location = locations.get(0);
+		Assertions.assertEquals(tempWorkspaceRoot.resolve("src/main/groovy/Cached.groovy"),
+				Paths.get(URI.create(location.getUri())));
+		Assertions.assertEquals(0, location.getRange().getStart().getLine());
+		Assertions.assertEquals(0, location.getRange().getStart().getCharacter());
+	}
+
+	private void saveSymbolCache(Path tempWorkspaceRoot, Path cacheDirectory) throws Exception {
+		Path srcRoot = tempWorkspaceRoot.resolve("src/main/groovy");
+		Files.createDirectories(srcRoot);
+		Files.writeString(srcRoot.resolve("Cached.groovy"), "class Cached {\n  def cachedMethod() {}\n}\n");
+
+		GroovyServices firstServices = new GroovyServices(new CompilationUnitFactory());
+		firstServices.setSymbolCacheDirectory(cacheDirectory);
+		firstServices.setWorkspaceRoot(tempWorkspaceRoot);
+		firstServices.symbol(new WorkspaceSymbolParams("Cached")).get();
+		// the cache is saved in the background after the workspace is visited
+		for (int i = 0; i < 100 && isDirectoryEmpty(cacheDirectory); i++) {
+			Thread.sleep(100);
+		}
+		Assertions.assertFalse(isDirectoryEmpty(cacheDirectory), "Expected symbol cache to be saved");
+	}
+
+	private boolean isDirectoryEmpty(Path directory) throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.noneMatch(file -> file.getFileName().toString().endsWith(".symbols"));
+		}
+	}
 }
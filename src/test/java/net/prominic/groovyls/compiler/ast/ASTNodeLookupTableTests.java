@@ -0,0 +1,142 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+class ASTNodeLookupTableTests {
+	@Test
+	void testNodesAreComparedByIdentity() {
+		ASTNodeLookupTable table = new ASTNodeLookupTable();
+		URI uri = URI.create("file:///Lookup.groovy");
+		// ClassNode.equals() compares names
+		ClassNode first = new ClassNode("Lookup", 0, ClassHelper.OBJECT_TYPE);
+		ClassNode second = new ClassNode("Lookup", 0, ClassHelper.OBJECT_TYPE);
+		table.put(first, null, uri);
+		Assertions.assertTrue(table.containsNode(first));
+		Assertions.assertFalse(table.containsNode(second));
+		Assertions.assertEquals(uri, table.getURI(first));
+		Assertions.assertNull(table.getURI(second));
+	}
+
+	@Test
+	void testRemoveKeepsOtherEntriesReachable() {
+		ASTNodeLookupTable table = new ASTNodeLookupTable();
+		URI uri = URI.create("file:///Lookup.groovy");
+		List<ASTNode> nodes = new ArrayList<>();
+		ASTNode parent = null;
+		for (int i = 0; i < 10000; i++) {
+			ASTNode node = new ConstantExpression(i);
+			table.put(node, parent, uri);
+			nodes.add(node);
+			parent = node;
+		}
+		for (int i = 0; i < nodes.size(); i += 2) {
+			table.remove(nodes.get(i));
+		}
+		Assertions.assertEquals(nodes.size() / 2, table.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			ASTNode node = nodes.get(i);
+			if (i % 2 == 0) {
+				Assertions.assertFalse(table.containsNode(node));
+				Assertions.assertNull(table.getParent(node));
+			} else {
+				Assertions.assertSame(nodes.get(i - 1), table.getParent(node));
+				Assertions.assertSame(uri, table.getURI(node));
+			}
+		}
+	}
+
+	@Test
+	void testCopyIsIndependent() {
+		ASTNodeLookupTable table = new ASTNodeLookupTable();
+		URI uri = URI.create("file:///Lookup.groovy");
+		ASTNode node = new ConstantExpression("node");
+		table.put(node, null, uri);
+		ASTNodeLookupTable copy = table.copy();
+		copy.remove(node);
+		Assertions.assertTrue(table.containsNode(node));
+		Assertions.assertFalse(copy.containsNode(node));
+	}
+
+	@Test
+	void testLookupsDoNotAllocate() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		Assumptions.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+		ASTNodeLookupTable table = new ASTNodeLookupTable();
+		URI uri = URI.create("file:///Lookup.groovy");
+		ASTNode[] nodes = new ASTNode[10000];
+		ASTNode parent = null;
+		for (int i = 0; i < nodes.length; i++) {
+			ASTNode node = new ConstantExpression(i);
+			table.put(node, parent, uri);
+			nodes[i] = node;
+			parent = node;
+		}
+		ASTNode missing = new ConstantExpression("missing");
+		// warm up so that the measured loop runs compiled code
+		int found = lookUpAll(table, nodes, missing, 20);
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocationBean.getThreadAllocatedBytes(threadId);
+		found += lookUpAll(table, nodes, missing, 10);
+		long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+		Assertions.assertEquals(30 * (3 * nodes.length - 1), found);
+		// 400,000 lookups, so any allocation per lookup would be megabytes
+		Assertions.assertTrue(allocated < 64 * 1024, "lookups allocated " + allocated + " bytes");
+	}
+
+	private int lookUpAll(ASTNodeLookupTable table, ASTNode[] nodes, ASTNode missing, int passes) {
+		int found = 0;
+		for (int pass = 0; pass < passes; pass++) {
+			for (ASTNode node : nodes) {
+				if (table.getParent(node) != null) {
+					found++;
+				}
+				if (table.containsNode(node)) {
+					found++;
+				}
+				if (table.getURI(node) != null) {
+					found++;
+				}
+				if (table.containsNode(missing)) {
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,151 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ASTNodePositionIndexTests {
+	private static final Comparator<ASTNode> SAME_ORDER = (n1, n2) -> 0;
+
+	@Test
+	void testNestedRanges() {
+		ASTNode outer = node("outer", 1, 1, 5, 2);
+		ASTNode middle = node("middle", 2, 1, 4, 10);
+		ASTNode inner = node("inner", 3, 5, 3, 10);
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(Arrays.asList(outer, middle, inner), SAME_ORDER);
+		Assertions.assertSame(inner, index.findInnermost(2, 6));
+		Assertions.assertSame(middle, index.findInnermost(2, 0));
+		Assertions.assertSame(outer, index.findInnermost(0, 3));
+		Assertions.assertEquals(Arrays.asList(inner, middle, outer), index.findContaining(2, 6));
+		Assertions.assertEquals(Arrays.asList(middle, outer), index.findContaining(3, 0));
+		Assertions.assertEquals(Collections.singletonList(outer), index.findContaining(4, 0));
+	}
+
+	@Test
+	void testRangeBoundaries() {
+		// zero-based, the outer node is 0:0-4:0 and the inner node is 1:4-1:8
+		ASTNode outer = node("outer", 1, 1, 5, 1);
+		ASTNode inner = node("inner", 2, 5, 2, 9);
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(Arrays.asList(outer, inner), SAME_ORDER);
+		Assertions.assertSame(inner, index.findInnermost(1, 4));
+		Assertions.assertSame(inner, index.findInnermost(1, 8));
+		Assertions.assertSame(outer, index.findInnermost(1, 3));
+		Assertions.assertSame(outer, index.findInnermost(1, 9));
+		Assertions.assertSame(outer, index.findInnermost(0, 0));
+		Assertions.assertSame(outer, index.findInnermost(4, 0));
+		Assertions.assertNull(index.findInnermost(4, 1));
+		Assertions.assertTrue(index.findContaining(4, 1).isEmpty());
+		Assertions.assertTrue(index.findContaining(5, 0).isEmpty());
+	}
+
+	@Test
+	void testAdjacentNodesOnSameLine() {
+		// zero-based, first is 0:0-0:4, second is 0:4-0:8 and third is 0:10-0:12
+		ASTNode first = node("first", 1, 1, 1, 5);
+		ASTNode second = node("second", 1, 5, 1, 9);
+		ASTNode third = node("third", 1, 11, 1, 13);
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(Arrays.asList(first, second, third), SAME_ORDER);
+		Assertions.assertSame(first, index.findInnermost(0, 3));
+		Assertions.assertSame(second, index.findInnermost(0, 4));
+		Assertions.assertEquals(Arrays.asList(second, first), index.findContaining(0, 4));
+		Assertions.assertSame(second, index.findInnermost(0, 8));
+		Assertions.assertNull(index.findInnermost(0, 9));
+		Assertions.assertSame(third, index.findInnermost(0, 10));
+	}
+
+	@Test
+	void testEqualRangesUseComparator() {
+		ASTNode first = node("first", 1, 1, 1, 10);
+		ASTNode second = node("second", 1, 1, 1, 10);
+		List<ASTNode> nodes = Arrays.asList(first, second);
+
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(nodes, SAME_ORDER);
+		Assertions.assertSame(first, index.findInnermost(0, 4));
+		Assertions.assertEquals(Arrays.asList(first, second), index.findContaining(0, 4));
+
+		Comparator<ASTNode> preferSecond = Comparator.comparing(node -> node == second ? 0 : 1);
+		index = ASTNodePositionIndex.build(nodes, preferSecond);
+		Assertions.assertSame(second, index.findInnermost(0, 4));
+		Assertions.assertEquals(Arrays.asList(second, first), index.findContaining(0, 4));
+	}
+
+	@Test
+	void testZeroWidthNodes() {
+		ASTNode outer = node("outer", 1, 1, 1, 20);
+		// no end position
+		ASTNode open = node("open", 1, 5, -1, -1);
+		// same start and end
+		ASTNode empty = node("empty", 1, 11, 1, 11);
+		// no position at all
+		ASTNode synthetic = new ConstantExpression("synthetic");
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(Arrays.asList(outer, open, empty, synthetic),
+				SAME_ORDER);
+		Assertions.assertSame(open, index.findInnermost(0, 4));
+		Assertions.assertSame(outer, index.findInnermost(0, 3));
+		Assertions.assertSame(outer, index.findInnermost(0, 5));
+		Assertions.assertSame(empty, index.findInnermost(0, 10));
+		Assertions.assertSame(outer, index.findInnermost(0, 11));
+		Assertions.assertEquals(Arrays.asList(empty, outer), index.findContaining(0, 10));
+		Assertions.assertFalse(index.findContaining(0, 0).contains(synthetic));
+	}
+
+	@Test
+	void testFindLastStartingOnLine() {
+		// zero-based, first starts at 1:0, second at 1:6 and third at 2:0
+		ASTNode first = node("first", 2, 1, 2, 5);
+		ASTNode second = node("second", 2, 7, 2, 12);
+		ASTNode third = node("third", 3, 1, 3, 4);
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(Arrays.asList(first, second, third), SAME_ORDER);
+		Assertions.assertSame(second, index.findLastStartingOnLine(1, 20, node -> true));
+		Assertions.assertSame(second, index.findLastStartingOnLine(1, 6, node -> true));
+		Assertions.assertSame(first, index.findLastStartingOnLine(1, 5, node -> true));
+		Assertions.assertSame(first, index.findLastStartingOnLine(1, 20, node -> node != second));
+		Assertions.assertSame(third, index.findLastStartingOnLine(2, 0, node -> true));
+		// nodes that start on an earlier line are not considered
+		Assertions.assertNull(index.findLastStartingOnLine(2, 0, node -> node != third));
+		Assertions.assertNull(index.findLastStartingOnLine(0, 20, node -> true));
+	}
+
+	@Test
+	void testEmptyIndex() {
+		ASTNodePositionIndex index = ASTNodePositionIndex.build(Collections.emptyList(), SAME_ORDER);
+		Assertions.assertNull(index.findInnermost(0, 0));
+		Assertions.assertTrue(index.findContaining(0, 0).isEmpty());
+		Assertions.assertNull(index.findLastStartingOnLine(0, 0, node -> true));
+	}
+
+	private static ASTNode node(String name, int line, int column, int lastLine, int lastColumn) {
+		// one-based positions, with an exclusive last column, like the compiler
+		ASTNode node = new ConstantExpression(name);
+		node.setLineNumber(line);
+		node.setColumnNumber(column);
+		node.setLastLineNumber(lastLine);
+		node.setLastColumnNumber(lastColumn);
+		return node;
+	}
+}
@@ -0,0 +1,250 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.control.Phases;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.config.CompilationUnitFactory;
+import net.prominic.groovyls.util.FileContentsTracker;
+
+class ASTNodeVisitorTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private Path srcRoot;
+	private FileContentsTracker tracker;
+	private CompilationUnitFactory factory;
+
+	@BeforeEach
+	void setup() {
+		srcRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE).resolve(PATH_SRC);
+		tracker = new FileContentsTracker();
+		factory = new CompilationUnitFactory();
+	}
+
+	@Test
+	void testClassIndexUpdatedWhenFileIsVisitedAgain() {
+		URI uri = open("Index.groovy", "package index\nclass Foo { String fooField }");
+		open("Other.groovy", "class Other { }");
+		GroovyLSCompilationUnit unit = compile();
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(unit);
+		Assertions.assertNotNull(visitor.findClassNodeByName("index.Foo"));
+		Assertions.assertNotNull(visitor.findClassNodeByName("Foo"));
+		Assertions.assertEquals(1, visitor.getClassNodesWithField("fooField").size());
+
+		change(uri, "package index\nclass Bar { String barField }");
+		unit = compile();
+		ASTNodeVisitor updatedVisitor = visitor.copy();
+		updatedVisitor.visitCompilationUnit(unit, Collections.singleton(uri));
+		Assertions.assertNull(updatedVisitor.findClassNodeByName("Foo"));
+		Assertions.assertTrue(updatedVisitor.getClassNodesWithField("fooField").isEmpty());
+		Assertions.assertNotNull(updatedVisitor.findClassNodeByName("index.Bar"));
+		Assertions.assertNotNull(updatedVisitor.findClassNodeByName("Other"));
+		// the original visitor isn't affected
+		Assertions.assertNotNull(visitor.findClassNodeByName("Foo"));
+		Assertions.assertNull(visitor.findClassNodeByName("Bar"));
+	}
+
+	@Test
+	void testSubtypeCandidatesIncludeIndirectSubtypes() {
+		open("Subtypes.groovy", String.join("\n",
+				"class Base { }",
+				"class Middle extends Base { }",
+				"class Leaf extends Middle { }",
+				"interface Shape { }",
+				"class Square implements Shape { }"));
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile());
+		List<ClassNode> candidates = visitor.getSubtypeCandidates(visitor.findClassNodeByName("Base"));
+		Assertions.assertEquals(2, candidates.size());
+		Assertions.assertTrue(candidates.contains(visitor.findClassNodeByName("Middle")));
+		Assertions.assertTrue(candidates.contains(visitor.findClassNodeByName("Leaf")));
+	}
+
+	@Test
+	void testCompactFileIsExpandedWhenNeeded() {
+		URI compactURI = open("Caller.groovy", String.join("\n",
+				"class Caller {",
+				"  void call() {",
+				"    new Callee().callee()",
+				"  }",
+				"}"));
+		URI calleeURI = open("Callee.groovy", "class Callee { void callee() { } }");
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.setCompactFilter(uri -> uri.equals(compactURI));
+		visitor.visitCompilationUnit(compile());
+		Assertions.assertTrue(visitor.isCompact(compactURI));
+		Assertions.assertFalse(visitor.isCompact(calleeURI));
+		// only the declarations are kept
+		Assertions.assertFalse(visitor.getNodes().stream().anyMatch(node -> node instanceof MethodCallExpression));
+
+		List<ASTNode> calls = visitor.getReferenceCandidates("callee").stream()
+				.filter(node -> node instanceof MethodCallExpression).collect(Collectors.toList());
+		Assertions.assertEquals(1, calls.size());
+		ASTNode call = calls.get(0);
+		Assertions.assertEquals(compactURI, visitor.getURI(call));
+		ClassNode caller = visitor.findClassNodeByName("Caller");
+		Assertions.assertTrue(visitor.contains(caller, call));
+		ASTNode nodeAtPosition = visitor.getNodeAtLineAndColumn(compactURI, 2, 18);
+		Assertions.assertTrue(nodeAtPosition == call || visitor.contains(call, nodeAtPosition));
+	}
+
+	@Test
+	void testNodesOfAllFilesAreMerged() {
+		URI[] uris = new URI[4];
+		for (int i = 0; i < uris.length; i++) {
+			uris[i] = open("Merged" + i + ".groovy", "class Merged" + i + " { void method" + i + "() { println 'x' } }");
+		}
+		URI scriptURI = open("MetaClass.groovy", "Merged0.metaClass.added = { -> }");
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile());
+		for (int i = 0; i < uris.length; i++) {
+			URI uri = uris[i];
+			ClassNode classNode = visitor.findClassNodeByName("Merged" + i);
+			Assertions.assertEquals(uri, visitor.getURI(classNode));
+			Assertions.assertEquals(classNode, visitor.getParent(classNode.getMethods("method" + i).get(0)));
+			Assertions.assertTrue(visitor.getNodes(uri).stream().allMatch(node -> uri.equals(visitor.getURI(node))));
+			Assertions.assertNotNull(visitor.getNodeAtLineAndColumn(uri, 0, 30));
+		}
+		Assertions.assertFalse(visitor.getNodes(scriptURI).isEmpty());
+		Assertions.assertFalse(visitor.findClassNodeByName("Merged0").getMethods("added").isEmpty());
+		Assertions.assertEquals(1, visitor.getMetaClassMethods(scriptURI).size());
+		Assertions.assertEquals(1, visitor.getAllMetaClassMethods().size());
+		Assertions.assertTrue(visitor.getMetaClassMethods(uris[0]).isEmpty());
+	}
+
+	@Test
+	void testTypeArgumentsOfSameTypeAreDependencies() {
+		open("GenericFoo.groovy", "class GenericFoo { }");
+		open("GenericBar.groovy", "class GenericBar { }");
+		URI uri = open("GenericUser.groovy", String.join("\n",
+				"class GenericUser {",
+				"  List<GenericBar> bars",
+				"  List<GenericFoo> foos",
+				"}"));
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile());
+		Assertions.assertTrue(visitor.getDependentURIs(Collections.singleton("GenericBar")).contains(uri));
+		Assertions.assertTrue(visitor.getDependentURIs(Collections.singleton("GenericFoo")).contains(uri));
+	}
+
+	@Test
+	void testConstructorAddedToInnerClass() {
+		// the compiler adds a constructor without any exceptions to Inner
+		URI uri = open("Constructor.groovy", "class Constructor { static class Inner { } }");
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile());
+		Assertions.assertFalse(visitor.getNodes(uri).isEmpty());
+	}
+
+	@Test
+	void testClassReferenceCountInvalidatedByClosureParameters() {
+		open("Counted.groovy", "class Counted { void counted() { } }");
+		URI closuresURI = open("Closures.groovy", "class Closures { def run() { [1].each { it } } }");
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile());
+		ClassNode counted = visitor.findClassNodeByName("Counted");
+		MethodNode countedMethod = counted.getMethods("counted").get(0);
+		visitor.cacheReferenceCount(counted, 0);
+		visitor.cacheReferenceCount(countedMethod, 0);
+
+		// it may resolve to a @DelegatesTo type, so the class's count changes
+		change(closuresURI, "class Closures { def run() { [1].each { it; it } } }");
+		ASTNodeVisitor updatedVisitor = visitor.copy();
+		updatedVisitor.visitCompilationUnit(compile(), Collections.singleton(closuresURI));
+		Assertions.assertNull(updatedVisitor.getCachedReferenceCount(counted));
+		Assertions.assertEquals(0, updatedVisitor.getCachedReferenceCount(countedMethod));
+		// the original visitor isn't affected
+		Assertions.assertEquals(0, visitor.getCachedReferenceCount(counted));
+	}
+
+	@Test
+	void testOverlayReplacesFileWithoutChangingOtherFiles() {
+		open("Target.groovy", "class Target { }");
+		URI uri = open("Overlay.groovy", "class Overlay { void before() { } }");
+		GroovyLSCompilationUnit unit = compile();
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(unit);
+		ClassNode target = visitor.findClassNodeByName("Target");
+		List<ASTNode> nodes = visitor.getNodes(uri);
+
+		// the metaClass assignment would add a method to the class of the
+		// other file
+		String contents = "class Overlay { void after() { Target.metaClass.added = { } } }";
+		ASTNodeVisitor overlay = visitor.withOverlay(
+				unit.compileDetachedSource(uri, contents, Phases.CANONICALIZATION, visitor::findClassNodeByName), uri);
+		ClassNode overlayClass = overlay.findClassNodeByName("Overlay");
+		Assertions.assertFalse(overlayClass.getMethods("after").isEmpty());
+		Assertions.assertTrue(overlayClass.getMethods("before").isEmpty());
+		Assertions.assertEquals(uri, overlay.getURI(overlayClass));
+		Assertions.assertSame(target, overlay.findClassNodeByName("Target"));
+		Assertions.assertEquals(1, overlay.getMetaClassMethods(target).size());
+		// neither the visitor nor the classes of the other file are changed
+		Assertions.assertTrue(target.getMethods("added").isEmpty());
+		Assertions.assertSame(nodes, visitor.getNodes(uri));
+		Assertions.assertTrue(visitor.findClassNodeByName("Overlay").getMethods("after").isEmpty());
+		Assertions.assertTrue(visitor.getMetaClassMethods(target).isEmpty());
+	}
+
+	private URI open(String fileName, String contents) {
+		URI uri = srcRoot.resolve(fileName).toUri();
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	private void change(URI uri, String contents) {
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText(contents);
+		DidChangeTextDocumentParams params = new DidChangeTextDocumentParams();
+		params.setTextDocument(new VersionedTextDocumentIdentifier(uri.toString(), 2));
+		params.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(params);
+	}
+
+	private GroovyLSCompilationUnit compile() {
+		GroovyLSCompilationUnit unit = factory.create(null, tracker);
+		tracker.resetChangedFiles();
+		unit.compile(Phases.CANONICALIZATION);
+		return unit;
+	}
+}
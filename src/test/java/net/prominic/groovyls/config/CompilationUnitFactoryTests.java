@@ -0,0 +1,318 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.config;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.control.CompilationCancelledException;
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.util.FileContentsTracker;
+
+class CompilationUnitFactoryTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+
+	private CompilationUnitFactory factory;
+	private FileContentsTracker tracker;
+	private URI uri;
+	private GroovyLSCompilationUnit compilationUnit;
+
+	@BeforeEach
+	void setup() {
+		factory = new CompilationUnitFactory();
+		tracker = new FileContentsTracker();
+		uri = Paths.get(System.getProperty("user.dir"), "build", "Reuse.groovy").toUri();
+	}
+
+	@AfterEach
+	void tearDown() {
+		factory = null;
+		tracker = null;
+		compilationUnit = null;
+	}
+
+	@Test
+	void testUnchangedContentsAreNotParsedAgain() {
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, "class Reuse {}")));
+		SourceUnit original = compile();
+
+		// reopening with the same text marks the file as changed
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 2, "class Reuse {}")));
+		Assertions.assertSame(original, compile());
+	}
+
+	@Test
+	void testRevertedContentsAreParsedAgain() {
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, "class Reuse {}")));
+		SourceUnit original = compile();
+
+		change("class Reuse { def x }", 2);
+		SourceUnit changed = compile();
+		Assertions.assertNotSame(original, changed);
+
+		// the original source may refer to classes of other files that were
+		// replaced since it was compiled
+		change("class Reuse {}", 3);
+		SourceUnit reverted = compile();
+		Assertions.assertNotSame(original, reverted);
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("Reuse"));
+	}
+
+	@Test
+	void testContentsWithSameStringHashAreParsedAgain() {
+		// "Aa" and "BB" have the same String.hashCode()
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, "class Reuse { def Aa }")));
+		SourceUnit original = compile();
+
+		change("class Reuse { def BB }", 2);
+		SourceUnit changed = compile();
+		Assertions.assertNotSame(original, changed);
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("Reuse").getField("BB"));
+	}
+
+	private void change(String text, int version) {
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText(text);
+		DidChangeTextDocumentParams params = new DidChangeTextDocumentParams();
+		params.setTextDocument(new VersionedTextDocumentIdentifier(uri.toString(), version));
+		params.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(params);
+	}
+
+	private SourceUnit compile() {
+		compilationUnit = factory.create(null, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		SourceUnit result = null;
+		for (SourceUnit sourceUnit : (Iterable<SourceUnit>) compilationUnit::iterator) {
+			if (uri.equals(sourceUnit.getSource().getURI())) {
+				result = sourceUnit;
+			}
+		}
+		Assertions.assertNotNull(result);
+		return result;
+	}
+
+	@Test
+	void testWatchedFilesUpdateIndex(@TempDir Path workspaceRoot) throws Exception {
+		Path srcRoot = workspaceRoot.resolve("src/main/groovy");
+		Files.createDirectories(srcRoot);
+		Files.writeString(srcRoot.resolve("First.groovy"), "class First {}");
+		compilationUnit = factory.create(workspaceRoot, tracker);
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("First"));
+
+		Path second = srcRoot.resolve("Second.groovy");
+		Files.writeString(second, "class Second {}");
+		factory.didChangeWatchedFiles(Collections.singletonList(
+				new FileEvent(second.toUri().toString(), FileChangeType.Created)));
+		tracker.forceChanged(second.toUri());
+		compilationUnit = factory.create(workspaceRoot, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("First"));
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("Second"));
+
+		Path first = srcRoot.resolve("First.groovy");
+		Files.delete(first);
+		factory.didChangeWatchedFiles(Collections.singletonList(
+				new FileEvent(first.toUri().toString(), FileChangeType.Deleted)));
+		tracker.forceChanged(first.toUri());
+		compilationUnit = factory.create(workspaceRoot, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertNull(compilationUnit.getAST().getClass("First"));
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("Second"));
+	}
+
+	@Test
+	void testParallelParse() {
+		int fileCount = 8;
+		for (int i = 0; i < fileCount; i++) {
+			URI fileURI = Paths.get(System.getProperty("user.dir"), "build", "Parallel" + i + ".groovy").toUri();
+			String text = "class Parallel" + i + " { Parallel" + ((i + 1) % fileCount) + " next }";
+			tracker.didOpen(new DidOpenTextDocumentParams(
+					new TextDocumentItem(fileURI.toString(), LANGUAGE_GROOVY, 1, text)));
+		}
+		compilationUnit = factory.create(null, tracker);
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertFalse(compilationUnit.getErrorCollector().hasErrors());
+		for (int i = 0; i < fileCount; i++) {
+			Assertions.assertNotNull(compilationUnit.getAST().getClass("Parallel" + i));
+		}
+	}
+
+	@Test
+	void testModulesAreCompiledInPartitions(@TempDir Path workspaceRoot) throws Exception {
+		Path coreDir = workspaceRoot.resolve("core");
+		Path appDir = workspaceRoot.resolve("app");
+		Path coreSrc = coreDir.resolve("src/main/groovy");
+		Path appSrc = appDir.resolve("src/main/groovy");
+		Files.createDirectories(coreSrc);
+		Files.createDirectories(appSrc);
+		Files.writeString(coreSrc.resolve("Core.groovy"), "class Core {}");
+		Files.writeString(appSrc.resolve("App.groovy"), "class App { Core core }");
+		Map<Path, List<Path>> moduleDependencies = new HashMap<>();
+		moduleDependencies.put(coreDir, Collections.emptyList());
+		moduleDependencies.put(appDir, Collections.singletonList(coreDir));
+		factory.setModuleDependencies(moduleDependencies);
+
+		compilationUnit = factory.create(workspaceRoot, tracker);
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		List<GroovyLSCompilationUnit> partitions = compilationUnit.getPartitions();
+		Assertions.assertEquals(2, partitions.size());
+		GroovyLSCompilationUnit corePartition = partitions.get(0);
+		GroovyLSCompilationUnit appPartition = partitions.get(1);
+		ClassNode coreClass = corePartition.getAST().getClass("Core");
+		Assertions.assertNotNull(coreClass);
+		Assertions.assertNull(appPartition.getAST().getModules().stream()
+				.filter(module -> module.getClasses().stream().anyMatch(c -> c.getName().equals("Core")))
+				.findFirst().orElse(null));
+		Assertions.assertSame(coreClass, appPartition.getAST().getClass("App").getField("core").getType().redirect());
+		Assertions.assertEquals(0, compilationUnit.getErrorCollector().getErrorCount());
+
+		// editing the app module doesn't compile the core module again
+		URI appURI = appSrc.resolve("App.groovy").toUri();
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(appURI.toString(), LANGUAGE_GROOVY, 1, "class App { Core core2 }")));
+		compilationUnit = factory.create(workspaceRoot, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertSame(coreClass, corePartition.getAST().getClass("Core"));
+		Assertions.assertNotNull(appPartition.getAST().getClass("App").getField("core2"));
+	}
+
+	@Test
+	void testDependentsAreParsedAgainWhenAPIChanges() {
+		URI aURI = Paths.get(System.getProperty("user.dir"), "build", "DependencyA.groovy").toUri();
+		URI bURI = Paths.get(System.getProperty("user.dir"), "build", "DependencyB.groovy").toUri();
+		URI cURI = Paths.get(System.getProperty("user.dir"), "build", "DependencyC.groovy").toUri();
+		tracker.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(aURI.toString(), LANGUAGE_GROOVY, 1,
+				"class DependencyA { def foo() { 1 } }")));
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(bURI.toString(), LANGUAGE_GROOVY, 1, "class DependencyB { DependencyA a }")));
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(cURI.toString(), LANGUAGE_GROOVY, 1, "class DependencyC {}")));
+		compilationUnit = factory.create(null, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertTrue(compilationUnit.takeClassesWithChangedAPI().isEmpty());
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compilationUnit);
+
+		// only a method body changed
+		tracker.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(aURI.toString(), LANGUAGE_GROOVY, 2,
+				"class DependencyA { def foo() { 2 } }")));
+		compilationUnit = factory.create(null, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertTrue(compilationUnit.takeClassesWithChangedAPI().isEmpty());
+		Set<String> replacedClasses = compilationUnit.getReplacedClassNames();
+		Assertions.assertEquals(Collections.singleton("DependencyA"), replacedClasses);
+		Assertions.assertEquals(Collections.singleton(bURI), visitor.getDependentURIs(replacedClasses));
+		compilationUnit.redirectReplacedClasses(visitor.getDependentURIs(replacedClasses));
+		Assertions.assertSame(compilationUnit.getAST().getClass("DependencyA"),
+				compilationUnit.getAST().getClass("DependencyB").getField("a").getType().redirect());
+
+		tracker.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(aURI.toString(), LANGUAGE_GROOVY, 3,
+				"class DependencyA { def foo() { 2 }\n def bar() {} }")));
+		compilationUnit = factory.create(null, tracker);
+		tracker.resetChangedFiles();
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Set<String> changedClasses = compilationUnit.takeClassesWithChangedAPI();
+		Assertions.assertEquals(Collections.singleton("DependencyA"), changedClasses);
+		Set<URI> dependentURIs = visitor.getDependentURIs(changedClasses);
+		Assertions.assertEquals(Collections.singleton(bURI), dependentURIs);
+		Assertions.assertEquals(Collections.singleton(bURI), compilationUnit.reparseSources(dependentURIs));
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		ClassNode aClass = compilationUnit.getAST().getClass("DependencyA");
+		Assertions.assertNotNull(aClass.getMethod("bar", new Parameter[0]));
+		Assertions.assertSame(aClass,
+				compilationUnit.getAST().getClass("DependencyB").getField("a").getType().redirect());
+	}
+
+	@Test
+	void testCompileIsCancelledBetweenPhases() {
+		URI uri = Paths.get(System.getProperty("user.dir"), "build", "Cancelled.groovy").toUri();
+		tracker.didOpen(new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, "class Cancelled {}")));
+		compilationUnit = factory.create(null, tracker);
+		compilationUnit.setCancellationCheck(() -> true);
+		Assertions.assertThrows(CompilationCancelledException.class,
+				() -> compilationUnit.compile(Phases.CANONICALIZATION));
+
+		compilationUnit.setCancellationCheck(null);
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("Cancelled"));
+	}
+
+	@Test
+	void testCompileIsCancelledBetweenSourceUnits() {
+		for (String name : new String[] { "CancelledA", "CancelledB", "CancelledC" }) {
+			URI uri = Paths.get(System.getProperty("user.dir"), "build", name + ".groovy").toUri();
+			tracker.didOpen(new DidOpenTextDocumentParams(
+					new TextDocumentItem(uri.toString(), LANGUAGE_GROOVY, 1, "class " + name + " {}")));
+		}
+		compilationUnit = factory.create(null, tracker);
+		// cancel as soon as the first module is built, in the middle of the
+		// conversion phase
+		compilationUnit.setCancellationCheck(() -> !compilationUnit.getAST().getModules().isEmpty());
+		Assertions.assertThrows(CompilationCancelledException.class,
+				() -> compilationUnit.compile(Phases.CANONICALIZATION));
+		List<SourceUnit> sourceUnits = new ArrayList<>();
+		compilationUnit.iterator().forEachRemaining(sourceUnits::add);
+		Assertions.assertTrue(sourceUnits.stream().anyMatch(
+				sourceUnit -> sourceUnit.getPhase() < Phases.CONVERSION || !sourceUnit.isPhaseComplete()));
+
+		compilationUnit.setCancellationCheck(null);
+		compilationUnit.compile(Phases.CANONICALIZATION);
+		Assertions.assertNotNull(compilationUnit.getAST().getClass("CancelledC"));
+	}
+}
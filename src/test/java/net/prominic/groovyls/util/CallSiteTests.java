@@ -0,0 +1,116 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CallSiteTests {
+	@Test
+	void testFindMethodWithoutReceiver() {
+		String text = "method(";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertNull(callSite.getReceiver());
+		Assertions.assertEquals("method", callSite.getName());
+		Assertions.assertFalse(callSite.isConstructorCall());
+		Assertions.assertEquals(6, callSite.getOpenParenOffset());
+		Assertions.assertEquals(0, callSite.getActiveParameter());
+	}
+
+	@Test
+	void testFindMethodWithReceiver() {
+		String text = "foo.bar.baz (1, ";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertEquals("foo.bar", callSite.getReceiver());
+		Assertions.assertEquals("baz", callSite.getName());
+		Assertions.assertEquals(1, callSite.getActiveParameter());
+	}
+
+	@Test
+	void testFindConstructor() {
+		String text = "def a = new java.util.ArrayList(";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertTrue(callSite.isConstructorCall());
+		Assertions.assertEquals("java.util.ArrayList", callSite.getName());
+	}
+
+	@Test
+	void testFindIgnoresNestedCalls() {
+		String text = "outer(inner(1, 2), ";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertEquals("outer", callSite.getName());
+		Assertions.assertEquals(1, callSite.getActiveParameter());
+	}
+
+	@Test
+	void testFindInsideNestedCall() {
+		String text = "outer(1, inner(2, ";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertEquals("inner", callSite.getName());
+		Assertions.assertEquals(1, callSite.getActiveParameter());
+	}
+
+	@Test
+	void testFindIgnoresCommasInListsStringsAndComments() {
+		String text = "method([1, 2], \"a, b\", 'c, (', /* d, ( */ ";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertEquals("method", callSite.getName());
+		Assertions.assertEquals(3, callSite.getActiveParameter());
+	}
+
+	@Test
+	void testFindInsideList() {
+		String text = "method(1, [2, ";
+		CallSite callSite = CallSite.find(text, text.length());
+		Assertions.assertNotNull(callSite);
+		Assertions.assertEquals("method", callSite.getName());
+		Assertions.assertEquals(1, callSite.getActiveParameter());
+	}
+
+	@Test
+	void testFindInsideClosure() {
+		String text = "method(1, { a -> ";
+		Assertions.assertNull(CallSite.find(text, text.length()));
+	}
+
+	@Test
+	void testFindAfterClosedCall() {
+		String text = "method(1)\n";
+		Assertions.assertNull(CallSite.find(text, text.length()));
+	}
+
+	@Test
+	void testFindKeyword() {
+		String text = "if (";
+		Assertions.assertNull(CallSite.find(text, text.length()));
+	}
+
+	@Test
+	void testFindParenthesizedExpression() {
+		String text = "def a = (";
+		Assertions.assertNull(CallSite.find(text, text.length()));
+	}
+}
@@ -20,6 +20,7 @@
 package net.prominic.groovyls.util;
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Collections;
 
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
@@ -98,4 +99,120 @@ class FileContentsTrackerTests {
 		tracker.didChange(changeParams);
 		Assertions.assertEquals("hello\nwaffles", tracker.getContents(URI.create("file.txt")));
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testDidChangeWithMultipleRanges() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello\nworld"));
+		tracker.didOpen(openParams);
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent1 = new TextDocumentContentChangeEvent();
+		changeEvent1.setText("J");
+		changeEvent1.setRange(new Range(new Position(0, 0), new Position(0, 1)));
+		TextDocumentContentChangeEvent changeEvent2 = new TextDocumentContentChangeEvent();
+		changeEvent2.setText("y, there\n");
+		changeEvent2.setRange(new Range(new Position(0, 4), new Position(0, 5)));
+		// the second line moved down because of the previous change
+		TextDocumentContentChangeEvent changeEvent3 = new TextDocumentContentChangeEvent();
+		changeEvent3.setText("W");
+		changeEvent3.setRange(new Range(new Position(2, 0), new Position(2, 1)));
+		changeParams.setContentChanges(Arrays.asList(changeEvent1, changeEvent2, changeEvent3));
+		tracker.didChange(changeParams);
+		Assertions.assertEquals("Jelly, there\n\nWorld", tracker.getContents(URI.create("file.txt")));
+		Assertions.assertEquals(2, tracker.getVersion(URI.create("file.txt")));
+	}
+
+	@Test
+	void testContentsSnapshotIsNotChangedByEdits() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello world"));
+		tracker.didOpen(openParams);
+		CharSequence snapshot = tracker.getContentsSnapshot(URI.create("file.txt"));
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("there");
+		changeEvent.setRange(new Range(new Position(0, 6), new Position(0, 11)));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(changeParams);
+		Assertions.assertEquals("hello world", snapshot.toString());
+		Assertions.assertEquals('w', snapshot.charAt(6));
+		Assertions.assertEquals("hello there", tracker.getContentsSnapshot(URI.create("file.txt")).toString());
+	}
+
+	@Test
+	void testLineOffsetsAfterDidChange() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "one\ntwo\nthree"));
+		tracker.didOpen(openParams);
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("2\n2.5");
+		changeEvent.setRange(new Range(new Position(1, 0), new Position(1, 3)));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(changeParams);
+		LineOffsets lineOffsets = tracker.getContentsSnapshot(URI.create("file.txt")).getLineOffsets();
+		Assertions.assertEquals(4, lineOffsets.getLineCount());
+		Assertions.assertEquals(10, lineOffsets.getOffset(new Position(3, 0)));
+		Assertions.assertEquals(new Position(2, 1), lineOffsets.getPosition(7));
+		Assertions.assertEquals(-1, lineOffsets.getOffset(new Position(4, 0)));
+	}
+
+	@Test
+	void testDidChangeWithRangePastEndOfLine() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "one\ntwo\nthree"));
+		tracker.didOpen(openParams);
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("X");
+		// the end character is past the end of the line, which means the end
+		// of the line
+		changeEvent.setRange(new Range(new Position(0, 1), new Position(0, 10)));
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(changeParams);
+		Assertions.assertEquals("oX\ntwo\nthree", tracker.getContents(URI.create("file.txt")));
+	}
+
+	@Test
+	void testLineOffsetsClampCharacterToEndOfLine() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "one\ntwo\nthree"));
+		tracker.didOpen(openParams);
+		LineOffsets lineOffsets = tracker.getContentsSnapshot(URI.create("file.txt")).getLineOffsets();
+		Assertions.assertEquals(3, lineOffsets.getOffset(new Position(0, 3)));
+		Assertions.assertEquals(3, lineOffsets.getOffset(new Position(0, 10)));
+		Assertions.assertEquals(7, lineOffsets.getOffset(new Position(1, 10)));
+		Assertions.assertEquals(13, lineOffsets.getOffset(new Position(2, 10)));
+	}
+
+	@Test
+	void testModificationCountIncreasesOnEdits() {
+		long initialCount = tracker.getModificationCount();
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello world"));
+		tracker.didOpen(openParams);
+		long openCount = tracker.getModificationCount();
+		Assertions.assertTrue(openCount > initialCount);
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("hi there");
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(changeParams);
+		Assertions.assertTrue(tracker.getModificationCount() > openCount);
+	}
+
+	@Test
+	void testHashContentsOfStringsWithSameHashCode() {
+		Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+		Assertions.assertNotEquals(FileContentsTracker.hashContents("Aa"), FileContentsTracker.hashContents("BB"));
+		Assertions.assertNotEquals(FileContentsTracker.hashContents("xAaBBy"),
+				FileContentsTracker.hashContents("xBBAay"));
+		Assertions.assertEquals(FileContentsTracker.hashContents("Aa"),
+				FileContentsTracker.hashContents(new StringBuilder("Aa")));
+	}
+}
@@ -22,7 +22,10 @@ package net.prominic.groovyls.util;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -82,4 +85,26 @@ class GradleProjectDetectorTests {
         Assertions.assertEquals(3, info.getBuildFiles().size());
         Assertions.assertEquals(2, info.getModuleDirectories().size());
     }
+
+    @Test
+    void detectsProjectDependencies() throws Exception {
+        Files.writeString(workspaceRoot.resolve("settings.gradle"), "include 'app', 'lib:core'\n");
+        Files.writeString(workspaceRoot.resolve("build.gradle"), "plugins { id 'groovy' }");
+
+        Path appDir = workspaceRoot.resolve("app");
+        Path libCoreDir = workspaceRoot.resolve("lib").resolve("core");
+        Files.createDirectories(appDir);
+        Files.createDirectories(libCoreDir);
+        Files.writeString(appDir.resolve("build.gradle"),
+                "dependencies {\n  implementation project(':lib:core')\n  testImplementation project(path: \":\")\n}");
+        Files.writeString(libCoreDir.resolve("build.gradle"), "plugins { id 'groovy' }");
+
+        GradleProjectInfo info = GradleProjectDetector.detect(workspaceRoot);
+        Path root = workspaceRoot.toAbsolutePath().normalize();
+        Map<Path, List<Path>> dependencies = info.getModuleDependencies();
+        Assertions.assertEquals(Arrays.asList(root.resolve("lib").resolve("core"), root),
+                dependencies.get(root.resolve("app")));
+        Assertions.assertTrue(dependencies.get(root.resolve("lib").resolve("core")).isEmpty());
+        Assertions.assertTrue(dependencies.get(root).isEmpty());
+    }
 }
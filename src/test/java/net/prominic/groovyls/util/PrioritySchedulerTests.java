@@ -0,0 +1,101 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.util.PriorityScheduler.Lane;
+
+class PrioritySchedulerTests {
+	@Test
+	void testIndexingWaitsForInteractiveWork() throws Exception {
+		PriorityScheduler scheduler = new PriorityScheduler(1, 1);
+		CountDownLatch interactiveStarted = new CountDownLatch(1);
+		CountDownLatch releaseInteractive = new CountDownLatch(1);
+		List<String> order = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> interactive = scheduler.compute(Lane.INTERACTIVE, cancelChecker -> {
+			interactiveStarted.countDown();
+			try {
+				releaseInteractive.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			order.add("interactive");
+			return null;
+		});
+		Assertions.assertTrue(interactiveStarted.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Void> indexing = scheduler.compute(Lane.INDEXING, cancelChecker -> {
+			order.add("indexing");
+			return null;
+		});
+		Assertions.assertTrue(scheduler.hasInteractiveWork());
+		releaseInteractive.countDown();
+		interactive.get(5, TimeUnit.SECONDS);
+		indexing.get(5, TimeUnit.SECONDS);
+		Assertions.assertEquals(List.of("interactive", "indexing"), order);
+		Assertions.assertFalse(scheduler.hasInteractiveWork());
+	}
+
+	@Test
+	void testCancelledScheduledTaskDoesNotRun() throws Exception {
+		PriorityScheduler scheduler = new PriorityScheduler(1, 1);
+		List<String> results = new CopyOnWriteArrayList<>();
+		Future<?> cancelled = scheduler.schedule(Lane.INDEXING, () -> results.add("cancelled"), 50,
+				TimeUnit.MILLISECONDS);
+		Future<?> scheduled = scheduler.schedule(Lane.INDEXING, () -> results.add("scheduled"), 50,
+				TimeUnit.MILLISECONDS);
+		cancelled.cancel(false);
+		scheduled.get(5, TimeUnit.SECONDS);
+		Assertions.assertEquals(List.of("scheduled"), results);
+	}
+
+	@Test
+	void testCancelledComputationStops() throws Exception {
+		PriorityScheduler scheduler = new PriorityScheduler(1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+		CompletableFuture<Void> future = scheduler.compute(Lane.NORMAL, cancelChecker -> {
+			started.countDown();
+			try {
+				while (true) {
+					cancelChecker.checkCanceled();
+					Thread.sleep(5);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} finally {
+				stopped.countDown();
+			}
+		});
+		Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+		future.cancel(true);
+		Assertions.assertTrue(stopped.await(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(future.isCancelled());
+	}
+}